@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.mongo.filter;
+
+/**
+ * Mode of evaluation of contains condition in Mongo filter.
+ * @author Radek Beran
+ */
+public enum ContainsMode {
+    /** Value of attribute contains given substring (unanchored regular expression, all values of attribute are scanned). */
+    SUBSTRING,
+    /** Value of attribute starts with given string (anchored regular expression that can use index of attribute). */
+    PREFIX,
+    /**
+     * Text search for given words using text index of collection ($text operator). Text index must be declared
+     * on the collection, it is used regardless of the attribute of condition (a collection has at most one text index).
+     */
+    TEXT
+}
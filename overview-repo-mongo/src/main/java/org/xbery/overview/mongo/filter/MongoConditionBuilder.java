@@ -18,18 +18,55 @@ package org.xbery.overview.mongo.filter;
 
 import com.mongodb.Function;
 import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.xbery.overview.Order;
 import org.xbery.overview.filter.*;
+import org.xbery.overview.mapper.Attribute;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Builds Mongo conditions from various condition types.
+ * <p>
+ * Equality of attributes is evaluated by $expr, which requires MongoDB server 3.6 or newer. Builder created with
+ * {@code exprSupported} set to false uses JavaScript $where instead (it is slower and cannot use indexes).
  * @author Radek Beran
  */
 public class MongoConditionBuilder {
 
+    /** Condition that is never satisfied, it is evaluated using index of _id without scanning of documents. */
+    private static final Bson FALSE_CONDITION = Filters.in("_id", Collections.emptyList());
+
+    private final boolean exprSupported;
+
+    public MongoConditionBuilder() {
+        this(true);
+    }
+
+    /**
+     * @param exprSupported true if the server supports $expr queries (MongoDB 3.6+), false to use $where
+     */
+    public MongoConditionBuilder(boolean exprSupported) {
+        this.exprSupported = exprSupported;
+    }
+
     public MongoCondition build(Condition condition, Function<Object, Object> valueToDbSupportedValue) {
+        return build(condition, valueToDbSupportedValue, attribute -> ContainsMode.SUBSTRING);
+    }
+
+    /**
+     * Builds Mongo condition.
+     * @param condition condition
+     * @param valueToDbSupportedValue conversion of values to values supported by database
+     * @param containsMode mode of evaluation of contains conditions of attributes
+     * @return Mongo condition
+     */
+    public MongoCondition build(Condition condition, Function<Object, Object> valueToDbSupportedValue, Function<Attribute<?, ?>, ContainsMode> containsMode) {
         MongoCondition mongoCondition = null;
         if (condition instanceof MongoCondition) {
             mongoCondition = (MongoCondition)condition;
@@ -50,30 +87,93 @@ public class MongoConditionBuilder {
             mongoCondition = new MongoCondition(Filters.gte(c.getAttribute().getName(), valueToDbSupportedValue.apply(c.getValue())));
         } else if (condition instanceof EqAttributesCondition) {
             EqAttributesCondition c = (EqAttributesCondition)condition;
-            // This isn't very efficient since $where doesn't take advantage of indexing. An alternative would be to
-            // have a boolean that you set when inserting/updating that checks for seller/author equality.
-            // See https://www.codeschool.com/discuss/t/how-to-query-based-on-the-variable-value-stored-in-another-field/20979/3
-            mongoCondition = new MongoCondition(Filters.where("this." + c.getFirstAttribute().getName() + " == this." + c.getSecondAttribute().getName()));
+            // null value is not equal to anything as in SQL
+            if (exprSupported) {
+                // Aggregation expression is evaluated natively (without JavaScript engine used by $where)
+                String first = "$" + c.getFirstAttribute().getName();
+                String second = "$" + c.getSecondAttribute().getName();
+                mongoCondition = new MongoCondition(new Document("$expr", new Document("$and", Arrays.asList(
+                    new Document("$eq", Arrays.asList(first, second)),
+                    new Document("$gt", Arrays.asList(first, null))))));
+            } else {
+                String first = "this." + c.getFirstAttribute().getName();
+                String second = "this." + c.getSecondAttribute().getName();
+                mongoCondition = new MongoCondition(Filters.where(first + " != null && " + first + " == " + second));
+            }
         } else if (condition instanceof ContainsCondition) {
             ContainsCondition c = (ContainsCondition)condition;
-            mongoCondition = new MongoCondition(Filters.regex(c.getAttribute().getName(), ".*" + Pattern.quote("" + valueToDbSupportedValue.apply(c.getValue())) + ".*"));
+            String value = "" + valueToDbSupportedValue.apply(c.getValue());
+            switch (containsMode.apply(c.getAttribute())) {
+                case PREFIX:
+                    mongoCondition = new MongoCondition(Filters.regex(c.getAttribute().getName(), "^" + escapeRegex(value)));
+                    break;
+                case TEXT:
+                    mongoCondition = new MongoCondition(Filters.text(value));
+                    break;
+                default:
+                    mongoCondition = new MongoCondition(Filters.regex(c.getAttribute().getName(), escapeRegex(value)));
+            }
         } else if (condition instanceof InCondition) {
             InCondition c = (InCondition)condition;
             if (c.getValues() != null && !c.getValues().isEmpty()) {
                 mongoCondition = new MongoCondition(Filters.in(c.getAttribute().getName(), c.getValues().stream().map(v -> valueToDbSupportedValue.apply(v)).collect(Collectors.toList())));
             } else {
                 // empty values for IN, value of attribute is certainly not among empty values
-                mongoCondition = new MongoCondition(Filters.where("1 == 0"));
+                mongoCondition = new MongoCondition(FALSE_CONDITION);
             }
         } else if (condition instanceof OrCondition) {
             OrCondition c = (OrCondition)condition;
-            mongoCondition = new MongoCondition(Filters.or(build(c.getFirstCondition(), valueToDbSupportedValue).getCondition(), build(c.getSecondCondition(), valueToDbSupportedValue).getCondition()));
+            mongoCondition = new MongoCondition(Filters.or(build(c.getFirstCondition(), valueToDbSupportedValue, containsMode).getCondition(), build(c.getSecondCondition(), valueToDbSupportedValue, containsMode).getCondition()));
         } else if (condition instanceof AndCondition) {
             AndCondition c = (AndCondition)condition;
-            mongoCondition = new MongoCondition(Filters.and(build(c.getFirstCondition(), valueToDbSupportedValue).getCondition(), build(c.getSecondCondition(), valueToDbSupportedValue).getCondition()));
+            mongoCondition = new MongoCondition(Filters.and(build(c.getFirstCondition(), valueToDbSupportedValue, containsMode).getCondition(), build(c.getSecondCondition(), valueToDbSupportedValue, containsMode).getCondition()));
         } else {
             throw new IllegalStateException("Condition " + condition + " is not supported");
         }
         return mongoCondition;
     }
+
+    /**
+     * Builds condition selecting documents that follow the document with given values of ordering attributes (keyset pagination).
+     * Condition has the form {@code {$or: [{a: {$gt: va}}, {a: va, b: {$gt: vb}}, ...]}}.
+     * @param ordering ordering of documents
+     * @param lastValues values of ordering attributes of the last document of previous page
+     * @param documentAttributeName converts attribute name used in ordering to attribute name in document
+     * @param valueToDbSupportedValue conversion of values to values supported by database
+     * @return Mongo condition
+     */
+    public MongoCondition buildKeysetCondition(List<Order> ordering, List<Object> lastValues, Function<String, String> documentAttributeName, Function<Object, Object> valueToDbSupportedValue) {
+        if (ordering == null || ordering.isEmpty() || ordering.size() != lastValues.size()) {
+            throw new IllegalArgumentException("Values of keyset " + lastValues + " do not correspond to ordering " + ordering);
+        }
+        List<Bson> alternatives = new ArrayList<>();
+        for (int i = 0; i < ordering.size(); i++) {
+            List<Bson> parts = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                parts.add(Filters.eq(documentAttributeName.apply(ordering.get(j).getAttribute()), valueToDbSupportedValue.apply(lastValues.get(j))));
+            }
+            Order order = ordering.get(i);
+            String attributeName = documentAttributeName.apply(order.getAttribute());
+            Object value = valueToDbSupportedValue.apply(lastValues.get(i));
+            parts.add(order.isDesc() ? Filters.lt(attributeName, value) : Filters.gt(attributeName, value));
+            alternatives.add(parts.size() == 1 ? parts.get(0) : Filters.and(parts));
+        }
+        return new MongoCondition(alternatives.size() == 1 ? alternatives.get(0) : Filters.or(alternatives));
+    }
+
+    /**
+     * Escapes characters with special meaning in regular expression by backslash, so the expression remains simple prefix
+     * that the database can evaluate using index (unlike quoting by {@code \Q...\E}).
+     */
+    static String escapeRegex(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if ("\\^$.|?*+()[]{}".indexOf(ch) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
 }
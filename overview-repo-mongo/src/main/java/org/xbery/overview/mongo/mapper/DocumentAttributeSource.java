@@ -17,6 +17,7 @@
 package org.xbery.overview.mongo.mapper;
 
 import org.xbery.overview.mapper.AttributeSource;
+import org.xbery.overview.mapper.AttributeType;
 import org.xbery.overview.mongo.repo.MongoConversions;
 import org.bson.Document;
 
@@ -42,27 +43,45 @@ public class DocumentAttributeSource implements AttributeSource {
 
     @Override
     public <A> A get(Class<A> cls, String attributeName) {
-        Object value = null;
-        if (cls.isAssignableFrom(Boolean.class)) {
-            value = getBoolean(attributeName);
-        } else if (cls.isAssignableFrom(Byte.class)) {
-            value = getByte(attributeName);
-        } else if (cls.isAssignableFrom(Integer.class)) {
-            value = getInteger(attributeName);
-        } else if (cls.isAssignableFrom(Long.class)) {
-            value = getLong(attributeName);
-        } else if (cls.isAssignableFrom(Float.class)) {
-            value = getFloat(attributeName);
-        } else if (cls.isAssignableFrom(Double.class)) {
-            value = getDouble(attributeName);
-        } else if (cls.isAssignableFrom(Date.class)) {
-            value = getDate(attributeName);
-        } else if (cls.isAssignableFrom(Instant.class)) {
-            value = getInstant(attributeName);
-        } else if (cls.isAssignableFrom(BigDecimal.class)) {
-            value = getBigDecimal(attributeName);
-        } else if (cls.isAssignableFrom(String.class)) {
-            value = getString(attributeName);
+        return get(AttributeType.of(cls), cls, attributeName);
+    }
+
+    @Override
+    public <A> A get(AttributeType type, Class<A> cls, String attributeName) {
+        Object value;
+        switch (type) {
+            case BOOLEAN:
+                value = getBoolean(attributeName);
+                break;
+            case BYTE:
+                value = getByte(attributeName);
+                break;
+            case INTEGER:
+                value = getInteger(attributeName);
+                break;
+            case LONG:
+                value = getLong(attributeName);
+                break;
+            case FLOAT:
+                value = getFloat(attributeName);
+                break;
+            case DOUBLE:
+                value = getDouble(attributeName);
+                break;
+            case DATE:
+                value = getDate(attributeName);
+                break;
+            case INSTANT:
+                value = getInstant(attributeName);
+                break;
+            case BIG_DECIMAL:
+                value = getBigDecimal(attributeName);
+                break;
+            case STRING:
+                value = getString(attributeName);
+                break;
+            default:
+                value = null;
         }
         return value != null ? cls.cast(value) : null;
     }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.mongo.mapper;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.AttributeSource;
+import org.xbery.overview.mapper.AttributeType;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.mapper.RowDecoder;
+import org.xbery.overview.mongo.repo.MongoConversions;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Codec of entities compiled from attributes of {@link EntityMapper}. BSON fields are decoded straight to values
+ * of attribute types (the same conversions as {@link DocumentAttributeSource} does) and the entity is built from them
+ * by {@link RowDecoder} of the mapper, without intermediate {@link org.bson.Document}. Fields that do not correspond
+ * to any attribute are skipped, attributes of type {@link AttributeType#OTHER} (e.g. nested documents) are not decoded
+ * and overridden {@link EntityMapper#buildEntity(org.xbery.overview.mapper.AttributeSource)} is not called.
+ * <p>
+ * Thread-safe: Yes, instance is immutable (if the entity mapper is not changed).
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+public class EntityCodec<T> implements Codec<T> {
+
+    private static final BsonTypeClassMap BSON_TYPE_CLASS_MAP = new BsonTypeClassMap();
+
+    private final EntityMapper<T, ?> entityMapper;
+    private final Class<T> entityClass;
+    private final Function<Object, Object> valueToDbSupportedValue;
+    private final CodecRegistry codecRegistry;
+    /** Attributes returned by the entity mapper, replaced by the mapper when its attributes are changed. */
+    private final List<Attribute<T, ?>> mapperAttributes;
+    private final Attribute<T, ?>[] attributes;
+    private final AttributeType[] attributeTypes;
+    private final Map<String, Integer> indexesByName;
+    private final RowDecoder<T> rowDecoder;
+
+    /**
+     * @param entityMapper mapper of entities
+     * @param entityClass class of entities
+     * @param valueToDbSupportedValue conversion of attribute values to values stored in database
+     * @param codecRegistry registry of codecs used for values of BSON types not read natively and for encoding of attribute values
+     */
+    @SuppressWarnings("unchecked")
+    public EntityCodec(EntityMapper<T, ?> entityMapper, Class<T> entityClass, Function<Object, Object> valueToDbSupportedValue, CodecRegistry codecRegistry) {
+        this.entityMapper = entityMapper;
+        this.entityClass = entityClass;
+        this.valueToDbSupportedValue = valueToDbSupportedValue;
+        this.codecRegistry = codecRegistry;
+        List<Attribute<T, ?>> attributeList = entityMapper.getAttributes();
+        this.mapperAttributes = attributeList;
+        this.attributes = (Attribute<T, ?>[])attributeList.toArray(new Attribute<?, ?>[attributeList.size()]);
+        this.attributeTypes = new AttributeType[attributes.length];
+        this.indexesByName = new HashMap<>();
+        for (int i = 0; i < attributes.length; i++) {
+            attributeTypes[i] = attributes[i].getAttributeType();
+            indexesByName.putIfAbsent(attributes[i].getName(), i);
+        }
+        this.rowDecoder = entityMapper.getRowDecoder(null);
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        Object[] values = new Object[attributes.length];
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Integer index = indexesByName.get(reader.readName());
+            if (index == null || attributeTypes[index] == AttributeType.OTHER) {
+                reader.skipValue();
+            } else {
+                values[index] = readValue(reader, attributeTypes[index], decoderContext);
+            }
+        }
+        reader.readEndDocument();
+        return rowDecoder.decode(new ValuesAttributeSource(values));
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T entity, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        for (Attribute<T, ?> attribute : attributes) {
+            writer.writeName(attribute.getName());
+            Object value = valueToDbSupportedValue.apply(attribute.getValue(entity));
+            if (value == null) {
+                writer.writeNull();
+            } else {
+                writeValue(writer, value, encoderContext);
+            }
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return entityClass;
+    }
+
+    public EntityMapper<T, ?> getEntityMapper() {
+        return entityMapper;
+    }
+
+    /**
+     * Returns true if this codec was compiled for given entity mapper with its current attributes
+     * (mappers that register new attributes return new list of attributes).
+     */
+    public boolean isComposedFor(EntityMapper<?, ?> entityMapper) {
+        if (this.entityMapper != entityMapper) {
+            return false;
+        }
+        List<?> currentAttributes = entityMapper.getAttributes();
+        // list with the same attributes is accepted for mappers that create new list for each call
+        return currentAttributes == mapperAttributes || Arrays.asList(attributes).equals(currentAttributes);
+    }
+
+    protected Object readValue(BsonReader reader, AttributeType type, DecoderContext decoderContext) {
+        Object value;
+        switch (reader.getCurrentBsonType()) {
+            case NULL:
+                reader.readNull();
+                value = null;
+                break;
+            case BOOLEAN:
+                value = reader.readBoolean();
+                break;
+            case INT32:
+                int i = reader.readInt32();
+                value = type == AttributeType.BYTE ? Byte.valueOf((byte)i) : Integer.valueOf(i);
+                break;
+            case INT64:
+                value = reader.readInt64();
+                break;
+            case DOUBLE:
+                double d = reader.readDouble();
+                value = type == AttributeType.FLOAT ? Float.valueOf((float)d) : Double.valueOf(d);
+                break;
+            case DATE_TIME:
+                long millis = reader.readDateTime();
+                value = type == AttributeType.INSTANT ? Instant.ofEpochMilli(millis) : new Date(millis);
+                break;
+            case STRING:
+                String s = reader.readString();
+                value = type == AttributeType.BIG_DECIMAL ? MongoConversions.asBigDecimal(s) : s;
+                break;
+            default:
+                // Other BSON types are decoded as by Document codec (and rejected by the attribute type when read)
+                value = codecRegistry.get(BSON_TYPE_CLASS_MAP.get(reader.getCurrentBsonType())).decode(reader, decoderContext);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> void writeValue(BsonWriter writer, V value, EncoderContext encoderContext) {
+        Codec<V> codec = (Codec<V>)codecRegistry.get(value.getClass());
+        encoderContext.encodeWithChildContext(codec, writer, value);
+    }
+
+    /**
+     * Attribute source of values decoded for attributes of the entity mapper.
+     */
+    private final class ValuesAttributeSource implements AttributeSource {
+        private final Object[] values;
+
+        ValuesAttributeSource(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public <A> A get(Class<A> cls, String attributeName) {
+            return get(AttributeType.of(cls), cls, attributeName);
+        }
+
+        @Override
+        public <A> A get(AttributeType type, Class<A> cls, String attributeName) {
+            Integer index = indexesByName.get(attributeName);
+            Object value = index != null && type != AttributeType.OTHER ? values[index] : null;
+            return value != null ? cls.cast(value) : null;
+        }
+    }
+}
@@ -16,12 +16,26 @@
  */
 package org.xbery.overview.mongo.repo;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import org.xbery.overview.Group;
 import org.xbery.overview.Order;
@@ -35,12 +49,17 @@ import org.xbery.overview.mapper.AttributeSource;
 import org.xbery.overview.mapper.EntityMapper;
 import org.xbery.overview.mapper.MapAttributeSource;
 import org.xbery.overview.mongo.filter.MongoCondition;
+import org.xbery.overview.mongo.filter.ContainsMode;
 import org.xbery.overview.mongo.filter.MongoConditionBuilder;
 import org.xbery.overview.mongo.mapper.DocumentAttributeSource;
+import org.xbery.overview.mongo.mapper.EntityCodec;
 import org.xbery.overview.repo.AggType;
 import org.xbery.overview.repo.Conditions;
 import org.xbery.overview.repo.Repository;
+import org.xbery.overview.repo.RepositoryException;
 import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
@@ -49,8 +68,12 @@ import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Basic abstract implementation of {@link Repository} for Mongo DB.
@@ -71,26 +94,111 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
 
     public static final Document EMPTY_DOCUMENT = new Document();
     private static final MongoConditionBuilder mongoConditionBuilder = new MongoConditionBuilder();
+    private static final MongoConditionBuilder whereConditionBuilder = new MongoConditionBuilder(false);
+    private static final String AGG_RESULT_FIELD = "agg";
+
+    // Collection handles are immutable and thread-safe, they are resolved once (concurrent resolving is harmless)
+    private volatile MongoCollection<Document> collection;
+    private volatile MongoCollection<Document> writeCollection;
+    private final ConcurrentMap<EntityMapper<?, ?>, Pair<EntityCodec<?>, MongoCollection<?>>> entityCollections = new ConcurrentHashMap<>();
 
     @Override
     public T create(T entity, boolean autogenerateKey) {
         Objects.requireNonNull(entity, "Entity should be specified");
 
-        Document doc = updateDocWithEntity(new Document(), entity);
-        T createdEntity = entity;
-        if (autogenerateKey) {
-            String id = generateId();
-            K generatedKey = convertGeneratedKey(id);
-            doc.append(getIdFieldName(), id);
-            createdEntity = entityUpdatedWithId(createdEntity, generatedKey);
+        Pair<T, Document> created = toCreatedDocument(entity, autogenerateKey);
+        getWriteCollection().insertOne(created.getSecond());
+        return created.getFirst();
+    }
+
+    /**
+     * Creates all given entities using insertMany command for each batch of {@link #getBatchSize()} entities.
+     * @throws BatchWriteException if some entities were not inserted
+     */
+    @Override
+    public List<T> createAll(List<T> entities, boolean autogenerateKey) {
+        List<T> createdEntities = new ArrayList<>();
+        if (entities == null || entities.isEmpty()) {
+            return createdEntities;
+        }
+        List<Document> docs = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            Objects.requireNonNull(entity, "Entity should be specified");
+            Pair<T, Document> created = toCreatedDocument(entity, autogenerateKey);
+            createdEntities.add(created.getFirst());
+            docs.add(created.getSecond());
         }
-        getCollection().insertOne(doc);
-        return createdEntity;
+        writeInBatches(docs, (collection, batch) -> {
+            collection.insertMany(batch, new InsertManyOptions().ordered(isOrderedBulkWrite()));
+            return batch.size();
+        });
+        return createdEntities;
     }
 
+    /**
+     * Updates all given entities using bulkWrite command for each batch of {@link #getBatchSize()} entities.
+     * @return count of matched (found) entities
+     * @throws BatchWriteException if some entities were not updated
+     */
+    @Override
+    public int updateAll(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return 0;
+        }
+        List<WriteModel<Document>> updates = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            Objects.requireNonNull(entity, "Entity should be specified");
+            Document doc = updateDocWithEntity(new Document(), entity);
+            doc.remove(getIdFieldName()); // sanity check that _id won't be updated
+            Document pkFilter = updateDocWithAttributes(new Document(), getEntityMapper().decomposePrimaryKeyOfEntity(entity));
+            updates.add(new UpdateOneModel<>(pkFilter, new Document("$set", doc)));
+        }
+        return (int)writeInBatches(updates, (collection, batch) ->
+            collection.bulkWrite(batch, new BulkWriteOptions().ordered(isOrderedBulkWrite())).getMatchedCount());
+    }
+
+    /**
+     * Deletes entities with given ids using bulkWrite command for each batch of {@link #getBatchSize()} ids.
+     * @throws BatchWriteException if some entities were not deleted
+     */
+    @Override
+    public int deleteByIds(Collection<K> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        List<WriteModel<Document>> deletes = new ArrayList<>(ids.size());
+        for (K id : ids) {
+            Objects.requireNonNull(id, "id should be specified");
+            deletes.add(new DeleteOneModel<>(updateDocWithAttributes(new Document(), getEntityMapper().decomposePrimaryKey(id))));
+        }
+        return (int)writeInBatches(deletes, (collection, batch) ->
+            collection.bulkWrite(batch, new BulkWriteOptions().ordered(isOrderedBulkWrite())).getDeletedCount());
+    }
+
+    /**
+     * Updates document of given entity using updateOne command and returns the given entity if the document was found.
+     * If {@link #isUpdateReturningDocument()} is true, the entity is built from updated document returned by the server
+     * (see {@link #updateAndGet(Object)}).
+     */
     @Override
     public Optional<T> update(T entity) {
         Objects.requireNonNull(entity, "Entity should be specified");
+        if (isUpdateReturningDocument()) {
+            return updateAndGet(entity);
+        }
+        long matchedCount = updateOne(getEntityMapper().decomposePrimaryKeyOfEntity(entity), entityToAttributesWithValues(entity));
+        return matchedCount > 0 ? Optional.of(entity) : Optional.<T>empty();
+    }
+
+    /**
+     * Updates document of given entity atomically using findOneAndUpdate command and returns entity built from the updated
+     * document, so it reflects also the state of document on the server (e.g. attributes changed concurrently
+     * by other updates of selected attributes).
+     * @param entity entity to update
+     * @return entity built from updated document, or empty result if the document was not found
+     */
+    public Optional<T> updateAndGet(T entity) {
+        Objects.requireNonNull(entity, "Entity should be specified");
 
         List<Pair<Attribute<T, ?>, Object>> attributesWithValues = entityToAttributesWithValues(entity);
         final Document res = findOneAndUpdate(getEntityMapper().decomposePrimaryKeyOfEntity(entity), attributesWithValues);
@@ -104,45 +212,63 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
     @Override
     public int update(K id, List<Pair<Attribute<T, ?>, Object>> attributesWithValues) {
         Objects.requireNonNull(id, "id should be specified");
-        final Document res = findOneAndUpdate(getEntityMapper().decomposePrimaryKey(id), attributesWithValues);
-        if (res != null) {
-            // Document was found
-            return 1;
-        }
-        return 0;
+        return updateOne(getEntityMapper().decomposePrimaryKey(id), attributesWithValues) > 0 ? 1 : 0;
     }
 
     @Override
     public boolean delete(K id) {
         Objects.requireNonNull(id, "id should be specified");
         Document pkFilter = updateDocWithAttributes(new Document(), getEntityMapper().decomposePrimaryKey(id));
-        return getCollection().findOneAndDelete(pkFilter) != null;
+        return getWriteCollection().findOneAndDelete(pkFilter) != null;
     }
 
     @Override
     public int deleteByFilter(F filter) {
         Objects.requireNonNull(filter, "filter should be specified");
         MongoFilter mongoFilter = conditionsToMongoFilter(getEntityMapper().composeFilterConditions(filter));
-        DeleteResult result = getCollection().deleteMany(mongoFilter.getFilter().orElse(EMPTY_DOCUMENT)); // TODO RBe: Test passing of empty filter
+        DeleteResult result = getWriteCollection().deleteMany(mongoFilter.getFilter().orElse(EMPTY_DOCUMENT)); // TODO RBe: Test passing of empty filter
         return (int)result.getDeletedCount(); // TODO RBe: Checked overflow typecast like in Guava
     }
 
+    /**
+     * Aggregates values of given attribute (or counts all documents for "*" attribute name) on the database server.
+     * Count without grouping is evaluated by count command, other aggregations by $match and $group stages
+     * of aggregation pipeline. If grouping is specified, result of the first group is returned (as with SQL repository).
+     */
     @Override
     public <R, T, F> R aggByFilter(AggType aggType, Class<R> resultClass, String attrName, F filter, List<Group> grouping, EntityMapper<T, F> entityMapper) {
         Objects.requireNonNull(aggType, "aggregation type should be specified");
         Objects.requireNonNull(resultClass, "result class should be specified");
         Objects.requireNonNull(attrName, "attribute name should be specified");
 
-        String aggAttributeAlias = attrName + "_agg";
-
-        throw new UnsupportedOperationException("Not implemented yet");
-//        List<R> results = queryWithOverview(
-//            aggFunction(aggType, attrName) + " AS " + aggAttributeAlias,
-//            filter != null ? entityMapper.composeFilterConditions(filter) : new ArrayList<>(),
-//            null,
-//            null,
-//            as -> as.get(resultClass, aggAttributeAlias));
-//        return results != null && !results.isEmpty() ? results.get(0) : null;
+        boolean allDocuments = "*".equals(attrName);
+        if (allDocuments && aggType != AggType.COUNT) {
+            throw new IllegalArgumentException("Only count of all documents can be aggregated");
+        }
+        String fieldName = allDocuments ? null : toDocumentAttributeName(attrName);
+        MongoFilter mongoFilter = conditionsToMongoFilter(filter != null ? entityMapper.composeFilterConditions(filter) : null);
+        Object result;
+        if (aggType == AggType.COUNT && (grouping == null || grouping.isEmpty())) {
+            if (fieldName != null) {
+                // Count of non-null values
+                mongoFilter.add(Filters.ne(fieldName, null));
+            }
+            result = getCollection().count(mongoFilter.getFilter().orElse(EMPTY_DOCUMENT));
+        } else {
+            if (aggType != AggType.COUNT) {
+                checkAggregatedAttribute(entityMapper, attrName);
+            }
+            List<Bson> pipeline = new ArrayList<>();
+            mongoFilter.getFilter().ifPresent(f -> pipeline.add(Aggregates.match(f)));
+            pipeline.add(new Document("$group", new Document(FLD_ID, createGroupId(grouping)).append(AGG_RESULT_FIELD, createAccumulator(aggType, fieldName))));
+            pipeline.add(Aggregates.limit(1));
+            Document aggregated = getCollection().aggregate(pipeline).first();
+            result = aggregated != null ? aggregated.get(AGG_RESULT_FIELD) : null;
+            if (result == null && aggType == AggType.COUNT) {
+                result = 0;
+            }
+        }
+        return convertAggResult(result, resultClass);
     }
 
     @Override
@@ -153,13 +279,16 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
     @Override
     public <T, K, F> Optional<T> findById(K id, EntityMapper<T, F> entityMapper) {
         Document pkFilter = updateDocWithAttributes(new Document(), entityMapper.decomposePrimaryKey(id));
+        if (isEntityCodecUsed()) {
+            return Optional.ofNullable(getEntityCollection(entityMapper).find(pkFilter).first());
+        }
         return CollectionFuns.headOpt(getCollection().find(pkFilter)).map(doc -> entityMapper.buildEntity(new DocumentAttributeSource(doc)));
     }
 
     @Override
     public <T, F> List<T> findByOverview(final Overview<F> overview, EntityMapper<T, F> entityMapper) {
         List<Condition> filterConditions = overview.getFilter() != null ? entityMapper.composeFilterConditions(overview.getFilter()) : new ArrayList<>();
-        return queryWithOverview(entityMapper.getAttributes(), filterConditions, overview.getOrdering(), overview.getPagination(), as -> entityMapper.buildEntity(as));
+        return queryEntities(entityMapper, entityMapper.getAttributes(), filterConditions, overview.getOrdering(), overview.getPagination());
     }
 
     @Override
@@ -170,12 +299,12 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
     protected abstract MongoDatabase getDatabase();
 
     protected List<T> findByOverview(Overview<F> overview, List<Attribute<T, ?>> projectionAttributes) {
-        return queryWithOverview(
+        return queryEntities(
+            getEntityMapper(),
             projectionAttributes,
             overview.getFilter() != null ? getEntityMapper().composeFilterConditions(overview.getFilter()) : null,
             overview.getOrdering(),
-            overview.getPagination(),
-            as -> getEntityMapper().buildEntity(as)
+            overview.getPagination()
         );
     }
 
@@ -184,12 +313,12 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
     }
 
     protected <T, F> List<T> findByFilterConditions(List<Condition> filterConditions, List<Order> ordering, EntityMapper<T, F> entityMapper) {
-        return queryWithOverview(
+        return queryEntities(
+            entityMapper,
             entityMapper.getAttributes(),
             filterConditions,
             ordering,
-            null,
-            as -> entityMapper.buildEntity(as)
+            null
         );
     }
 
@@ -263,16 +392,7 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
         Function<AttributeSource, T> entityBuilder) {
 
         List<T> results = new ArrayList<>();
-        MongoFilter mongoFilter = conditionsToMongoFilter(filterConditions);
-        // TODO RBe: Test empty filter passing.
-        Bson projection = createProjectionDocument(projectionAttributes);
-        List<Order> someOrdering = (ordering == null || ordering.isEmpty()) ? createDefaultOrdering() : ordering;
-        Bson sort = createSortDocument(someOrdering);
-        MongoCursor<Document> cursor = getCollection()
-            .find(mongoFilter.getFilter().orElse(EMPTY_DOCUMENT))
-            .projection(projection)
-            .sort(sort)
-            .skip(pagination.getOffset()).limit(pagination.getLimit()).iterator();
+        MongoCursor<Document> cursor = openCursor(projectionAttributes, filterConditions, ordering, pagination);
         try {
             while (cursor.hasNext()) {
                 Document doc = cursor.next();
@@ -284,6 +404,165 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
         return results;
     }
 
+    /**
+     * Queries entities of given entity mapper, decoded by {@link EntityCodec} if {@link #isEntityCodecUsed()}.
+     */
+    protected <T> List<T> queryEntities(
+        EntityMapper<T, ?> entityMapper,
+        List<Attribute<T, ?>> projectionAttributes,
+        List<Condition> filterConditions,
+        List<Order> ordering,
+        Pagination pagination) {
+
+        if (!isEntityCodecUsed()) {
+            return queryWithOverview(projectionAttributes, filterConditions, ordering, pagination, as -> entityMapper.buildEntity(as));
+        }
+        List<T> results = new ArrayList<>();
+        try (MongoCursor<T> cursor = find(getEntityCollection(entityMapper), projectionAttributes, filterConditions, ordering, pagination).iterator()) {
+            while (cursor.hasNext()) {
+                results.add(cursor.next());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns stream of results backed by open Mongo cursor. Entities are built one by one while the stream is consumed,
+     * documents are fetched in batches of {@link #getFetchSize()} documents. Returned stream should be closed after use.
+     */
+    @Override
+    public <T, F> Stream<T> streamByOverview(final Overview<F> overview, EntityMapper<T, F> entityMapper) {
+        List<Condition> filterConditions = overview.getFilter() != null ? entityMapper.composeFilterConditions(overview.getFilter()) : new ArrayList<>();
+        if (isEntityCodecUsed()) {
+            MongoCursor<T> cursor = find(getEntityCollection(entityMapper), entityMapper.getAttributes(), filterConditions, overview.getOrdering(), overview.getPagination()).iterator();
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false).onClose(cursor::close);
+        }
+        MongoCursor<Document> cursor = openCursor(entityMapper.getAttributes(), filterConditions, overview.getOrdering(), overview.getPagination());
+        Iterator<T> iterator = new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return entityMapper.buildEntity(new DocumentAttributeSource(cursor.next()));
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(cursor::close);
+    }
+
+    protected <T> MongoCursor<Document> openCursor(
+        List<Attribute<T, ?>> projectionAttributes,
+        List<Condition> filterConditions,
+        List<Order> ordering,
+        Pagination pagination) {
+
+        return find(getCollection(), projectionAttributes, filterConditions, ordering, pagination).iterator();
+    }
+
+    /**
+     * Prepares query of given collection with projection, filter, sorting and pagination.
+     * @param collection collection to query (with class of documents the results are decoded to)
+     * @param <D> type of results
+     */
+    protected <T, D> FindIterable<D> find(
+        MongoCollection<D> collection,
+        List<Attribute<T, ?>> projectionAttributes,
+        List<Condition> filterConditions,
+        List<Order> ordering,
+        Pagination pagination) {
+
+        MongoFilter mongoFilter = conditionsToMongoFilter(filterConditions);
+        // TODO RBe: Test empty filter passing.
+        Bson projection = createProjectionDocument(projectionAttributes);
+        List<Order> someOrdering = (ordering == null || ordering.isEmpty()) ? createDefaultOrdering() : ordering;
+        Bson sort = createSortDocument(someOrdering);
+        if (pagination != null && pagination.isKeyset() && !pagination.getKeyset().isEmpty()) {
+            if (someOrdering.size() != pagination.getKeyset().size()) {
+                throw new RepositoryException("Keyset " + pagination.getKeyset() + " does not correspond to ordering " + someOrdering);
+            }
+            mongoFilter.add(getConditionBuilder().buildKeysetCondition(someOrdering, pagination.getKeyset(), this::toDocumentAttributeName, this::getDbSupportedAttributeValue).getCondition());
+        }
+        FindIterable<D> found = collection
+            .find(mongoFilter.getFilter().orElse(EMPTY_DOCUMENT))
+            .projection(projection)
+            .sort(sort);
+        if (pagination != null) {
+            if (!pagination.isKeyset()) {
+                found = found.skip(pagination.getOffset());
+            }
+            found = found.limit(pagination.getLimit());
+        }
+        int fetchSize = getFetchSize();
+        if (fetchSize > 0) {
+            found = found.batchSize(fetchSize);
+        }
+        return found;
+    }
+
+    /**
+     * Count of documents written by one command of batch operations (createAll, updateAll, deleteByIds).
+     * Subclasses can override this.
+     * @return batch size
+     */
+    protected int getBatchSize() {
+        return 1000;
+    }
+
+    /**
+     * Returns true if writes of batch operations are ordered: the first failed write stops the operation.
+     * Otherwise all writes are attempted (and possibly executed in parallel by the server).
+     * Subclasses can override this.
+     */
+    protected boolean isOrderedBulkWrite() {
+        return true;
+    }
+
+    /**
+     * Write concern of inserts, updates and deletes, null for default write concern of the collection.
+     * Subclasses can override this.
+     */
+    protected WriteConcern getWriteConcern() {
+        return null;
+    }
+
+    /**
+     * Read preference of queries, null for default read preference of the collection.
+     * Subclasses can override this.
+     */
+    protected ReadPreference getReadPreference() {
+        return null;
+    }
+
+    /**
+     * Read concern of queries, null for default read concern of the collection.
+     * Subclasses can override this.
+     */
+    protected ReadConcern getReadConcern() {
+        return null;
+    }
+
+    /**
+     * Returns true if entities are decoded from BSON by {@link EntityCodec} compiled from attributes of entity mapper,
+     * false if they are built from {@link Document} using {@link DocumentAttributeSource} by
+     * {@link EntityMapper#buildEntity(AttributeSource)} (default). Subclasses can enable the codec if entities of their
+     * mappers are built only from attributes of simple types (the codec does not decode nested documents and lists
+     * and does not call overridden buildEntity).
+     */
+    protected boolean isEntityCodecUsed() {
+        return false;
+    }
+
+    /**
+     * Count of documents fetched from database at once by cursor. Zero means the driver's default.
+     * Subclasses can override this.
+     * @return batch size of cursor
+     */
+    protected int getFetchSize() {
+        return 0;
+    }
+
     protected <T> Bson createProjectionDocument(List<Attribute<T, ?>> projectionAttributes) {
         if (projectionAttributes == null) {
             return EMPTY_DOCUMENT;
@@ -295,42 +574,275 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
         Document sort = new Document();
         if (ordering != null) {
             for (Order order : ordering) {
-                sort = sort.append(order.getAttribute(), order.isDesc() ? -1 : 1);
+                sort = sort.append(toDocumentAttributeName(order.getAttribute()), order.isDesc() ? -1 : 1);
             }
         }
         return sort;
     }
 
+    /**
+     * Returns name of attribute in document for given (possibly full, qualified by collection name) attribute name.
+     * @param attributeName
+     * @return
+     */
+    protected String toDocumentAttributeName(String attributeName) {
+        String collectionPrefix = getEntityMapper().getTableName() + ".";
+        return attributeName.startsWith(collectionPrefix) ? attributeName.substring(collectionPrefix.length()) : attributeName;
+    }
+
     protected MongoConditionBuilder getConditionBuilder() {
-        return mongoConditionBuilder;
+        return isExprSupported() ? mongoConditionBuilder : whereConditionBuilder;
     }
 
-    protected String aggFunction(AggType aggType, String attrName) {
-        String fun;
+    /**
+     * Returns true if the server supports $expr queries (MongoDB 3.6 or newer), they are used for equality of attributes.
+     * Subclasses working with older servers can override this to use JavaScript $where instead.
+     * @return true if $expr queries are supported
+     */
+    protected boolean isExprSupported() {
+        return true;
+    }
+
+    /**
+     * Returns mode of evaluation of contains conditions of given attribute. Substring search is used by default,
+     * {@link ContainsMode#PREFIX} can use index of attribute, {@link ContainsMode#TEXT} requires text index of collection.
+     * @param attribute attribute
+     * @return contains mode
+     */
+    protected ContainsMode getContainsMode(Attribute<?, ?> attribute) {
+        return ContainsMode.SUBSTRING;
+    }
+
+    /**
+     * Creates accumulator expression of $group stage for given aggregation type.
+     * @param aggType aggregation type
+     * @param fieldName name of aggregated field, or null for count of all documents
+     * @return accumulator expression
+     */
+    protected Document createAccumulator(AggType aggType, String fieldName) {
+        String operator;
+        Object expression = "$" + fieldName;
         switch (aggType) {
             case COUNT:
-                fun = "COUNT(" + attrName + ")";
+                operator = "$sum";
+                // Counts documents with non-null value of field
+                expression = fieldName == null ? 1 : new Document("$cond", Arrays.asList(new Document("$gt", Arrays.asList(expression, null)), 1, 0));
                 break;
             case SUM:
-                fun = "SUM(" + attrName + ")";
+                operator = "$sum";
                 break;
             case MIN:
-                fun = "MIN(" + attrName + ")";
+                operator = "$min";
                 break;
             case MAX:
-                fun = "MAX(" + attrName + ")";
+                operator = "$max";
                 break;
             case AVG:
-                fun = "AVG(" + attrName + ")";
+                operator = "$avg";
                 break;
             default:
                 throw new IllegalArgumentException("Unsupported aggregation type: " + aggType);
         }
-        return fun;
+        return new Document(operator, expression);
+    }
+
+    /**
+     * Creates _id expression of $group stage from given grouping.
+     * @param grouping grouping, or null
+     * @return field or document with fields to group by, or null for one group of all documents
+     */
+    protected Object createGroupId(List<Group> grouping) {
+        if (grouping == null || grouping.isEmpty()) {
+            return null;
+        }
+        if (grouping.size() == 1) {
+            return "$" + toDocumentAttributeName(grouping.get(0).getAttribute());
+        }
+        Document groupId = new Document();
+        for (int i = 0; i < grouping.size(); i++) {
+            groupId.append("g" + i, "$" + toDocumentAttributeName(grouping.get(i).getAttribute()));
+        }
+        return groupId;
+    }
+
+    /**
+     * Converts aggregated value returned by the database to required class.
+     */
+    protected <R> R convertAggResult(Object value, Class<R> resultClass) {
+        Object result;
+        if (value == null || resultClass.isInstance(value)) {
+            result = value;
+        } else if (value instanceof Number && Number.class.isAssignableFrom(resultClass)) {
+            Number number = (Number)value;
+            if (resultClass == Integer.class) {
+                result = Math.toIntExact(number.longValue());
+            } else if (resultClass == Long.class) {
+                result = number.longValue();
+            } else if (resultClass == Double.class) {
+                result = number.doubleValue();
+            } else if (resultClass == BigDecimal.class) {
+                result = number instanceof Double || number instanceof Float ? BigDecimal.valueOf(number.doubleValue()) : new BigDecimal(number.toString());
+            } else {
+                throw new RepositoryException("Aggregated value " + value + " cannot be converted to " + resultClass);
+            }
+        } else if (value instanceof String && resultClass == BigDecimal.class) {
+            result = new BigDecimal((String)value);
+        } else if (value instanceof Date && resultClass == Instant.class) {
+            result = ((Date)value).toInstant();
+        } else {
+            throw new RepositoryException("Aggregated value " + value + " cannot be converted to " + resultClass);
+        }
+        return resultClass.cast(result);
+    }
+
+    /**
+     * Checks that values of aggregated attribute are compared and summed by the database correctly.
+     * Decimal values are stored as strings by default, so they cannot be aggregated by the database.
+     */
+    protected <T> void checkAggregatedAttribute(EntityMapper<T, ?> entityMapper, String attrName) {
+        for (Attribute<T, ?> attribute : entityMapper.getAttributes()) {
+            if ((attribute.getName().equals(attrName) || attribute.getNameFull().equals(attrName))
+                && BigDecimal.class.equals(attribute.getAttributeClass()) && getDbSupportedAttributeValue(BigDecimal.ZERO) instanceof String) {
+                throw new RepositoryException("Decimal attribute " + attrName + " is stored as string and cannot be aggregated by the database");
+            }
+        }
     }
 
+    /**
+     * Returns collection of entities (with configured read preference and read concern), resolved once per repository.
+     */
     protected MongoCollection<Document> getCollection() {
-        return getDatabase().getCollection(getEntityMapper().getTableName());
+        MongoCollection<Document> coll = this.collection;
+        if (coll == null) {
+            coll = getDatabase().getCollection(getEntityMapper().getTableName());
+            ReadPreference readPreference = getReadPreference();
+            if (readPreference != null) {
+                coll = coll.withReadPreference(readPreference);
+            }
+            ReadConcern readConcern = getReadConcern();
+            if (readConcern != null) {
+                coll = coll.withReadConcern(readConcern);
+            }
+            this.collection = coll;
+        }
+        return coll;
+    }
+
+    /**
+     * Returns collection used to insert, update and delete documents (with configured write concern).
+     */
+    protected MongoCollection<Document> getWriteCollection() {
+        MongoCollection<Document> coll = this.writeCollection;
+        if (coll == null) {
+            WriteConcern writeConcern = getWriteConcern();
+            coll = writeConcern != null ? getCollection().withWriteConcern(writeConcern) : getCollection();
+            this.writeCollection = coll;
+        }
+        return coll;
+    }
+
+    /**
+     * Returns collection that decodes documents to entities of given entity mapper using {@link EntityCodec}.
+     * The codec is compiled again when attributes of the mapper are changed.
+     * @param entityMapper entity mapper
+     * @param <T> type of entity
+     * @return collection of entities
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> MongoCollection<T> getEntityCollection(EntityMapper<T, ?> entityMapper) {
+        Pair<EntityCodec<?>, MongoCollection<?>> cached = entityCollections.get(entityMapper);
+        if (cached == null || !cached.getFirst().isComposedFor(entityMapper)) {
+            MongoCollection<Document> coll = getCollection();
+            EntityCodec<T> codec = createEntityCodec(entityMapper, coll.getCodecRegistry());
+            MongoCollection<T> entityCollection = coll.withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codec), coll.getCodecRegistry()))
+                .withDocumentClass(codec.getEncoderClass());
+            cached = new Pair<>(codec, entityCollection);
+            entityCollections.put(entityMapper, cached);
+        }
+        return (MongoCollection<T>)cached.getSecond();
+    }
+
+    /**
+     * Creates codec of entities of given entity mapper. Class of entities is resolved from entity created by the mapper.
+     * Subclasses can override this.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> EntityCodec<T> createEntityCodec(EntityMapper<T, ?> entityMapper, CodecRegistry codecRegistry) {
+        Class<T> entityClass = (Class<T>)entityMapper.createEntity().getClass();
+        return new EntityCodec<>(entityMapper, entityClass, this::getDbSupportedAttributeValue, codecRegistry);
+    }
+
+    /**
+     * Writes given items in batches of {@link #getBatchSize()} items. Failures of ordered writes stop the writing,
+     * failures of unordered writes are collected from all batches.
+     * @param items items to write
+     * @param batchWriter writes batch of items and returns count of written items
+     * @param <W> type of written item
+     * @return count of written items
+     * @throws BatchWriteException if some items were not written
+     */
+    protected <W> long writeInBatches(List<W> items, BatchWriter<W> batchWriter) {
+        MongoCollection<Document> collection = getWriteCollection();
+        int batchSize = Math.max(1, getBatchSize());
+        long writtenCount = 0;
+        SortedMap<Integer, String> failures = new TreeMap<>();
+        MongoBulkWriteException firstException = null;
+        for (int from = 0; from < items.size(); from += batchSize) {
+            List<W> batch = items.subList(from, Math.min(items.size(), from + batchSize));
+            try {
+                writtenCount += batchWriter.write(collection, batch);
+            } catch (MongoBulkWriteException ex) {
+                BulkWriteResult result = ex.getWriteResult();
+                writtenCount += result.getInsertedCount() + result.getMatchedCount() + result.getDeletedCount();
+                for (BulkWriteError error : ex.getWriteErrors()) {
+                    failures.put(from + error.getIndex(), error.getMessage());
+                }
+                if (ex.getWriteConcernError() != null) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        failures.putIfAbsent(from + i, ex.getWriteConcernError().getMessage());
+                    }
+                }
+                if (firstException == null) {
+                    firstException = ex;
+                }
+                if (isOrderedBulkWrite()) {
+                    break;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw new BatchWriteException("Writing of " + failures.size() + " of " + items.size() + " items failed: " + firstException.getMessage(),
+                writtenCount, failures, firstException);
+        }
+        return writtenCount;
+    }
+
+    /**
+     * Writes batch of items to collection.
+     * @param <W> type of written item
+     */
+    @FunctionalInterface
+    protected interface BatchWriter<W> {
+        /**
+         * @return count of written items
+         */
+        long write(MongoCollection<Document> collection, List<W> batch);
+    }
+
+    /**
+     * Converts created entity to document, generates key of entity if required.
+     * @return created entity (possibly with generated key) and its document
+     */
+    protected Pair<T, Document> toCreatedDocument(T entity, boolean autogenerateKey) {
+        Document doc = updateDocWithEntity(new Document(), entity);
+        T createdEntity = entity;
+        if (autogenerateKey) {
+            String id = generateId();
+            K generatedKey = convertGeneratedKey(id);
+            doc.append(getIdFieldName(), id);
+            createdEntity = entityUpdatedWithId(createdEntity, generatedKey);
+        }
+        return new Pair<>(createdEntity, doc);
     }
 
     protected Document updateDocWithEntity(Document doc, T entity) {
@@ -377,10 +889,30 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
         return FLD_ID;
     }
 
+    /**
+     * Returns true if {@link #update(Object)} should return entity built from updated document returned by the server
+     * instead of the given entity. Subclasses can override this.
+     */
+    protected boolean isUpdateReturningDocument() {
+        return false;
+    }
+
+    /**
+     * Sets given attributes of document with given primary key using updateOne command, the document is not returned.
+     * @return count of matched documents
+     */
+    protected long updateOne(List<Pair<Attribute<T, ?>, Object>> primaryAttributesWithValues, List<Pair<Attribute<T, ?>, Object>> updatedAttributesWithValues) {
+        Document doc = updateDocWithAttributes(new Document(), updatedAttributesWithValues);
+        doc.remove(getIdFieldName()); // sanity check that _id won't be updated
+        return getWriteCollection().updateOne(
+            updateDocWithAttributes(new Document(), primaryAttributesWithValues),
+            new Document().append("$set", doc)).getMatchedCount();
+    }
+
     protected Document findOneAndUpdate(List<Pair<Attribute<T, ?>, Object>> primaryAttributesWithValues, List<Pair<Attribute<T, ?>, Object>> updatedAttributesWithValues) {
         Document doc = updateDocWithAttributes(new Document(), updatedAttributesWithValues);
         doc.remove(getIdFieldName()); // sanity check that _id won't be updated
-        return getCollection().findOneAndUpdate( // atomic find and modify
+        return getWriteCollection().findOneAndUpdate( // atomic find and modify
             updateDocWithAttributes(new Document(), primaryAttributesWithValues),
             new Document().append("$set", doc),
             new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
@@ -389,11 +921,9 @@ public abstract class AbstractMongoRepository<T, K, F> implements Repository<T,
     protected MongoFilter conditionsToMongoFilter(List<Condition> conditions) {
         final MongoFilter mf = new MongoFilter();
         if (conditions != null) {
-            List<MongoCondition> mongoConditions = conditions.stream().map(c -> getConditionBuilder().build(c, this::getDbSupportedAttributeValue)).collect(Collectors.toList());
+            List<MongoCondition> mongoConditions = conditions.stream().map(c -> getConditionBuilder().build(c, this::getDbSupportedAttributeValue, this::getContainsMode)).collect(Collectors.toList());
             mongoConditions.forEach(c -> mf.add(c.getCondition()));
         }
         return mf;
     }
-
-    // TODO RBe: Read/write concerns configuration
 }
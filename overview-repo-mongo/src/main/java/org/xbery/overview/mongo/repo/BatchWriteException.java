@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.mongo.repo;
+
+import org.xbery.overview.repo.RepositoryException;
+
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * Failure of some writes of a batch operation (e.g. createAll, updateAll, deleteByIds) of Mongo repository.
+ * Failed items are identified by their indexes in the list of written items.
+ * @author Radek Beran
+ */
+public class BatchWriteException extends RepositoryException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long writtenCount;
+    private final SortedMap<Integer, String> failures;
+
+    public BatchWriteException(String message, long writtenCount, SortedMap<Integer, String> failures, Throwable cause) {
+        super(message, cause);
+        this.writtenCount = writtenCount;
+        this.failures = Collections.unmodifiableSortedMap(failures);
+    }
+
+    /**
+     * Returns count of successfully written (inserted, matched or deleted) items.
+     */
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * Returns error messages by indexes of failed items in the list of written items.
+     */
+    public SortedMap<Integer, String> getFailures() {
+        return failures;
+    }
+}
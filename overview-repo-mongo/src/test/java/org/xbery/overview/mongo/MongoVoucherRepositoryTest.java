@@ -1,22 +1,48 @@
 package org.xbery.overview.mongo;
 
 import com.github.fakemongo.Fongo;
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.xbery.overview.Group;
+import org.xbery.overview.Order;
+import org.xbery.overview.Overview;
+import org.xbery.overview.Pagination;
 import org.xbery.overview.VoucherTestData;
 import org.xbery.overview.common.Pair;
 import org.xbery.overview.domain.Voucher;
+import org.xbery.overview.filter.ContainsCondition;
+import org.xbery.overview.filter.EqAttributesCondition;
+import org.xbery.overview.filter.InCondition;
+import org.xbery.overview.mapper.Attr;
+import org.xbery.overview.mongo.mapper.EntityCodec;
+import org.xbery.overview.mongo.filter.ContainsMode;
+import org.xbery.overview.mongo.filter.MongoConditionBuilder;
+import org.xbery.overview.mongo.repo.BatchWriteException;
+import org.xbery.overview.repo.AggType;
+import org.xbery.overview.repo.RepositoryException;
 import org.xbery.overview.repo.VoucherMapper;
 import org.xbery.overview.repo.VoucherRepository;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Radek Beran
@@ -43,6 +69,139 @@ public class MongoVoucherRepositoryTest {
         assertTrue("Created voucher equals voucher to store", EqualsBuilder.reflectionEquals(voucher, voucherCreated));
     }
 
+    @Test
+    public void streamByOverview() {
+        MongoVoucherMapper mapper = MongoVoucherMapper.getInstance();
+        repo.createAll(Arrays.asList(testData.newVoucher("ST02"), testData.newVoucher("ST03"), testData.newVoucher("ST01")), false);
+
+        Overview<Object> overview = Overview.<Object>fromOrdering(new Order(mapper.code)).withPagination(new Pagination(0, 2));
+        try (Stream<Voucher> vouchers = repo.streamByOverview(overview)) {
+            assertEquals(Arrays.asList("ST01", "ST02"), vouchers.map(Voucher::getCode).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void findByOverviewWithKeysetPagination() {
+        MongoVoucherMapper mapper = MongoVoucherMapper.getInstance();
+        repo.createAll(Arrays.asList(testData.newVoucher("KS03"), testData.newVoucher("KS01"), testData.newVoucher("KS02")), false);
+
+        Overview<Object> overview = Overview.<Object>fromOrdering(new Order(mapper.code)).withPagination(Pagination.firstKeysetPage(2));
+        assertEquals(Arrays.asList("KS01", "KS02"), repo.findByOverview(overview).stream().map(Voucher::getCode).collect(Collectors.toList()));
+        overview = overview.withPagination(overview.getPagination().withKeyset(Arrays.asList("KS02")));
+        assertEquals(Arrays.asList("KS03"), repo.findByOverview(overview).stream().map(Voucher::getCode).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void conditionsWithoutJavaScript() {
+        MongoVoucherMapper mapper = MongoVoucherMapper.getInstance();
+        MongoConditionBuilder builder = new MongoConditionBuilder();
+        MongoCollection<Document> collection = db.getCollection(mapper.getTableName());
+        repo.createAll(Arrays.asList(testData.newVoucher("CN.1"), testData.newVoucher("CN01"), testData.newVoucher("XCN.1")), false);
+
+        Bson prefix = builder.build(new ContainsCondition<>(mapper.code, "CN."), v -> v, a -> ContainsMode.PREFIX).getCondition();
+        assertEquals(Arrays.asList("CN.1"), findCodes(collection, prefix));
+        Bson substring = builder.build(new ContainsCondition<>(mapper.code, "CN."), v -> v).getCondition();
+        assertEquals(Arrays.asList("CN.1", "XCN.1"), findCodes(collection, substring));
+        Bson emptyIn = builder.build(new InCondition<>(mapper.code, Collections.emptyList()), v -> v).getCondition();
+        assertEquals(Collections.emptyList(), findCodes(collection, emptyIn));
+
+        Bson eqAttributes = builder.build(new EqAttributesCondition<>(mapper.valid_from, mapper.valid_to), v -> v).getCondition();
+        String rendered = eqAttributes.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()).toJson();
+        assertTrue(rendered, rendered.contains("$expr") && !rendered.contains("$where"));
+        Bson eqAttributesWhere = new MongoConditionBuilder(false).build(new EqAttributesCondition<>(mapper.valid_from, mapper.valid_to), v -> v).getCondition();
+        String renderedWhere = eqAttributesWhere.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()).toJson();
+        assertTrue("Servers older than 3.6 fall back to $where", renderedWhere.contains("$where") && !renderedWhere.contains("$expr"));
+        Bson text = builder.build(new ContainsCondition<>(mapper.code, "CN"), v -> v, a -> ContainsMode.TEXT).getCondition();
+        assertTrue(text.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()).containsKey("$text"));
+    }
+
+    private List<String> findCodes(MongoCollection<Document> collection, Bson filter) {
+        return collection.find(filter).map(d -> d.getString("_id")).into(new ArrayList<>()).stream().sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void aggByFilter() {
+        MongoVoucherMapper mapper = MongoVoucherMapper.getInstance();
+        Instant now = Instant.parse("2018-02-01T10:00:00Z");
+        for (int i = 1; i <= 3; i++) {
+            Voucher voucher = testData.newVoucher("AG0" + i);
+            voucher.setCreationTime(now.plusSeconds(i));
+            voucher.setReservedBy(i < 3 ? "cust01" : null);
+            repo.create(voucher, false);
+        }
+
+        assertEquals(3, repo.countByFilter(null, null));
+        assertEquals(Long.valueOf(2), repo.aggByFilter(AggType.COUNT, Long.class, mapper.reserved_by.getName(), null, null));
+        assertEquals("Count of the only group", 3, repo.countByFilter(null, Arrays.asList(new Group(mapper.invoice_note))));
+        assertEquals(now.plusSeconds(1), repo.aggByFilter(AggType.MIN, Instant.class, mapper.creation_time.getNameFull(), null, null));
+        assertEquals("AG03", repo.aggByFilter(AggType.MAX, String.class, mapper.code.getName(), null, null));
+        try {
+            repo.aggByFilter(AggType.SUM, BigDecimal.class, mapper.discount_price.getName(), null, null);
+            fail("Decimal values stored as strings cannot be summed");
+        } catch (RepositoryException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void decodingByEntityCodec() {
+        MongoVoucherMapper mapper = MongoVoucherMapper.getInstance();
+        MongoVoucherRepository codecRepo = new MongoVoucherRepository(db) {
+            @Override
+            protected boolean isEntityCodecUsed() {
+                return true;
+            }
+        };
+        Voucher voucher = repo.create(testData.newVoucher("EC01"), false);
+        db.getCollection(mapper.getTableName()).updateOne(new Document("_id", "EC01"), new Document("$set", new Document("unmapped", new Document("x", 1))));
+
+        Voucher decoded = codecRepo.findById("EC01").get();
+        assertTrue("Voucher decoded by codec equals stored voucher", EqualsBuilder.reflectionEquals(voucher, decoded));
+        assertTrue("Voucher decoded by codec equals voucher built from document", EqualsBuilder.reflectionEquals(repo.findById("EC01").get(), decoded));
+        try (Stream<Voucher> vouchers = codecRepo.streamByOverview(new Overview<>(null, null, null))) {
+            assertTrue(EqualsBuilder.reflectionEquals(voucher, vouchers.findFirst().get()));
+        }
+    }
+
+    @Test
+    public void entityCodecIsStaleAfterAttributeIsAdded() {
+        MongoVoucherMapper mapper = new MongoVoucherMapper();
+        EntityCodec<Voucher> codec = new EntityCodec<>(mapper, Voucher.class, v -> v, MongoClient.getDefaultCodecRegistry());
+        assertTrue(codec.isComposedFor(mapper));
+
+        mapper.add(Attr.ofString(Voucher.class, "extra_note").get(e -> null).set((e, a) -> {}));
+        assertFalse("Codec is not reused after attribute is added", codec.isComposedFor(mapper));
+    }
+
+    @Test
+    public void batchWrites() {
+        MongoVoucherRepository batchRepo = new MongoVoucherRepository(db) {
+            @Override
+            protected int getBatchSize() {
+                return 2;
+            }
+        };
+        List<Voucher> vouchers = batchRepo.createAll(Arrays.asList(testData.newVoucher("BW01"), testData.newVoucher("BW02"), testData.newVoucher("BW03")), false);
+        assertEquals(3, batchRepo.countByFilter(null, null));
+
+        vouchers.forEach(v -> v.setReservedBy("cust02"));
+        vouchers.add(testData.newVoucher("BW09"));
+        assertEquals(3, batchRepo.updateAll(vouchers));
+        assertEquals("cust02", batchRepo.findById("BW03").get().getReservedBy());
+
+        try {
+            batchRepo.createAll(Arrays.asList(testData.newVoucher("BW04"), testData.newVoucher("BW05"), testData.newVoucher("BW02"), testData.newVoucher("BW06")), false);
+            fail("Voucher with duplicate code should not be created");
+        } catch (BatchWriteException ex) {
+            assertEquals(Collections.singleton(2), ex.getFailures().keySet());
+            assertEquals(2, ex.getWrittenCount());
+        }
+        assertEquals(5, batchRepo.countByFilter(null, null));
+
+        assertEquals(4, batchRepo.deleteByIds(Arrays.asList("BW01", "BW02", "BW03", "BW04", "BW09")));
+        assertEquals(Arrays.asList("BW05"), batchRepo.findAll().stream().map(Voucher::getCode).collect(Collectors.toList()));
+    }
+
     @Test
     public void update() {
         Voucher voucher = testData.newVoucher("ABCDEF");
@@ -54,6 +213,24 @@ public class MongoVoucherRepositoryTest {
 
         Optional<Voucher> voucherUpdatedOpt = repo.update(voucherToUpdate);
         assertTrue("Updated voucher equals voucher to update", EqualsBuilder.reflectionEquals(voucherUpdatedOpt.get(), voucherToUpdate));
+        assertTrue("Stored voucher equals voucher to update", EqualsBuilder.reflectionEquals(repo.findById("ABCDEF").get(), voucherToUpdate));
+        assertFalse("Missing voucher is not updated", repo.update(testData.newVoucher("MISSING")).isPresent());
+    }
+
+    @Test
+    public void updateAndGet() {
+        MongoVoucherRepository mongoRepo = new MongoVoucherRepository(db);
+        VoucherMapper mapper = VoucherMapper.getInstance();
+        Voucher voucher = mongoRepo.create(testData.newVoucher("UG01"), false);
+        mongoRepo.update(voucher.getCode(), Arrays.asList(new Pair<>(mapper.invoice_note, "Changed on server")));
+
+        Voucher voucherToUpdate = testData.newVoucher("UG01");
+        voucherToUpdate.setReservedBy("cust03");
+        voucherToUpdate.setInvoiceNote(null);
+        Voucher updated = mongoRepo.updateAndGet(voucherToUpdate).get();
+        assertEquals("cust03", updated.getReservedBy());
+        assertEquals(null, updated.getInvoiceNote());
+        assertFalse(mongoRepo.updateAndGet(testData.newVoucher("MISSING")).isPresent());
     }
 
     @Test
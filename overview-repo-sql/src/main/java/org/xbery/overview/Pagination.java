@@ -17,9 +17,17 @@
 package org.xbery.overview;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Pagination settings. Immutable class.
+ * <p>
+ * Records are skipped using offset, or (in keyset mode) only records that follow the given values of ordering attributes
+ * (values of the last record of previous page) are selected. Keyset mode has the same cost for any page depth, but it
+ * requires ordering that is unambiguous (ending with unique attribute, e.g. primary key) and non-null ordering attributes.
+ * Offset is only informative in keyset mode.
  * @author Radek Beran
  */
 public final class Pagination implements Serializable {
@@ -31,11 +39,19 @@ public final class Pagination implements Serializable {
 	
 	/** TotalCount is null in case records are not loaded yet. */
 	private final Integer totalCount;
-	
-	public Pagination(int offset, int limit, Integer totalCount) {
+
+	/** Values of ordering attributes of the last record of previous page, null if records are skipped using offset. */
+	private final List<Object> keyset;
+
+	public Pagination(int offset, int limit, Integer totalCount, List<Object> keyset) {
 		this.offset = offset;
 		this.limit = limit;
 		this.totalCount = totalCount;
+		this.keyset = keyset != null ? Collections.unmodifiableList(new ArrayList<>(keyset)) : null;
+	}
+
+	public Pagination(int offset, int limit, Integer totalCount) {
+		this(offset, limit, totalCount, null);
 	}
 	
 	public Pagination(int offset, int limit) {
@@ -48,7 +64,7 @@ public final class Pagination implements Serializable {
 	 * @return
 	 */
 	public Pagination withTotalCount(Integer count) {
-    	return new Pagination(this.offset, this.limit, count);
+    	return new Pagination(this.offset, this.limit, count, this.keyset);
     }
 	
 	/**
@@ -57,9 +73,28 @@ public final class Pagination implements Serializable {
 	 * @return
 	 */
 	public Pagination withOffset(int offset) {
-    	return new Pagination(offset, this.limit, this.totalCount);
+    	return new Pagination(offset, this.limit, this.totalCount, this.keyset);
     }
 
+	/**
+	 * Returns first page in keyset mode.
+	 * @param limit page size
+	 * @return
+	 */
+	public static Pagination firstKeysetPage(int limit) {
+		return new Pagination(0, limit, null, Collections.emptyList());
+	}
+
+	/**
+	 * Returns new instance/copy of pagination in keyset mode, selecting the page that follows the record with given values
+	 * of ordering attributes. Offset is moved to the next page.
+	 * @param lastValues values of ordering attributes of the last record of current page, in order of the ordering
+	 * @return
+	 */
+	public Pagination withKeyset(List<Object> lastValues) {
+		return new Pagination(getNextOffset(), this.limit, this.totalCount, lastValues);
+	}
+
 	public int getOffset() {
 		return offset;
 	}
@@ -79,6 +114,23 @@ public final class Pagination implements Serializable {
 	public Integer getTotalCount() {
 		return totalCount;
 	}
+
+	/**
+	 * Values of ordering attributes of the last record of previous page (empty list for the first page),
+	 * or {@code null} in case records are skipped using offset.
+	 * @return
+	 */
+	public List<Object> getKeyset() {
+		return keyset;
+	}
+
+	/**
+	 * Returns true if records are selected using keyset instead of offset.
+	 * @return
+	 */
+	public boolean isKeyset() {
+		return keyset != null;
+	}
 	
 	public int getNextOffset() {
 		return offset + limit;
@@ -135,7 +187,7 @@ public final class Pagination implements Serializable {
 	
 	@Override
 	public String toString() {
-		return "Pagination [offset=" + offset + ", limit=" + limit + ", totalCount=" + totalCount + "]";
+		return "Pagination [offset=" + offset + ", limit=" + limit + ", totalCount=" + totalCount + ", keyset=" + keyset + "]";
 	}
 
 	@Override
@@ -145,6 +197,7 @@ public final class Pagination implements Serializable {
 		result = prime * result + limit;
 		result = prime * result + offset;
 		result = prime * result + ((totalCount == null) ? 0 : totalCount.hashCode());
+		result = prime * result + ((keyset == null) ? 0 : keyset.hashCode());
 		return result;
 	}
 
@@ -159,6 +212,9 @@ public final class Pagination implements Serializable {
 		if (totalCount == null) {
 			if (other.totalCount != null) return false;
 		} else if (!totalCount.equals(other.totalCount)) return false;
+		if (keyset == null) {
+			if (other.keyset != null) return false;
+		} else if (!keyset.equals(other.keyset)) return false;
 		return true;
 	}
 }
@@ -23,6 +23,9 @@ import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Attribute class with its builder for convenient construction of instance
@@ -38,12 +41,15 @@ import java.util.function.Function;
 public class Attr<E, A> implements Attribute<E, A> {
     private final Class<E> entityClass;
     private final Class<A> attributeClass;
+    private final AttributeType attributeType;
     private final String name;
     private final boolean primary;
     private final Function<E, A> fromEntity;
     private final BiFunction<E, A, E> toEntity;
     private final String namePrefix;
     private final Optional<Integer> maxLength;
+    /** Reader of primitive value directly to the entity, null if the value is read using {@link AttributeSource#get(AttributeType, Class, String)}. */
+    private final PrimitiveReader<E> primitiveReader;
 
     public static <E, A> Builder<E, A> of(Class<E> entityClass, Class<A> attributeClass, String name) {
         return new Builder<>(entityClass, attributeClass, name);
@@ -95,12 +101,23 @@ public class Attr<E, A> implements Attribute<E, A> {
     public Attr(Attr source, String namePrefix) {
         this.entityClass = source.entityClass;
         this.attributeClass = source.attributeClass;
+        this.attributeType = source.attributeType;
         this.name = source.name;
         this.primary = source.primary;
         this.fromEntity = source.fromEntity;
         this.toEntity = source.toEntity;
         this.namePrefix = namePrefix;
         this.maxLength = source.maxLength;
+        this.primitiveReader = source.primitiveReader;
+    }
+
+    /**
+     * Reads primitive value from attribute source and sets it to entity without boxing.
+     * @param <E> type of entity
+     */
+    @FunctionalInterface
+    private interface PrimitiveReader<E> {
+        void read(E entity, AttributeSource attributeSource, String attributeName);
     }
 
     public static class Builder<E, A> {
@@ -111,6 +128,7 @@ public class Attr<E, A> implements Attribute<E, A> {
         private Function<E, A> fromEntity;
         private BiFunction<E, A, E> toEntity;
         private String namePrefix;
+        private PrimitiveReader<E> primitiveReader;
 
         // Optional parameters - initialized to default values (these are only here in a single location)
         private boolean primary = false;
@@ -148,6 +166,7 @@ public class Attr<E, A> implements Attribute<E, A> {
 
         public Builder<E, A> updatedEntity(BiFunction<E, A, E> toEntity) {
             this.toEntity = toEntity;
+            this.primitiveReader = null;
             return this;
         }
 
@@ -155,6 +174,37 @@ public class Attr<E, A> implements Attribute<E, A> {
             return updatedEntity((e, a) -> { setToEntity.accept(e, a); return e; });
         }
 
+        /**
+         * Sets primitive int setter of {@link Integer} attribute. Values are read from attribute sources and set to entities
+         * without boxing, null values are not set (entity retains its value).
+         */
+        public Builder<E, A> setInt(ObjIntConsumer<E> setToEntity) {
+            checkAttributeClass(Integer.class);
+            updatedEntity((e, a) -> { if (a != null) setToEntity.accept(e, (Integer)a); return e; });
+            primitiveReader = (e, as, name) -> as.readInt(e, name, setToEntity);
+            return this;
+        }
+
+        /**
+         * Sets primitive long setter of {@link Long} attribute, see {@link #setInt(ObjIntConsumer)}.
+         */
+        public Builder<E, A> setLong(ObjLongConsumer<E> setToEntity) {
+            checkAttributeClass(Long.class);
+            updatedEntity((e, a) -> { if (a != null) setToEntity.accept(e, (Long)a); return e; });
+            primitiveReader = (e, as, name) -> as.readLong(e, name, setToEntity);
+            return this;
+        }
+
+        /**
+         * Sets primitive double setter of {@link Double} attribute, see {@link #setInt(ObjIntConsumer)}.
+         */
+        public Builder<E, A> setDouble(ObjDoubleConsumer<E> setToEntity) {
+            checkAttributeClass(Double.class);
+            updatedEntity((e, a) -> { if (a != null) setToEntity.accept(e, (Double)a); return e; });
+            primitiveReader = (e, as, name) -> as.readDouble(e, name, setToEntity);
+            return this;
+        }
+
         public Builder<E, A> namePrefix(String namePrefix) {
             this.namePrefix = namePrefix;
             return this;
@@ -192,6 +242,12 @@ public class Attr<E, A> implements Attribute<E, A> {
             return maxLength;
         }
 
+        private void checkAttributeClass(Class<?> primitiveWrapperClass) {
+            if (!primitiveWrapperClass.equals(attributeClass)) {
+                throw new IllegalStateException("Attribute " + name + " of class " + attributeClass.getName() + " cannot have setter of " + primitiveWrapperClass.getSimpleName() + " values");
+            }
+        }
+
         public Attr build() {
             Attr attr = new Attr(this);
             // Possible validations here (checks on fields)...
@@ -208,12 +264,14 @@ public class Attr<E, A> implements Attribute<E, A> {
     private Attr(Builder<E, A> builder) {
         entityClass = builder.entityClass;
         attributeClass = builder.attributeClass;
+        attributeType = AttributeType.of(builder.attributeClass);
         name = builder.name;
         primary = builder.primary;
         fromEntity = builder.fromEntity;
         toEntity = builder.toEntity;
         namePrefix = builder.namePrefix;
         maxLength = builder.maxLength;
+        primitiveReader = builder.primitiveReader;
     }
 
     @Override
@@ -226,6 +284,11 @@ public class Attr<E, A> implements Attribute<E, A> {
         return attributeClass;
     }
 
+    @Override
+    public AttributeType getAttributeType() {
+        return attributeType;
+    }
+
     @Override
     public A getValue(E entity) {
         return fromEntity.apply(entity);
@@ -238,7 +301,11 @@ public class Attr<E, A> implements Attribute<E, A> {
 
     @Override
     public E entityWithAttribute(E entity, AttributeSource attributeSource, String attributeName) {
-        A value = attributeSource.get(attributeClass, attributeName);
+        if (primitiveReader != null) {
+            primitiveReader.read(entity, attributeSource, attributeName);
+            return entity;
+        }
+        A value = attributeSource.get(attributeType, attributeClass, attributeName);
         return toEntity.apply(entity, value);
     }
 
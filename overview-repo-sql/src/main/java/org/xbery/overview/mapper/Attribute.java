@@ -52,6 +52,14 @@ public interface Attribute<E, A> {
 	 */
 	Class<A> getAttributeClass();
 
+	/**
+	 * Type of attribute that determines how its value is read from {@link AttributeSource}.
+	 * @return type of attribute
+	 */
+	default AttributeType getAttributeType() {
+		return AttributeType.of(getAttributeClass());
+	}
+
 	/**
 	 * <p>Name prefix for attribute derived from an entity so that full attribute name including entity qualification
 	 * can be constructed.
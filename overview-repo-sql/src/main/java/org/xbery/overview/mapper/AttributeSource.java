@@ -16,6 +16,10 @@
  */
 package org.xbery.overview.mapper;
 
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
 /**
  * Attribute source (e.g. stored attributes of an entity).
  * @author Radek Beran
@@ -23,4 +27,58 @@ package org.xbery.overview.mapper;
 public interface AttributeSource {
 
 	<A> A get(Class<A> cls, String attributeName);
+
+	/**
+	 * Returns value of attribute with already resolved type.
+	 * Attribute sources should override this to read values without resolving the type for each value.
+	 * @param type type of attribute resolved from its class
+	 * @param cls class of attribute
+	 * @param attributeName attribute name
+	 * @param <A> type of attribute
+	 * @return attribute value
+	 */
+	default <A> A get(AttributeType type, Class<A> cls, String attributeName) {
+		return get(cls, attributeName);
+	}
+
+	/**
+	 * Reads int value of attribute and passes it to given setter of entity, without boxing if the attribute source supports it.
+	 * @param entity entity to update
+	 * @param attributeName attribute name
+	 * @param setter setter of the value to entity
+	 * @param <E> type of entity
+	 * @return false if the value is null (setter is not called)
+	 */
+	default <E> boolean readInt(E entity, String attributeName, ObjIntConsumer<E> setter) {
+		Integer value = get(AttributeType.INTEGER, Integer.class, attributeName);
+		if (value == null) {
+			return false;
+		}
+		setter.accept(entity, value.intValue());
+		return true;
+	}
+
+	/**
+	 * Reads long value of attribute and passes it to given setter of entity, see {@link #readInt(Object, String, ObjIntConsumer)}.
+	 */
+	default <E> boolean readLong(E entity, String attributeName, ObjLongConsumer<E> setter) {
+		Long value = get(AttributeType.LONG, Long.class, attributeName);
+		if (value == null) {
+			return false;
+		}
+		setter.accept(entity, value.longValue());
+		return true;
+	}
+
+	/**
+	 * Reads double value of attribute and passes it to given setter of entity, see {@link #readInt(Object, String, ObjIntConsumer)}.
+	 */
+	default <E> boolean readDouble(E entity, String attributeName, ObjDoubleConsumer<E> setter) {
+		Double value = get(AttributeType.DOUBLE, Double.class, attributeName);
+		if (value == null) {
+			return false;
+		}
+		setter.accept(entity, value.doubleValue());
+		return true;
+	}
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.mapper;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Type of attribute value that determines how the value is read from {@link AttributeSource}.
+ * It is resolved once for a class of attribute, so attribute sources can read values using a simple switch.
+ * @author Radek Beran
+ */
+public enum AttributeType {
+	BOOLEAN,
+	BYTE,
+	INTEGER,
+	LONG,
+	FLOAT,
+	DOUBLE,
+	DATE,
+	INSTANT,
+	BIG_DECIMAL,
+	STRING,
+	/** Other type that is not supported by attribute sources natively. */
+	OTHER;
+
+	/**
+	 * Returns type of attribute with given class.
+	 * @param cls class of attribute
+	 * @return type of attribute, {@link #OTHER} for unsupported classes
+	 */
+	public static AttributeType of(Class<?> cls) {
+		AttributeType type;
+		if (cls.isAssignableFrom(Boolean.class)) {
+			type = BOOLEAN;
+		} else if (cls.isAssignableFrom(Byte.class)) {
+			type = BYTE;
+		} else if (cls.isAssignableFrom(Integer.class)) {
+			type = INTEGER;
+		} else if (cls.isAssignableFrom(Long.class)) {
+			type = LONG;
+		} else if (cls.isAssignableFrom(Float.class)) {
+			type = FLOAT;
+		} else if (cls.isAssignableFrom(Double.class)) {
+			type = DOUBLE;
+		} else if (cls.isAssignableFrom(Date.class)) {
+			type = DATE;
+		} else if (cls.isAssignableFrom(Instant.class)) {
+			type = INSTANT;
+		} else if (cls.isAssignableFrom(BigDecimal.class)) {
+			type = BIG_DECIMAL;
+		} else if (cls.isAssignableFrom(String.class)) {
+			type = STRING;
+		} else {
+			type = OTHER;
+		}
+		return type;
+	}
+}
@@ -16,18 +16,29 @@
  */
 package org.xbery.overview.mapper;
 
+import org.xbery.overview.common.funs.CollectionFuns;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * Entity mapper with dynamic registration of attributes.
+ * <p>
+ * Metadata derived from registered attributes (attributes, their names, primary attributes, aliased names
+ * and row decoders) are computed once after the registration and shared by all callers as immutable snapshot,
+ * registration of new attribute discards the snapshot.
  * @author Radek Beran
  */
 public abstract class DynamicEntityMapper<T, F> implements EntityMapper<T, F> {
 
     private final Map<String, Attribute<T, ?>> attributesByFullNames;
+    /** Metadata derived from registered attributes, null if they are not computed yet. */
+    private volatile Snapshot<T> snapshot;
 
     public DynamicEntityMapper() {
         attributesByFullNames = new LinkedHashMap<>();
@@ -56,9 +67,74 @@ public abstract class DynamicEntityMapper<T, F> implements EntityMapper<T, F> {
         return addUnchanged(attribute);
     }
 
+    /**
+     * Returns unmodifiable list of registered attributes. The same instance is returned until new attribute is registered.
+     */
     @Override
     public List<Attribute<T, ?>> getAttributes() {
-        return new ArrayList<>(attributesByFullNames.values());
+        return getSnapshot().attributes;
+    }
+
+    @Override
+    public List<String> getAttributeNames() {
+        return getSnapshot().attributeNames;
+    }
+
+    @Override
+    public String getAttributeSelection() {
+        return getSnapshot().attributeSelection;
+    }
+
+    @Override
+    public List<Attribute<T, ?>> getPrimaryAttributes() {
+        return getSnapshot().primaryAttributes;
+    }
+
+    @Override
+    public List<String> getPrimaryAttributeNames() {
+        return getSnapshot().primaryAttributeNames;
+    }
+
+    @Override
+    public List<Object> getPrimaryAttributeValues(T entity) {
+        List<Attribute<T, ?>> primaryAttributes = getSnapshot().primaryAttributes;
+        List<Object> values = new ArrayList<>(primaryAttributes.size());
+        for (Attribute<T, ?> attr : primaryAttributes) {
+            values.add(attr.getValue(entity));
+        }
+        return values;
+    }
+
+    @Override
+    public List<Object> getAttributeValues(T instance) {
+        List<Attribute<T, ?>> attributes = getSnapshot().attributes;
+        List<Object> values = new ArrayList<>(attributes.size());
+        for (Attribute<T, ?> attr : attributes) {
+            values.add(attr.getValue(instance));
+        }
+        return values;
+    }
+
+    @Override
+    public List<String> getAttributeNamesFullAliased() {
+        Snapshot<T> current = getSnapshot();
+        List<String> names = current.attributeNamesFullAliased;
+        if (names == null) {
+            // Alias prefix is not available while attributes are registered in constructor of subclass
+            names = Collections.unmodifiableList(EntityMapper.super.getAttributeNamesFullAliased());
+            current.attributeNamesFullAliased = names;
+        }
+        return names;
+    }
+
+    @Override
+    public T buildEntity(AttributeSource attributeSource, String aliasPrefix) {
+        return getRowDecoder(aliasPrefix).decode(attributeSource);
+    }
+
+    @Override
+    public RowDecoder<T> getRowDecoder(String aliasPrefix) {
+        return getSnapshot().rowDecoders.computeIfAbsent(aliasPrefix != null ? aliasPrefix : "", prefix -> new RowDecoder<>(this, aliasPrefix));
     }
 
     protected synchronized <A> Attribute<T, A> addUnchanged(Attribute<T, A> attribute) {
@@ -66,10 +142,47 @@ public abstract class DynamicEntityMapper<T, F> implements EntityMapper<T, F> {
             throw new IllegalStateException("Attribute " + attribute.getNameFull() + " is already registered");
         }
         attributesByFullNames.put(attribute.getNameFull(), attribute);
+        snapshot = null;
         return attribute;
     }
 
     protected String getNamePrefix() {
         return getTableName();
     }
+
+    private Snapshot<T> getSnapshot() {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = new Snapshot<>(new ArrayList<>(attributesByFullNames.values()));
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Metadata derived from registered attributes.
+     */
+    private static final class Snapshot<T> {
+        private final List<Attribute<T, ?>> attributes;
+        private final List<String> attributeNames;
+        private final String attributeSelection;
+        private final List<Attribute<T, ?>> primaryAttributes;
+        private final List<String> primaryAttributeNames;
+        private final Map<String, RowDecoder<T>> rowDecoders = new ConcurrentHashMap<>();
+        /** Computed lazily, concurrent computations produce equal lists. */
+        private volatile List<String> attributeNamesFullAliased;
+
+        Snapshot(List<Attribute<T, ?>> attributes) {
+            this.attributes = Collections.unmodifiableList(attributes);
+            this.attributeNames = Collections.unmodifiableList(attributes.stream().map(a -> a.getName()).collect(Collectors.toList()));
+            this.attributeSelection = CollectionFuns.join(attributeNames, ", ");
+            this.primaryAttributes = Collections.unmodifiableList(attributes.stream().filter(a -> a.isPrimary()).collect(Collectors.toList()));
+            this.primaryAttributeNames = Collections.unmodifiableList(primaryAttributes.stream().map(a -> a.getName()).collect(Collectors.toList()));
+        }
+    }
 }
@@ -18,6 +18,7 @@ package org.xbery.overview.mapper;
 
 import org.xbery.overview.Group;
 import org.xbery.overview.Order;
+import org.xbery.overview.common.funs.CollectionFuns;
 import org.xbery.overview.common.Pair;
 import org.xbery.overview.filter.Condition;
 import org.xbery.overview.repo.Conditions;
@@ -229,6 +230,14 @@ public interface EntityMapper<T, F> {
 		return getAttributes().stream().map(v -> v.getName()).collect(Collectors.toList());
 	}
 	
+	/**
+	 * Returns comma-separated names of database attributes that can be used in SELECT clause.
+	 * @return
+	 */
+	default String getAttributeSelection() {
+		return CollectionFuns.join(getAttributeNames(), ", ");
+	}
+
 	/**
 	 * Extracts values for database attributes from given entity instance.
 	 * @param instance
@@ -262,16 +271,32 @@ public interface EntityMapper<T, F> {
 	 */
 	default T buildEntity(AttributeSource attributeSource, String aliasPrefix) {
 		T instance = createEntity();
+		boolean primaryKeyFilled = false;
 		for (Attribute<T, ?> attr : getAttributes()) {
 			String alias = null;
 			if (aliasPrefix != null) {
 				alias = aliasPrefix + attr.getName();
 			}
-			instance = attr.entityWithAttribute(instance, attributeSource, attr.getName(alias));
+			String attributeName = attr.getName(alias);
+			if (attr.isPrimary() && !primaryKeyFilled) {
+				// Presence is decided by the source, primitive primary attribute of entity would have default value for NULL
+				primaryKeyFilled = attributeSource.get(attr.getAttributeType(), attr.getAttributeClass(), attributeName) != null;
+			}
+			instance = attr.entityWithAttribute(instance, attributeSource, attributeName);
 		}
-		boolean primaryKeyFilled = getPrimaryAttributeValues(instance).stream().anyMatch(v -> v != null);
 		return primaryKeyFilled ? instance : null;
 	}
+
+	/**
+	 * Returns decoder of entities from attribute sources with given alias prefix, see {@link #buildEntity(AttributeSource, String)}.
+	 * Default implementation creates new decoder on each call, so it should be reused for all rows of one result;
+	 * implementations that cache created decoders can use them also in {@link #buildEntity(AttributeSource, String)}.
+	 * @param aliasPrefix alias prefix for all database fields
+	 * @return row decoder
+	 */
+	default RowDecoder<T> getRowDecoder(String aliasPrefix) {
+		return new RowDecoder<>(this, aliasPrefix);
+	}
 	
 	/**
 	 * Builds new data entity from attribute source.
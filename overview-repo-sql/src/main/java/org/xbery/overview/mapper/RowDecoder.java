@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder of entities from rows of attribute sources compiled for given entity mapper and alias prefix:
+ * attributes, names used to read their values and primary attributes are resolved once, decoding of a row
+ * only reads typed values and updates the entity.
+ * <p>
+ * Thread-safe: Yes, instance is immutable (if the entity mapper is not changed).
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+public final class RowDecoder<T> {
+
+	private final EntityMapper<T, ?> entityMapper;
+	private final String aliasPrefix;
+	private final Attribute<T, ?>[] attributes;
+	private final String[] attributeNames;
+	private final int[] primaryAttributeIndexes;
+
+	/**
+	 * @param entityMapper mapper of entities
+	 * @param aliasPrefix alias prefix for all database fields, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public RowDecoder(EntityMapper<T, ?> entityMapper, String aliasPrefix) {
+		this.entityMapper = entityMapper;
+		this.aliasPrefix = aliasPrefix;
+		List<Attribute<T, ?>> attributeList = entityMapper.getAttributes();
+		List<Integer> primaryIndexList = new ArrayList<>();
+		this.attributes = (Attribute<T, ?>[])attributeList.toArray(new Attribute<?, ?>[attributeList.size()]);
+		this.attributeNames = new String[attributes.length];
+		for (int i = 0; i < attributes.length; i++) {
+			Attribute<T, ?> attr = attributes[i];
+			attributeNames[i] = attr.getName(aliasPrefix != null ? aliasPrefix + attr.getName() : null);
+			if (attr.isPrimary()) {
+				primaryIndexList.add(Integer.valueOf(i));
+			}
+		}
+		this.primaryAttributeIndexes = primaryIndexList.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	public String getAliasPrefix() {
+		return aliasPrefix;
+	}
+
+	/**
+	 * Builds new entity from current row of given attribute source.
+	 * @param attributeSource attribute source
+	 * @return entity, or null if no primary attribute of the entity is filled in the attribute source (e.g. for not joined entity)
+	 */
+	public T decode(AttributeSource attributeSource) {
+		if (!isPresent(attributeSource)) {
+			return null;
+		}
+		T instance = entityMapper.createEntity();
+		for (int i = 0; i < attributes.length; i++) {
+			instance = attributes[i].entityWithAttribute(instance, attributeSource, attributeNames[i]);
+		}
+		return instance;
+	}
+
+	/**
+	 * Presence of the entity is decided by values of primary attributes in the source, not in the built entity:
+	 * primitive primary attribute would be set to its default value (e.g. 0) for NULL in not matched joined row.
+	 */
+	private boolean isPresent(AttributeSource attributeSource) {
+		for (int index : primaryAttributeIndexes) {
+			Attribute<T, ?> primaryAttribute = attributes[index];
+			if (attributeSource.get(primaryAttribute.getAttributeType(), primaryAttribute.getAttributeClass(), attributeNames[index]) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
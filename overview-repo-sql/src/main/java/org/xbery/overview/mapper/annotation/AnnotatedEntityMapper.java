@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.mapper.annotation;
+
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.mapper.Attr;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.AttributeType;
+import org.xbery.overview.mapper.DynamicEntityMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Entity mapper built from entity class annotated with {@link Table} and with fields annotated with {@link Column}.
+ * Getters, setters and constructor of entity are invoked using lambdas generated by {@link LambdaMetafactory}, so they are
+ * called directly like in hand-written mappers (reflection is used only when the mapper is created). Setters of primitive
+ * int, long and double fields are called without boxing.
+ * <p>
+ * Entity class must have public no-arg constructor and public getters and setters of mapped fields.
+ * Filter conditions are not composed by default, subclasses can override {@link #composeFilterConditions(Object)}.
+ * <p>
+ * Example:
+ * <pre>
+ * EntityMapper&lt;Voucher, Object&gt; mapper = AnnotatedEntityMapper.of(Voucher.class);
+ * </pre>
+ * @param <T> type of entity
+ * @param <F> type of filter
+ * @author Radek Beran
+ */
+public class AnnotatedEntityMapper<T, F> extends DynamicEntityMapper<T, F> {
+
+	private static final Logger log = LoggerFactory.getLogger(AnnotatedEntityMapper.class);
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final Class<T> entityClass;
+	private final String tableName;
+	private final String dbName;
+	private final Supplier<T> constructor;
+
+	/**
+	 * Creates mapper of given annotated entity class.
+	 * @param entityClass entity class
+	 * @throws IllegalArgumentException if the entity class cannot be mapped
+	 */
+	public AnnotatedEntityMapper(Class<T> entityClass) {
+		this.entityClass = entityClass;
+		Table table = entityClass.getAnnotation(Table.class);
+		this.tableName = table != null && !table.name().isEmpty() ? table.name() : toSnakeCase(entityClass.getSimpleName());
+		this.dbName = table != null && !table.db().isEmpty() ? table.db() : null;
+		this.constructor = createConstructor(entityClass);
+		for (Field field : getColumnFields(entityClass)) {
+			add(createAttribute(field));
+		}
+	}
+
+	/**
+	 * Creates mapper of given annotated entity class.
+	 * @param entityClass entity class
+	 * @param <T> type of entity
+	 * @return entity mapper
+	 */
+	public static <T> AnnotatedEntityMapper<T, Object> of(Class<T> entityClass) {
+		return new AnnotatedEntityMapper<>(entityClass);
+	}
+
+	public Class<T> getEntityClass() {
+		return entityClass;
+	}
+
+	/**
+	 * Returns registered attribute with given database name (e.g. for ordering or filter conditions).
+	 * @param name name of database attribute
+	 * @param attributeClass class of attribute (wrapper class for primitive fields)
+	 * @param <A> type of attribute
+	 * @return attribute
+	 * @throws IllegalArgumentException if there is no such attribute
+	 */
+	@SuppressWarnings("unchecked")
+	public <A> Attribute<T, A> getAttribute(String name, Class<A> attributeClass) {
+		for (Attribute<T, ?> attr : getAttributes()) {
+			if (attr.getName().equals(name)) {
+				if (!attr.getAttributeClass().equals(attributeClass)) {
+					throw new IllegalArgumentException("Attribute " + name + " is of class " + attr.getAttributeClass().getName());
+				}
+				return (Attribute<T, A>)attr;
+			}
+		}
+		throw new IllegalArgumentException("Attribute " + name + " is not mapped in " + entityClass.getName());
+	}
+
+	@Override
+	public String getTableName() {
+		return tableName;
+	}
+
+	@Override
+	public String getDbName() {
+		return dbName;
+	}
+
+	@Override
+	public T createEntity() {
+		return constructor.get();
+	}
+
+	@Override
+	public List<Condition> composeFilterConditions(F filter) {
+		return new ArrayList<>();
+	}
+
+	protected Attr.Builder<T, ?> createAttribute(Field field) {
+		Column column = field.getAnnotation(Column.class);
+		Class<?> fieldType = field.getType();
+		Class<?> attributeClass = wrap(fieldType);
+		if (AttributeType.of(attributeClass) == AttributeType.OTHER) {
+			throw new IllegalArgumentException("Type " + fieldType.getName() + " of field " + field.getName() + " in " + entityClass.getName() + " is not supported");
+		}
+		String name = !column.name().isEmpty() ? column.name() : toSnakeCase(field.getName());
+		@SuppressWarnings("unchecked")
+		Attr.Builder<T, Object> builder = Attr.of(entityClass, (Class<Object>)attributeClass, name)
+			.primary(column.primary())
+			.maxLength(column.maxLength() > 0 ? Integer.valueOf(column.maxLength()) : null)
+			.get(createGetter(findGetter(field)));
+		Method setter = findSetter(field);
+		if (fieldType == int.class) {
+			builder.setInt(createLambda(ObjIntConsumer.class, "accept", MethodType.methodType(void.class, Object.class, int.class), setter));
+		} else if (fieldType == long.class) {
+			builder.setLong(createLambda(ObjLongConsumer.class, "accept", MethodType.methodType(void.class, Object.class, long.class), setter));
+		} else if (fieldType == double.class) {
+			builder.setDouble(createLambda(ObjDoubleConsumer.class, "accept", MethodType.methodType(void.class, Object.class, double.class), setter));
+		} else {
+			BiConsumer<T, Object> setterFun = createLambda(BiConsumer.class, "accept", MethodType.methodType(void.class, Object.class, Object.class), setter);
+			if (fieldType.isPrimitive()) {
+				// Null cannot be set to primitive field
+				builder.set((e, a) -> { if (a != null) setterFun.accept(e, a); });
+			} else {
+				builder.set(setterFun);
+			}
+		}
+		return builder;
+	}
+
+	private Function<T, Object> createGetter(Method getter) {
+		return createLambda(Function.class, "apply", MethodType.methodType(Object.class, Object.class), getter);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Supplier<T> createConstructor(Class<T> entityClass) {
+		MethodHandle handle;
+		try {
+			handle = LOOKUP.unreflectConstructor(entityClass.getConstructor());
+		} catch (NoSuchMethodException | IllegalAccessException ex) {
+			throw new IllegalArgumentException("Entity " + entityClass.getName() + " has no public no-arg constructor", ex);
+		}
+		return (Supplier<T>)createLambda(Supplier.class, "get", MethodType.methodType(Object.class), handle);
+	}
+
+	private static <L> L createLambda(Class<? super L> functionalInterface, String methodName, MethodType erasedType, Method method) {
+		try {
+			return createLambda(functionalInterface, methodName, erasedType, LOOKUP.unreflect(method));
+		} catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException("Method " + method + " is not accessible", ex);
+		}
+	}
+
+	/**
+	 * Creates implementation of functional interface that invokes given method handle directly.
+	 * If the lambda cannot be generated (e.g. the entity class is not visible from class loader of this mapper),
+	 * slower functional interface invoking the method handle is returned and a warning is logged.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <L> L createLambda(Class<? super L> functionalInterface, String methodName, MethodType erasedType, MethodHandle handle) {
+		// Erased types of functional interface specialized to types of the method (primitives are boxed where the interface uses objects)
+		MethodType handleType = handle.type();
+		MethodType instantiatedType = MethodType.methodType(adaptType(handleType.returnType(), erasedType.returnType()));
+		for (int i = 0; i < handleType.parameterCount(); i++) {
+			instantiatedType = instantiatedType.appendParameterTypes(adaptType(handleType.parameterType(i), erasedType.parameterType(i)));
+		}
+		CallSite site;
+		try {
+			site = LambdaMetafactory.metafactory(LOOKUP, methodName, MethodType.methodType(functionalInterface),
+				erasedType, handle, instantiatedType);
+		} catch (LambdaConversionException ex) {
+			log.warn("Lambda invoking {} cannot be generated, slower method handle proxy is used: {}", handle, ex.getMessage());
+			return (L)MethodHandleProxies.asInterfaceInstance(functionalInterface, handle.asType(erasedType));
+		}
+		try {
+			return (L)site.getTarget().invoke();
+		} catch (RuntimeException | Error ex) {
+			throw ex;
+		} catch (Throwable ex) {
+			throw new IllegalStateException("Lambda invoking " + handle + " cannot be created", ex);
+		}
+	}
+
+	private static Class<?> adaptType(Class<?> methodType, Class<?> erasedType) {
+		return erasedType.isPrimitive() ? methodType : wrap(methodType);
+	}
+
+	private static List<Field> getColumnFields(Class<?> entityClass) {
+		List<Field> fields = new ArrayList<>();
+		if (entityClass.getSuperclass() != null) {
+			fields.addAll(getColumnFields(entityClass.getSuperclass()));
+		}
+		for (Field field : entityClass.getDeclaredFields()) {
+			if (field.isAnnotationPresent(Column.class) && !Modifier.isStatic(field.getModifiers())) {
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	private Method findGetter(Field field) {
+		String suffix = capitalize(field.getName());
+		try {
+			return entityClass.getMethod("get" + suffix);
+		} catch (NoSuchMethodException ex) {
+			if (field.getType() == boolean.class || field.getType() == Boolean.class) {
+				try {
+					return entityClass.getMethod("is" + suffix);
+				} catch (NoSuchMethodException isEx) {
+					// Reported below
+				}
+			}
+			throw new IllegalArgumentException("Public getter of field " + field.getName() + " not found in " + entityClass.getName(), ex);
+		}
+	}
+
+	private Method findSetter(Field field) {
+		try {
+			return entityClass.getMethod("set" + capitalize(field.getName()), field.getType());
+		} catch (NoSuchMethodException ex) {
+			throw new IllegalArgumentException("Public setter of field " + field.getName() + " not found in " + entityClass.getName(), ex);
+		}
+	}
+
+	private static Class<?> wrap(Class<?> type) {
+		return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+	}
+
+	private static String capitalize(String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	/**
+	 * Converts camel case name (e.g. creationTime) to snake case (creation_time).
+	 */
+	static String toSnakeCase(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 4);
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isUpperCase(c)) {
+				if (i > 0) {
+					sb.append('_');
+				}
+				sb.append(Character.toLowerCase(c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -25,10 +25,12 @@ import org.xbery.overview.mapper.Attribute;
 import org.xbery.overview.mapper.EntityMapper;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Repository interface.
@@ -93,6 +95,23 @@ public interface Repository<T, K, F> {
 		return findById(id).flatMap(e -> update(partialUpdate.apply(e)));
 	}
 
+	/**
+	 * Updates all given entities. Implementations can override this to update the entities in batches.
+	 * @param entities entities to update
+	 * @return count of updated (found) entities
+	 */
+	default int updateAll(List<T> entities) {
+		int count = 0;
+		if (entities != null) {
+			for (T e : entities) {
+				if (update(e).isPresent()) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
 	// TODO RBe: Support for update of entity by creating new immutable record with new version.
 	
 	/**
@@ -102,6 +121,23 @@ public interface Repository<T, K, F> {
 	 */
 	boolean delete(K id);
 
+	/**
+	 * Deletes entities with given ids. Implementations can override this to delete the entities in batches.
+	 * @param ids ids of entities to delete
+	 * @return count of deleted entities
+	 */
+	default int deleteByIds(Collection<K> ids) {
+		int count = 0;
+		if (ids != null) {
+			for (K id : ids) {
+				if (delete(id)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Deletes entity by given filter. Be aware to set the correct filter!
 	 * @param filter
@@ -125,6 +161,23 @@ public interface Repository<T, K, F> {
 	default Optional<T> findById(K id) {
 		return findById(id, getEntityMapper());
 	}
+
+	/**
+	 * Finds entities with given ids. Implementations can override this to load the entities at once.
+	 * @param ids ids of entities
+	 * @return found entities, implementations loading the entities at once need not keep order of given ids
+	 */
+	default List<T> findByIds(Collection<K> ids) {
+		List<T> entities = new ArrayList<>();
+		if (ids != null) {
+			for (K id : ids) {
+				if (id != null) {
+					findById(id).ifPresent(entities::add);
+				}
+			}
+		}
+		return entities;
+	}
 	
 	/**
 	 * Returns results for given filtering, sorting, grouping and pagination settings.
@@ -135,6 +188,30 @@ public interface Repository<T, K, F> {
 
 	<T, F> List<T> findByOverview(final Overview<F> overview, EntityMapper<T, F> entityMapper);
 
+	/**
+	 * Returns lazily loaded stream of results for given filtering, sorting, grouping and pagination settings.
+	 * Returned stream can hold open resources (e.g. database cursor) and should be closed after use,
+	 * ideally using try-with-resources statement.
+	 * @param overview
+	 * @return
+	 */
+	default Stream<T> streamByOverview(Overview<F> overview) {
+		return streamByOverview(overview, getEntityMapper());
+	}
+
+	/**
+	 * Returns lazily loaded stream of results for given filtering, sorting, grouping and pagination settings.
+	 * Default implementation streams fully loaded results, implementations can override it to read results one by one.
+	 * @param overview
+	 * @param entityMapper
+	 * @param <T>
+	 * @param <F>
+	 * @return
+	 */
+	default <T, F> Stream<T> streamByOverview(final Overview<F> overview, EntityMapper<T, F> entityMapper) {
+		return findByOverview(overview, entityMapper).stream();
+	}
+
 	/**
 	 * Returns all results.
 	 * @return
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.cache;
+
+/**
+ * Statistics of entity cache of {@link CachingRepository}.
+ * @author Radek Beran
+ */
+public final class CacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final int size;
+
+	public CacheStats(long hitCount, long missCount, long evictionCount, int size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	/**
+	 * Returns count of lookups of entities found in the cache.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns count of lookups of entities that were not found in the cache (including expired entities).
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns count of entities evicted from the cache because of its maximal size.
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Returns current count of cached entities.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns ratio of lookups found in the cache, or 1 if there was no lookup.
+	 */
+	public double getHitRate() {
+		long requestCount = hitCount + missCount;
+		return requestCount == 0 ? 1.0 : (double)hitCount / requestCount;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{" +
+			"hitCount=" + hitCount +
+			", missCount=" + missCount +
+			", evictionCount=" + evictionCount +
+			", size=" + size +
+			'}';
+	}
+}
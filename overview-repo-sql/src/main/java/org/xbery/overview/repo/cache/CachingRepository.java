@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.cache;
+
+import org.xbery.overview.Group;
+import org.xbery.overview.Order;
+import org.xbery.overview.Overview;
+import org.xbery.overview.ResultsWithOverview;
+import org.xbery.overview.common.Pair;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.repo.AggType;
+import org.xbery.overview.repo.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Repository decorator caching entities found by id (read-through cache). Cache is bounded by maximal count of entities
+ * (least recently used entities are evicted) and by time to live of entities. Cached entity is invalidated when it is
+ * updated or deleted through this repository, all entities are invalidated by {@link #deleteByFilter(Object)}.
+ * Other operations are delegated to the decorated repository.
+ * <p>
+ * Cached entities are shared by all callers, so they should not be modified. Cache is not transactional:
+ * changes made directly in the database or rolled back changes are visible only after the entity expires.
+ * @param <T> type of entity
+ * @param <K> type of entity key
+ * @param <F> type of filter
+ * @author Radek Beran
+ */
+public class CachingRepository<T, K, F> implements Repository<T, K, F> {
+
+	private final Repository<T, K, F> repository;
+	private final EntityCache<K, T> cache;
+
+	/**
+	 * @param repository decorated repository
+	 * @param maxSize maximal count of cached entities
+	 * @param timeToLive time to live of cached entities, or null if entities do not expire
+	 */
+	public CachingRepository(Repository<T, K, F> repository, int maxSize, Duration timeToLive) {
+		this.repository = Objects.requireNonNull(repository, "repository should be specified");
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Maximal size of cache should be positive");
+		}
+		this.cache = new EntityCache<>(maxSize, timeToLive != null ? timeToLive.toNanos() : 0);
+	}
+
+	public CachingRepository(Repository<T, K, F> repository, int maxSize) {
+		this(repository, maxSize, null);
+	}
+
+	/**
+	 * Returns decorated repository.
+	 */
+	public Repository<T, K, F> getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Returns statistics of cache.
+	 */
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+
+	/**
+	 * Invalidates cached entity with given id, e.g. when it was changed directly in the database.
+	 */
+	public void invalidate(K id) {
+		if (id != null) {
+			cache.invalidate(id);
+		}
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public EntityMapper<T, F> getEntityMapper() {
+		return repository.getEntityMapper();
+	}
+
+	@Override
+	public Optional<T> findById(K id) {
+		if (id == null) {
+			return Optional.empty();
+		}
+		T entity = cache.get(id);
+		if (entity != null) {
+			return Optional.of(entity);
+		}
+		long invalidationCount = cache.getInvalidationCount(id);
+		Optional<T> loaded = repository.findById(id);
+		loaded.ifPresent(e -> cache.put(id, e, invalidationCount));
+		return loaded;
+	}
+
+	/**
+	 * Finds entities with given ids, entities that are not cached are loaded by {@link #loadByIds(Collection)}.
+	 * @param ids ids of entities
+	 * @return found entities in order of given ids
+	 */
+	@Override
+	public List<T> findByIds(Collection<K> ids) {
+		List<T> entities = new ArrayList<>(ids.size());
+		Map<K, T> found = new LinkedHashMap<>();
+		Set<K> missingIds = new LinkedHashSet<>();
+		for (K id : ids) {
+			if (id != null && !found.containsKey(id)) {
+				T entity = cache.get(id);
+				if (entity != null) {
+					found.put(id, entity);
+				} else {
+					missingIds.add(id);
+				}
+			}
+		}
+		if (!missingIds.isEmpty()) {
+			Map<K, Long> invalidationCounts = new HashMap<>();
+			for (K id : missingIds) {
+				invalidationCounts.put(id, cache.getInvalidationCount(id));
+			}
+			Map<K, T> loaded = loadByIds(missingIds);
+			for (Map.Entry<K, T> entry : loaded.entrySet()) {
+				Long invalidationCount = invalidationCounts.get(entry.getKey());
+				if (invalidationCount != null) {
+					cache.put(entry.getKey(), entry.getValue(), invalidationCount.longValue());
+				}
+			}
+			found.putAll(loaded);
+		}
+		for (K id : ids) {
+			T entity = id != null ? found.get(id) : null;
+			if (entity != null) {
+				entities.add(entity);
+			}
+		}
+		return entities;
+	}
+
+	@Override
+	public <U, L, G> Optional<U> findById(L id, EntityMapper<U, G> entityMapper) {
+		return repository.findById(id, entityMapper);
+	}
+
+	@Override
+	public T create(T entity, boolean autogenerateKey) {
+		return repository.create(entity, autogenerateKey);
+	}
+
+	@Override
+	public List<T> createAll(List<T> entities, boolean autogenerateKey) {
+		return repository.createAll(entities, autogenerateKey);
+	}
+
+	@Override
+	public Optional<T> update(T entity) {
+		try {
+			return repository.update(entity);
+		} finally {
+			invalidate(getEntityId(entity));
+		}
+	}
+
+	@Override
+	public int update(K id, List<Pair<Attribute<T, ?>, Object>> attributesWithValues) {
+		try {
+			return repository.update(id, attributesWithValues);
+		} finally {
+			invalidate(id);
+		}
+	}
+
+	@Override
+	public Optional<T> update(K id, Function<T, T> partialUpdate) {
+		try {
+			return repository.update(id, partialUpdate);
+		} finally {
+			invalidate(id);
+		}
+	}
+
+	@Override
+	public int updateAll(List<T> entities) {
+		try {
+			return repository.updateAll(entities);
+		} finally {
+			if (entities != null) {
+				entities.forEach(e -> invalidate(getEntityId(e)));
+			}
+		}
+	}
+
+	@Override
+	public boolean delete(K id) {
+		try {
+			return repository.delete(id);
+		} finally {
+			invalidate(id);
+		}
+	}
+
+	@Override
+	public int deleteByIds(Collection<K> ids) {
+		try {
+			return repository.deleteByIds(ids);
+		} finally {
+			if (ids != null) {
+				ids.forEach(this::invalidate);
+			}
+		}
+	}
+
+	@Override
+	public int deleteByFilter(F filter) {
+		try {
+			return repository.deleteByFilter(filter);
+		} finally {
+			invalidateAll();
+		}
+	}
+
+	@Override
+	public List<T> findByOverview(Overview<F> overview) {
+		return repository.findByOverview(overview);
+	}
+
+	@Override
+	public <U, G> List<U> findByOverview(Overview<G> overview, EntityMapper<U, G> entityMapper) {
+		return repository.findByOverview(overview, entityMapper);
+	}
+
+	@Override
+	public Stream<T> streamByOverview(Overview<F> overview) {
+		return repository.streamByOverview(overview);
+	}
+
+	@Override
+	public <U, G> Stream<U> streamByOverview(Overview<G> overview, EntityMapper<U, G> entityMapper) {
+		return repository.streamByOverview(overview, entityMapper);
+	}
+
+	@Override
+	public List<T> findByFilter(F filter, List<Order> ordering) {
+		return repository.findByFilter(filter, ordering);
+	}
+
+	@Override
+	public int countByFilter(F filter, List<Group> grouping) {
+		return repository.countByFilter(filter, grouping);
+	}
+
+	@Override
+	public <R> R aggByFilter(AggType aggType, Class<R> resultClass, String attrName, F filter, List<Group> grouping) {
+		return repository.aggByFilter(aggType, resultClass, attrName, filter, grouping);
+	}
+
+	@Override
+	public <R, U, G> R aggByFilter(AggType aggType, Class<R> resultClass, String attrName, G filter, List<Group> grouping, EntityMapper<U, G> entityMapper) {
+		return repository.aggByFilter(aggType, resultClass, attrName, filter, grouping, entityMapper);
+	}
+
+	@Override
+	public ResultsWithOverview<T, F> findResultsWithOverview(Overview<F> overview) {
+		return repository.findResultsWithOverview(overview);
+	}
+
+	/**
+	 * Loads entities that are not cached using {@link Repository#findByIds(Collection)} of decorated repository
+	 * (SQL repository loads them at once using IN condition on the primary attribute). Loaded entities are keyed
+	 * by {@link #getEntityId(Object)}.
+	 * @param ids ids of entities that are not cached
+	 * @return found entities by their ids
+	 */
+	protected Map<K, T> loadByIds(Collection<K> ids) {
+		Map<K, T> entities = new LinkedHashMap<>();
+		for (T entity : repository.findByIds(ids)) {
+			entities.put(getEntityId(entity), entity);
+		}
+		return entities;
+	}
+
+	/**
+	 * Returns key of given entity (to invalidate cached entity when it is updated). By default, the key is value
+	 * of the only primary attribute of entity mapper, or list of values of primary attributes for composite key.
+	 * @param entity entity
+	 * @return key of entity
+	 */
+	@SuppressWarnings("unchecked")
+	protected K getEntityId(T entity) {
+		List<Object> values = getEntityMapper().getPrimaryAttributeValues(entity);
+		return values.size() == 1 ? (K)values.get(0) : (K)values;
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of entities split into independently locked segments, each segment evicts its least recently used
+ * entity when it is full. Entities expire after given time to live.
+ * <p>
+ * Every invalidation increments invalidation counter of the segment (under lock of the segment), so a value loaded
+ * concurrently with an invalidation in its segment is not cached if the counter has changed since the load started
+ * (it could be stale). Invalidations in other segments do not prevent caching of loaded values.
+ * @param <K> type of key
+ * @param <V> type of value
+ * @author Radek Beran
+ */
+final class EntityCache<K, V> {
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int MIN_SEGMENT_SIZE = 64;
+
+	private final Segment<K, V>[] segments;
+	private final int segmentMask;
+	/** Time to live in nanoseconds, 0 if entities do not expire. */
+	private final long timeToLiveNanos;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * @param maxSize maximal count of cached entities
+	 * @param timeToLiveNanos time to live of cached entities in nanoseconds, 0 if entities do not expire
+	 */
+	@SuppressWarnings("unchecked")
+	EntityCache(int maxSize, long timeToLiveNanos) {
+		int segmentCount = 1;
+		while (segmentCount < MAX_SEGMENTS && segmentCount * 2 * MIN_SEGMENT_SIZE <= maxSize) {
+			segmentCount *= 2;
+		}
+		this.segments = (Segment<K, V>[])new Segment<?, ?>[segmentCount];
+		int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment<>(segmentSize, evictionCount);
+		}
+		this.segmentMask = segmentCount - 1;
+		this.timeToLiveNanos = timeToLiveNanos;
+	}
+
+	/**
+	 * Returns cached value, or null if the value is not cached or it has expired.
+	 */
+	V get(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		CachedValue<V> cached;
+		synchronized (segment) {
+			cached = segment.get(key);
+			if (cached != null && cached.isExpired(System.nanoTime())) {
+				segment.remove(key);
+				cached = null;
+			}
+		}
+		if (cached == null) {
+			missCount.increment();
+			return null;
+		}
+		hitCount.increment();
+		return cached.value;
+	}
+
+	/**
+	 * Returns current value of invalidation counter of the segment of given key, it should be obtained before a value
+	 * to cache is loaded.
+	 */
+	long getInvalidationCount(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.invalidationCount;
+		}
+	}
+
+	/**
+	 * Caches given value unless some value was invalidated since the value was loaded.
+	 * @param key key
+	 * @param value loaded value
+	 * @param invalidationCountBeforeLoad value of invalidation counter of the key obtained before the value was loaded
+	 */
+	void put(K key, V value, long invalidationCountBeforeLoad) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			if (segment.invalidationCount == invalidationCountBeforeLoad) {
+				long expiresAt = timeToLiveNanos > 0 ? System.nanoTime() + timeToLiveNanos : 0;
+				segment.put(key, new CachedValue<>(value, expiresAt));
+			}
+		}
+	}
+
+	void invalidate(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			segment.invalidationCount++;
+			segment.remove(key);
+		}
+	}
+
+	void invalidateAll() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.invalidationCount++;
+				segment.clear();
+			}
+		}
+	}
+
+	CacheStats getStats() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size);
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int h = key.hashCode();
+		return segments[(h ^ (h >>> 16)) & segmentMask];
+	}
+
+	/**
+	 * Segment of cache ordered from the least recently used entity, access is guarded by the segment.
+	 */
+	private static final class Segment<K, V> extends LinkedHashMap<K, CachedValue<V>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+		private final transient LongAdder evictionCount;
+		private long invalidationCount;
+
+		Segment(int maxSize, LongAdder evictionCount) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictionCount = evictionCount;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+			if (size() > maxSize) {
+				evictionCount.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static final class CachedValue<V> {
+		private final V value;
+		/** Expiration time in nanoseconds, 0 if the value does not expire. */
+		private final long expiresAt;
+
+		CachedValue(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(long now) {
+			return expiresAt != 0 && now - expiresAt >= 0;
+		}
+	}
+}
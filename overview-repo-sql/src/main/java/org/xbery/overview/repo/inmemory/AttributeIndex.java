@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.filter.EqCondition;
+import org.xbery.overview.filter.InCondition;
+import org.xbery.overview.mapper.Attribute;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Secondary index of attribute of in-memory repository. Index maps values of attribute to sequence numbers of records
+ * with these values. Changes of index are serialized, lookups are lock-free and weakly consistent, so found records
+ * are only candidates that must be checked by the whole filter predicate.
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+abstract class AttributeIndex<T> {
+
+	/** Marks null value of attribute in {@link #keysBySequence}. */
+	private static final Object NULL_KEY = new Object();
+
+	private final Attribute<T, ?> attribute;
+	/** Sequence numbers of records with null value of attribute. */
+	private final Set<Long> nullSequences = ConcurrentHashMap.newKeySet();
+	/**
+	 * Indexed keys by sequence numbers of records. Entity can be updated in place (mutable entity modified by update function),
+	 * so the key it was indexed by is remembered to be removed from index.
+	 */
+	private final Map<Long, Object> keysBySequence = new ConcurrentHashMap<>();
+
+	AttributeIndex(Attribute<T, ?> attribute) {
+		this.attribute = attribute;
+	}
+
+	Attribute<T, ?> getAttribute() {
+		return attribute;
+	}
+
+	synchronized void add(T entity, long sequence) {
+		Object value = attribute.getValue(entity);
+		Object key = value != null ? toKey(value) : NULL_KEY;
+		keysBySequence.put(sequence, key);
+		if (key == NULL_KEY) {
+			nullSequences.add(sequence);
+		} else {
+			getBuckets().computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(sequence);
+		}
+	}
+
+	synchronized void remove(long sequence) {
+		Object key = keysBySequence.remove(sequence);
+		if (key == NULL_KEY) {
+			nullSequences.remove(sequence);
+		} else if (key != null) {
+			Set<Long> sequences = getBuckets().get(key);
+			if (sequences != null) {
+				sequences.remove(sequence);
+				if (sequences.isEmpty()) {
+					getBuckets().remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates index after change of entity, if value of indexed attribute has changed.
+	 */
+	synchronized void update(T entity, long sequence) {
+		Object value = attribute.getValue(entity);
+		Object key = value != null ? toKey(value) : NULL_KEY;
+		if (!key.equals(keysBySequence.get(sequence))) {
+			remove(sequence);
+			add(entity, sequence);
+		}
+	}
+
+	/**
+	 * Returns sets of sequence numbers of records that can satisfy given condition.
+	 * @param condition condition
+	 * @return sets of sequence numbers, or null if the condition cannot be evaluated using this index
+	 */
+	Collection<Set<Long>> find(Condition condition) {
+		if (condition instanceof EqCondition) {
+			EqCondition<?, ?> c = (EqCondition<?, ?>)condition;
+			if (!attribute.equals(c.getAttribute())) {
+				return null;
+			}
+			return c.getValue() == null ? Collections.singletonList(nullSequences) : findValues(Collections.singletonList(c.getValue()));
+		} else if (condition instanceof InCondition) {
+			InCondition<?, ?> c = (InCondition<?, ?>)condition;
+			if (!attribute.equals(c.getAttribute())) {
+				return null;
+			}
+			// IN is never satisfied by null value of attribute
+			return c.getValues() == null ? Collections.emptyList() : findValues(c.getValues());
+		}
+		return findRange(condition);
+	}
+
+	Set<Long> getNullSequences() {
+		return nullSequences;
+	}
+
+	/**
+	 * Returns sets of sequence numbers of records by values of indexed attribute.
+	 */
+	abstract Map<Object, Set<Long>> getBuckets();
+
+	/**
+	 * Converts value of attribute to key of index.
+	 */
+	abstract Object toKey(Object value);
+
+	/**
+	 * Returns sets of sequence numbers of records that can satisfy given condition other than equality and IN condition.
+	 * @return sets of sequence numbers, or null if the condition cannot be evaluated using this index
+	 */
+	abstract Collection<Set<Long>> findRange(Condition condition);
+
+	private Collection<Set<Long>> findValues(Collection<?> values) {
+		List<Set<Long>> found = new ArrayList<>();
+		for (Object value : values) {
+			if (value != null) {
+				Set<Long> sequences = getBuckets().get(toKey(value));
+				if (sequences != null && !found.contains(sequences)) {
+					found.add(sequences);
+				}
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.AttributeType;
+import org.xbery.overview.repo.RepositoryException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Growable buffer encoding attribute values to binary form of snapshots and change logs of in-memory repository,
+ * with static methods decoding the values. Numbers are stored in fixed length big-endian form, strings in UTF-8.
+ * @author Radek Beran
+ */
+final class BinaryEncoder {
+
+	private ByteBuffer buffer;
+
+	BinaryEncoder(int initialCapacity) {
+		this.buffer = ByteBuffer.allocate(initialCapacity);
+	}
+
+	/**
+	 * Returns type in which values of given attribute are stored. Enums are stored as their names.
+	 * @throws RepositoryException if values of attribute cannot be stored
+	 */
+	static AttributeType getStoredType(Attribute<?, ?> attribute) {
+		AttributeType type = attribute.getAttributeType();
+		if (type == AttributeType.OTHER) {
+			if (!attribute.getAttributeClass().isEnum()) {
+				throw new RepositoryException("Attribute " + attribute.getName() + " of " + attribute.getAttributeClass() + " cannot be stored in binary form");
+			}
+			type = AttributeType.STRING;
+		}
+		return type;
+	}
+
+	BinaryEncoder putByte(byte value) {
+		ensureCapacity(1).put(value);
+		return this;
+	}
+
+	BinaryEncoder putInt(int value) {
+		ensureCapacity(4).putInt(value);
+		return this;
+	}
+
+	BinaryEncoder putLong(long value) {
+		ensureCapacity(8).putLong(value);
+		return this;
+	}
+
+	BinaryEncoder putBytes(byte[] bytes) {
+		ensureCapacity(bytes.length).put(bytes);
+		return this;
+	}
+
+	BinaryEncoder putString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		return putInt(bytes.length).putBytes(bytes);
+	}
+
+	/**
+	 * Writes non-null value of given stored type.
+	 */
+	BinaryEncoder putValue(AttributeType type, Object value) {
+		switch (type) {
+			case BOOLEAN:
+				return putByte(((Boolean)value).booleanValue() ? (byte)1 : (byte)0);
+			case BYTE:
+				return putByte(((Byte)value).byteValue());
+			case INTEGER:
+				return putInt(((Integer)value).intValue());
+			case LONG:
+				return putLong(((Long)value).longValue());
+			case FLOAT:
+				return putInt(Float.floatToIntBits(((Float)value).floatValue()));
+			case DOUBLE:
+				return putLong(Double.doubleToLongBits(((Double)value).doubleValue()));
+			case DATE:
+				return putLong(((Date)value).getTime());
+			case INSTANT:
+				Instant instant = (Instant)value;
+				return putLong(instant.getEpochSecond()).putInt(instant.getNano());
+			case BIG_DECIMAL:
+				BigDecimal decimal = (BigDecimal)value;
+				byte[] unscaled = decimal.unscaledValue().toByteArray();
+				return putInt(decimal.scale()).putInt(unscaled.length).putBytes(unscaled);
+			case STRING:
+				return putString(value instanceof Enum ? ((Enum<?>)value).name() : (String)value);
+			default:
+				throw new IllegalArgumentException("Values of type " + type + " cannot be stored");
+		}
+	}
+
+	/**
+	 * Reads value of given stored type.
+	 */
+	static Object readValue(ByteBuffer buffer, AttributeType type) {
+		switch (type) {
+			case BOOLEAN:
+				return Boolean.valueOf(buffer.get() != 0);
+			case BYTE:
+				return Byte.valueOf(buffer.get());
+			case INTEGER:
+				return Integer.valueOf(buffer.getInt());
+			case LONG:
+				return Long.valueOf(buffer.getLong());
+			case FLOAT:
+				return Float.valueOf(Float.intBitsToFloat(buffer.getInt()));
+			case DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(buffer.getLong()));
+			case DATE:
+				return new Date(buffer.getLong());
+			case INSTANT:
+				long seconds = buffer.getLong();
+				return Instant.ofEpochSecond(seconds, buffer.getInt());
+			case BIG_DECIMAL:
+				int scale = buffer.getInt();
+				byte[] unscaled = new byte[buffer.getInt()];
+				buffer.get(unscaled);
+				return new BigDecimal(new BigInteger(unscaled), scale);
+			case STRING:
+				return readString(buffer);
+			default:
+				throw new IllegalArgumentException("Values of type " + type + " cannot be read");
+		}
+	}
+
+	static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * Returns written bytes as buffer ready to be read.
+	 */
+	ByteBuffer toByteBuffer() {
+		ByteBuffer written = buffer.duplicate();
+		written.flip();
+		return written;
+	}
+
+	void clear() {
+		buffer.clear();
+	}
+
+	private ByteBuffer ensureCapacity(int length) {
+		if (buffer.remaining() < length) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.AttributeType;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.mapper.RowDecoder;
+import org.xbery.overview.repo.RepositoryException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Append-only log of changes of in-memory repository made since the last snapshot. Each entry contains increasing number
+ * of the change, operation and values of all attributes of the created, updated or deleted entity. Entry is written
+ * before the change is applied to the repository, entries of changes included in a snapshot are discarded
+ * after the snapshot is written. Incomplete entry at the end of the log (e.g. after crash) is ignored.
+ * <p>
+ * Format: magic number, version, count of columns, columns (name and stored {@link AttributeType}) and entries
+ * (length in bytes, number of change, operation and for each column null flag and non-null value).
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+final class ChangeLog<T> implements Closeable {
+
+	enum Operation {
+		PUT,
+		DELETE
+	}
+
+	private static final int MAGIC = 0x4F56524C; // OVRL
+	private static final int VERSION = 1;
+
+	private final Path file;
+	private final List<Attribute<T, ?>> attributes;
+	private final AttributeType[] types;
+	private final boolean forced;
+	/** Changes are logged and applied under read lock, write lock separates all logged changes from the pending ones. */
+	private final ReadWriteLock changeLock = new ReentrantReadWriteLock();
+	/** Guarded by this. */
+	private final BinaryEncoder encoder = new BinaryEncoder(1024);
+	/** Guarded by this. */
+	private FileChannel channel;
+	/** Guarded by this. */
+	private long lastChange;
+
+	private ChangeLog(Path file, List<Attribute<T, ?>> attributes, boolean forced) {
+		this.file = file;
+		this.attributes = attributes;
+		this.types = new AttributeType[attributes.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = BinaryEncoder.getStoredType(attributes.get(i));
+		}
+		this.forced = forced;
+	}
+
+	/**
+	 * Opens change log, replays its changes made after given change and prepares it for appending of new changes.
+	 * @param file file of change log, created if it does not exist
+	 * @param entityMapper mapper of entities
+	 * @param baseChange number of the last change included in restored snapshot, older changes are not replayed
+	 * @param consumer consumer of operations and entities of replayed changes
+	 * @param forced true if appended changes should be forced to storage device
+	 * @param <T> type of entity
+	 * @return opened change log
+	 */
+	static <T> ChangeLog<T> open(Path file, EntityMapper<T, ?> entityMapper, long baseChange, BiConsumer<Operation, T> consumer, boolean forced) {
+		ChangeLog<T> log = new ChangeLog<>(file, entityMapper.getAttributes(), forced);
+		log.lastChange = baseChange;
+		try {
+			List<ByteBuffer> entries = new ArrayList<>();
+			boolean upToDate = Files.exists(file) && log.replay(entityMapper, baseChange, consumer, entries);
+			if (upToDate) {
+				log.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+				log.channel.position(log.channel.size());
+			} else {
+				log.rewrite(entries);
+			}
+			return log;
+		} catch (IOException ex) {
+			throw new RepositoryException("Change log " + file + " cannot be opened: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Writes entry of the change to the log and applies the change.
+	 * @param operation operation
+	 * @param entity created, updated or deleted entity
+	 * @param change change to apply after it is logged
+	 */
+	void append(Operation operation, T entity, Runnable change) {
+		changeLock.readLock().lock();
+		try {
+			synchronized (this) {
+				ensureOpen();
+				encoder.clear();
+				encodeEntry(encoder, lastChange + 1, operation, entity);
+				ByteBuffer entry = encoder.toByteBuffer();
+				long position = -1;
+				try {
+					position = channel.position();
+					while (entry.hasRemaining()) {
+						channel.write(entry);
+					}
+					if (forced) {
+						channel.force(false);
+					}
+				} catch (IOException ex) {
+					if (position >= 0) {
+						truncate(position);
+					}
+					throw new RepositoryException("Change cannot be written to log " + file + ": " + ex.getMessage(), ex);
+				}
+				lastChange++;
+			}
+			change.run();
+		} finally {
+			changeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns number of the last change. All changes up to the returned one are already applied to the repository.
+	 */
+	long getLastAppliedChange() {
+		changeLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				return lastChange;
+			}
+		} finally {
+			changeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Discards entries of changes included in a snapshot.
+	 * @param includedChange number of the last change included in the snapshot
+	 */
+	void discard(long includedChange) {
+		changeLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				ensureOpen();
+				ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				readHeader(content);
+				List<ByteBuffer> entries = new ArrayList<>();
+				ByteBuffer entry;
+				while ((entry = nextEntry(content)) != null) {
+					if (entry.getLong(4) > includedChange) {
+						entries.add(entry);
+					}
+				}
+				channel.close();
+				rewrite(entries);
+			}
+		} catch (IOException ex) {
+			throw new RepositoryException("Change log " + file + " cannot be rewritten: " + ex.getMessage(), ex);
+		} finally {
+			changeLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				throw new RepositoryException("Change log " + file + " cannot be closed: " + ex.getMessage(), ex);
+			} finally {
+				channel = null;
+			}
+		}
+	}
+
+	/**
+	 * Replays changes of the log.
+	 * @param entries entries of replayed changes are added to this list
+	 * @return true if the log can be appended, false if the log should be rewritten (it was written for other attributes or it is damaged)
+	 */
+	private boolean replay(EntityMapper<T, ?> entityMapper, long baseChange, BiConsumer<Operation, T> consumer, List<ByteBuffer> entries) throws IOException {
+		try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (readChannel.size() > Integer.MAX_VALUE) {
+				throw new RepositoryException("Change log " + file + " is too large");
+			}
+			ByteBuffer content = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+			String[] names;
+			AttributeType[] logTypes;
+			try {
+				Object[] header = readHeader(content);
+				names = (String[])header[0];
+				logTypes = (AttributeType[])header[1];
+			} catch (RepositoryException | BufferUnderflowException | IndexOutOfBoundsException ex) {
+				if (content.limit() > 0) {
+					throw new RepositoryException("File " + file + " is not change log of in-memory repository", ex);
+				}
+				return false;
+			}
+			Object[][] columns = new Object[names.length][1];
+			ColumnarAttributeSource attributeSource = new ColumnarAttributeSource(names, columns);
+			RowDecoder<T> decoder = entityMapper.getRowDecoder(null);
+			ByteBuffer entry;
+			while ((entry = nextEntry(content)) != null) {
+				entry.getInt();
+				long change = entry.getLong();
+				Operation operation = Operation.values()[entry.get()];
+				for (int c = 0; c < names.length; c++) {
+					columns[c][0] = entry.get() != 0 ? BinaryEncoder.readValue(entry, logTypes[c]) : null;
+				}
+				if (change > baseChange) {
+					T entity = decoder.decode(attributeSource);
+					if (entity != null) {
+						consumer.accept(operation, entity);
+						BinaryEncoder encoder = new BinaryEncoder(256);
+						encodeEntry(encoder, change, operation, entity);
+						entries.add(encoder.toByteBuffer());
+					}
+					lastChange = Math.max(lastChange, change);
+				}
+			}
+			boolean complete = !content.hasRemaining();
+			return complete && Arrays.equals(names, getNames()) && Arrays.equals(logTypes, types);
+		}
+	}
+
+	private Object[] readHeader(ByteBuffer content) {
+		if (content.getInt() != MAGIC || content.getInt() != VERSION) {
+			throw new RepositoryException("File " + file + " is not change log of in-memory repository");
+		}
+		int columnCount = content.getInt();
+		String[] names = new String[columnCount];
+		AttributeType[] logTypes = new AttributeType[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			names[c] = BinaryEncoder.readString(content);
+			logTypes[c] = AttributeType.values()[content.get()];
+		}
+		return new Object[] { names, logTypes };
+	}
+
+	/**
+	 * Returns next complete entry (including its length), or null if there is no other complete entry.
+	 */
+	private static ByteBuffer nextEntry(ByteBuffer content) {
+		if (content.remaining() < 4) {
+			return null;
+		}
+		int length = content.getInt(content.position());
+		if (length <= 0 || content.remaining() - 4 < length) {
+			return null;
+		}
+		ByteBuffer entry = content.slice();
+		entry.limit(4 + length);
+		content.position(content.position() + 4 + length);
+		return entry;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void encodeEntry(BinaryEncoder encoder, long change, Operation operation, T entity) {
+		int start = encoder.size();
+		encoder.putInt(0).putLong(change).putByte((byte)operation.ordinal());
+		for (int i = 0; i < types.length; i++) {
+			Object value = ((Attribute<T, Object>)attributes.get(i)).getValue(entity);
+			if (value == null) {
+				encoder.putByte((byte)0);
+			} else {
+				encoder.putByte((byte)1).putValue(types[i], value);
+			}
+		}
+		encoder.toByteBuffer().putInt(start, encoder.size() - start - 4);
+	}
+
+	/**
+	 * Writes header and given entries to new file that atomically replaces the log, and opens it for appending.
+	 */
+	private void rewrite(List<ByteBuffer> entries) throws IOException {
+		BinaryEncoder header = new BinaryEncoder(256);
+		header.putInt(MAGIC).putInt(VERSION).putInt(types.length);
+		String[] names = getNames();
+		for (int c = 0; c < types.length; c++) {
+			header.putString(names[c]).putByte((byte)types[c].ordinal());
+		}
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			List<ByteBuffer> buffers = new ArrayList<>();
+			buffers.add(header.toByteBuffer());
+			for (ByteBuffer entry : entries) {
+				buffers.add(entry.duplicate());
+			}
+			for (ByteBuffer buffer : buffers) {
+				while (buffer.hasRemaining()) {
+					tempChannel.write(buffer);
+				}
+			}
+			tempChannel.force(true);
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ);
+		channel.position(channel.size());
+	}
+
+	private String[] getNames() {
+		String[] names = new String[attributes.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = attributes.get(i).getName();
+		}
+		return names;
+	}
+
+	private void truncate(long position) {
+		try {
+			channel.truncate(position);
+			channel.position(position);
+		} catch (IOException ex) {
+			// The incomplete entry is ignored when the log is read
+		}
+	}
+
+	private void ensureOpen() {
+		if (channel == null) {
+			throw new RepositoryException("Change log " + file + " is closed");
+		}
+	}
+}
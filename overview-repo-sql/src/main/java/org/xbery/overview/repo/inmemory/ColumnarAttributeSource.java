@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.mapper.AttributeSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attribute source reading values of current row from decoded columns of snapshot or change log.
+ * Enums are stored as their names and converted back when read.
+ * @author Radek Beran
+ */
+final class ColumnarAttributeSource implements AttributeSource {
+
+	private final Map<String, Object[]> columns = new HashMap<>();
+	private int row;
+
+	ColumnarAttributeSource(String[] names, Object[][] columns) {
+		for (int i = 0; i < names.length; i++) {
+			this.columns.put(names[i], columns[i]);
+		}
+	}
+
+	void setRow(int row) {
+		this.row = row;
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <A> A get(Class<A> cls, String attributeName) {
+		Object[] column = columns.get(attributeName);
+		Object value = column != null ? column[row] : null;
+		if (value instanceof String && cls.isEnum()) {
+			return (A)Enum.valueOf((Class)cls, (String)value);
+		}
+		return cls.cast(value);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.common.Pair;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.mapper.MapAttributeSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * In-memory repository driven by an {@link EntityMapper}: keys of entities are values of primary attributes
+ * (list of values for composite primary key), filter conditions composed by the mapper, ordering and aggregations
+ * are evaluated in memory. It can stand in for SQL repository using the same entity mapper (e.g. in tests).
+ * @param <T> type of entity
+ * @param <K> type of key
+ * @param <F> type of filter
+ * @author Radek Beran
+ */
+public class EntityMapperInMemoryRepository<T, K, F> extends InMemoryRepository<T, K, F> {
+
+	private final EntityMapper<T, F> entityMapper;
+	private final Supplier<K> keyGenerator;
+
+	/**
+	 * @param entityMapper entity mapper
+	 * @param keyGenerator generator of keys of created entities, or null if keys are not generated
+	 */
+	public EntityMapperInMemoryRepository(EntityMapper<T, F> entityMapper, Supplier<K> keyGenerator) {
+		this.entityMapper = Objects.requireNonNull(entityMapper, "entityMapper should be specified");
+		this.keyGenerator = keyGenerator;
+	}
+
+	public EntityMapperInMemoryRepository(EntityMapper<T, F> entityMapper) {
+		this(entityMapper, null);
+	}
+
+	@Override
+	public EntityMapper<T, F> getEntityMapper() {
+		return entityMapper;
+	}
+
+	@Override
+	protected T entityUpdatedWithId(T entity, K id) {
+		List<Pair<Attribute<T, ?>, Object>> attributesToValues = entityMapper.decomposePrimaryKey(id);
+		Map<String, Object> keyValues = new HashMap<>();
+		for (Pair<Attribute<T, ?>, Object> p : attributesToValues) {
+			keyValues.put(p.getFirst().getName(), p.getSecond());
+		}
+		MapAttributeSource attrSource = new MapAttributeSource(keyValues);
+		T updatedEntity = entity;
+		for (Pair<Attribute<T, ?>, Object> p : attributesToValues) {
+			updatedEntity = p.getFirst().entityWithAttribute(updatedEntity, attrSource, p.getFirst().getName());
+		}
+		return updatedEntity;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected K getEntityId(T entity) {
+		List<Object> values = entityMapper.getPrimaryAttributeValues(entity);
+		if (values.isEmpty()) {
+			throw new IllegalStateException("Please define some primary attributes of entity (data set " + entityMapper.getTableName() + ")");
+		}
+		if (values.size() == 1) {
+			return (K)values.get(0);
+		}
+		return values.contains(null) ? null : (K)values;
+	}
+
+	@Override
+	protected K generateId() {
+		if (keyGenerator == null) {
+			throw new UnsupportedOperationException("Key generator of " + entityMapper.getTableName() + " is not specified");
+		}
+		return keyGenerator.get();
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.mapper.Attribute;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash index evaluating equality and IN conditions. Numbers are indexed by their decimal values, so they are found
+ * regardless of their class (as they are compared by filter conditions).
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+class HashAttributeIndex<T> extends AttributeIndex<T> {
+
+	private final Map<Object, Set<Long>> buckets = new ConcurrentHashMap<>();
+
+	HashAttributeIndex(Attribute<T, ?> attribute) {
+		super(attribute);
+	}
+
+	@Override
+	Map<Object, Set<Long>> getBuckets() {
+		return buckets;
+	}
+
+	@Override
+	Object toKey(Object value) {
+		return InMemoryConditionBuilder.toEqualityKey(value);
+	}
+
+	@Override
+	Collection<Set<Long>> findRange(Condition condition) {
+		return null;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.repo.AggType;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Accumulates aggregated value of one attribute in one pass over entities. Accumulators of parts of entities
+ * can be combined (e.g. when entities are processed by parallel stream).
+ * @author Radek Beran
+ */
+class InMemoryAggregator {
+
+	private final AggType aggType;
+	private long count;
+	private BigDecimal sum;
+	private Object min;
+	private Object max;
+
+	InMemoryAggregator(AggType aggType) {
+		this.aggType = aggType;
+	}
+
+	/**
+	 * Adds value of attribute of next entity (for COUNT(*), any non-null value should be given).
+	 * Null values are ignored as in SQL.
+	 */
+	void accept(Object value) {
+		if (value == null) {
+			return;
+		}
+		count++;
+		switch (aggType) {
+			case SUM:
+			case AVG:
+				BigDecimal decimal = InMemoryConditionBuilder.toBigDecimal(asNumber(value));
+				sum = sum == null ? decimal : sum.add(decimal);
+				break;
+			case MIN:
+				if (min == null || InMemoryConditionBuilder.compareValues(value, min) < 0) {
+					min = value;
+				}
+				break;
+			case MAX:
+				if (max == null || InMemoryConditionBuilder.compareValues(value, max) > 0) {
+					max = value;
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	InMemoryAggregator combine(InMemoryAggregator other) {
+		count += other.count;
+		if (other.sum != null) {
+			sum = sum == null ? other.sum : sum.add(other.sum);
+		}
+		if (other.min != null && (min == null || InMemoryConditionBuilder.compareValues(other.min, min) < 0)) {
+			min = other.min;
+		}
+		if (other.max != null && (max == null || InMemoryConditionBuilder.compareValues(other.max, max) > 0)) {
+			max = other.max;
+		}
+		return this;
+	}
+
+	/**
+	 * Returns aggregated value converted to given class.
+	 * @param resultClass class of result
+	 * @param <R> type of result
+	 * @return aggregated value, null for aggregation (other than count) of no values
+	 */
+	<R> R getResult(Class<R> resultClass) {
+		Object result;
+		switch (aggType) {
+			case COUNT:
+				result = convertNumber(BigDecimal.valueOf(count), resultClass);
+				break;
+			case SUM:
+				result = sum != null ? convertNumber(sum, resultClass) : null;
+				break;
+			case AVG:
+				result = sum != null ? convertNumber(sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64), resultClass) : null;
+				break;
+			case MIN:
+				result = min instanceof Number ? convertNumber(InMemoryConditionBuilder.toBigDecimal((Number)min), resultClass) : min;
+				break;
+			case MAX:
+				result = max instanceof Number ? convertNumber(InMemoryConditionBuilder.toBigDecimal((Number)max), resultClass) : max;
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported aggregation type: " + aggType);
+		}
+		return resultClass.cast(result);
+	}
+
+	private Number asNumber(Object value) {
+		if (!(value instanceof Number)) {
+			throw new IllegalArgumentException("Value " + value + " cannot be aggregated by " + aggType);
+		}
+		return (Number)value;
+	}
+
+	private static Object convertNumber(BigDecimal value, Class<?> resultClass) {
+		Object result;
+		if (resultClass.isAssignableFrom(BigDecimal.class)) {
+			result = value;
+		} else if (resultClass.isAssignableFrom(Integer.class)) {
+			result = Integer.valueOf(value.intValue());
+		} else if (resultClass.isAssignableFrom(Long.class)) {
+			result = Long.valueOf(value.longValue());
+		} else if (resultClass.isAssignableFrom(Double.class)) {
+			result = Double.valueOf(value.doubleValue());
+		} else if (resultClass.isAssignableFrom(Float.class)) {
+			result = Float.valueOf(value.floatValue());
+		} else if (resultClass.isAssignableFrom(Short.class)) {
+			result = Short.valueOf(value.shortValue());
+		} else if (resultClass.isAssignableFrom(Byte.class)) {
+			result = Byte.valueOf(value.byteValue());
+		} else {
+			throw new IllegalArgumentException("Aggregated value cannot be converted to " + resultClass.getName());
+		}
+		return result;
+	}
+}
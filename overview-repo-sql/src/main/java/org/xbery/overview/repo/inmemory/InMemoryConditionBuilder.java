@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.Order;
+import org.xbery.overview.filter.*;
+import org.xbery.overview.mapper.Attribute;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles {@link Condition conditions} and {@link Order ordering} into predicates and comparators evaluated on entities in memory.
+ * Semantics follows SQL: comparison with null value is not satisfied (except equality condition with null value that
+ * corresponds to IS NULL), null values are sorted first in ascending order.
+ * @author Radek Beran
+ */
+public class InMemoryConditionBuilder {
+
+	/**
+	 * Compiles given condition into predicate on entities.
+	 * @param condition condition
+	 * @param <T> type of entity
+	 * @return predicate
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Predicate<T> build(Condition condition) {
+		Predicate<T> predicate;
+		if (condition instanceof EqCondition) {
+			EqCondition<T, Object> c = (EqCondition<T, Object>)condition;
+			Function<T, Object> getter = getter(c.getAttribute());
+			Object value = c.getValue();
+			if (value == null) {
+				predicate = e -> getter.apply(e) == null;
+			} else {
+				predicate = e -> equalValues(getter.apply(e), value);
+			}
+		} else if (condition instanceof LtCondition) {
+			LtCondition<T, Object> c = (LtCondition<T, Object>)condition;
+			predicate = comparison(c.getAttribute(), c.getValue(), cmp -> cmp < 0);
+		} else if (condition instanceof LteCondition) {
+			LteCondition<T, Object> c = (LteCondition<T, Object>)condition;
+			predicate = comparison(c.getAttribute(), c.getValue(), cmp -> cmp <= 0);
+		} else if (condition instanceof GtCondition) {
+			GtCondition<T, Object> c = (GtCondition<T, Object>)condition;
+			predicate = comparison(c.getAttribute(), c.getValue(), cmp -> cmp > 0);
+		} else if (condition instanceof GteCondition) {
+			GteCondition<T, Object> c = (GteCondition<T, Object>)condition;
+			predicate = comparison(c.getAttribute(), c.getValue(), cmp -> cmp >= 0);
+		} else if (condition instanceof EqAttributesCondition) {
+			EqAttributesCondition<T, T, Object, Object> c = (EqAttributesCondition<T, T, Object, Object>)condition;
+			Function<T, Object> first = getter(c.getFirstAttribute());
+			Function<T, Object> second = getter(c.getSecondAttribute());
+			predicate = e -> {
+				Object firstValue = first.apply(e);
+				return firstValue != null && equalValues(firstValue, second.apply(e));
+			};
+		} else if (condition instanceof ContainsCondition) {
+			ContainsCondition<T, Object> c = (ContainsCondition<T, Object>)condition;
+			Function<T, Object> getter = getter(c.getAttribute());
+			if (c.getValue() == null) {
+				predicate = e -> false;
+			} else {
+				String value = c.getValue().toString();
+				predicate = e -> {
+					Object attrValue = getter.apply(e);
+					return attrValue != null && attrValue.toString().contains(value);
+				};
+			}
+		} else if (condition instanceof InCondition) {
+			InCondition<T, Object> c = (InCondition<T, Object>)condition;
+			if (c.getValues() != null && !c.getValues().isEmpty()) {
+				Function<T, Object> getter = getter(c.getAttribute());
+				if (c.getValues().stream().anyMatch(v -> v instanceof Number)) {
+					// Numbers equal regardless of their class and scale (as with equality condition)
+					Set<Object> values = c.getValues().stream().map(InMemoryConditionBuilder::toEqualityKey).collect(Collectors.toSet());
+					predicate = e -> {
+						Object attrValue = getter.apply(e);
+						return attrValue != null && values.contains(toEqualityKey(attrValue));
+					};
+				} else {
+					Set<Object> values = new HashSet<>(c.getValues());
+					predicate = e -> {
+						Object attrValue = getter.apply(e);
+						return attrValue != null && values.contains(attrValue);
+					};
+				}
+			} else {
+				// empty values for IN, value of attribute is certainly not among empty values
+				predicate = e -> false;
+			}
+		} else if (condition instanceof OrCondition) {
+			OrCondition c = (OrCondition)condition;
+			predicate = this.<T>build(c.getFirstCondition()).or(build(c.getSecondCondition()));
+		} else if (condition instanceof AndCondition) {
+			AndCondition c = (AndCondition)condition;
+			predicate = this.<T>build(c.getFirstCondition()).and(build(c.getSecondCondition()));
+		} else {
+			throw new IllegalStateException("Condition " + condition + " is not supported");
+		}
+		return predicate;
+	}
+
+	/**
+	 * Compiles given conditions into one predicate satisfied when all conditions are satisfied.
+	 * @param conditions conditions
+	 * @param <T> type of entity
+	 * @return predicate
+	 */
+	public <T> Predicate<T> build(Collection<Condition> conditions) {
+		Predicate<T> predicate = e -> true;
+		if (conditions != null) {
+			for (Condition condition : conditions) {
+				predicate = predicate.and(build(condition));
+			}
+		}
+		return predicate;
+	}
+
+	/**
+	 * Builds comparator of entities according to given ordering.
+	 * @param ordering ordering
+	 * @param attributesByName attributes of entities by their names and full names
+	 * @param <T> type of entity
+	 * @return comparator, or null if ordering is empty
+	 */
+	public <T> Comparator<T> buildComparator(List<Order> ordering, Map<String, Attribute<T, ?>> attributesByName) {
+		Comparator<T> comparator = null;
+		if (ordering != null) {
+			for (Order order : ordering) {
+				Function<T, Object> getter = getter(getAttribute(order.getAttribute(), attributesByName));
+				Comparator<T> orderComparator = Comparator.comparing(getter, Comparator.nullsFirst(InMemoryConditionBuilder::compareValues));
+				if (order.isDesc()) {
+					orderComparator = orderComparator.reversed();
+				}
+				comparator = comparator == null ? orderComparator : comparator.thenComparing(orderComparator);
+			}
+		}
+		return comparator;
+	}
+
+	/**
+	 * Builds predicate selecting entities that follow the entity with given values of ordering attributes (keyset pagination).
+	 * @param ordering ordering of entities
+	 * @param lastValues values of ordering attributes of the last entity of previous page
+	 * @param attributesByName attributes of entities by their names and full names
+	 * @param <T> type of entity
+	 * @return predicate
+	 */
+	public <T> Predicate<T> buildKeysetPredicate(List<Order> ordering, List<Object> lastValues, Map<String, Attribute<T, ?>> attributesByName) {
+		if (ordering == null || ordering.isEmpty() || ordering.size() != lastValues.size()) {
+			throw new IllegalArgumentException("Values of keyset " + lastValues + " do not correspond to ordering " + ordering);
+		}
+		List<Function<T, Object>> getters = new ArrayList<>();
+		for (Order order : ordering) {
+			getters.add(getter(getAttribute(order.getAttribute(), attributesByName)));
+		}
+		return e -> {
+			for (int i = 0; i < getters.size(); i++) {
+				Object value = getters.get(i).apply(e);
+				Object lastValue = lastValues.get(i);
+				if (value == null || lastValue == null) {
+					return false;
+				}
+				int cmp = compareValues(value, lastValue);
+				if (cmp != 0) {
+					return ordering.get(i).isDesc() ? cmp < 0 : cmp > 0;
+				}
+			}
+			return false;
+		};
+	}
+
+	/**
+	 * Returns attribute with given name or full name.
+	 * @throws IllegalArgumentException if there is no such attribute
+	 */
+	public <T> Attribute<T, ?> getAttribute(String name, Map<String, Attribute<T, ?>> attributesByName) {
+		Attribute<T, ?> attribute = attributesByName.get(name);
+		if (attribute == null) {
+			throw new IllegalArgumentException("Attribute " + name + " is not mapped");
+		}
+		return attribute;
+	}
+
+	/**
+	 * Compares two non-null values. Numbers of different classes are compared by their decimal values.
+	 */
+	@SuppressWarnings("unchecked")
+	public static int compareValues(Object value1, Object value2) {
+		if (value1 instanceof Number && value2 instanceof Number && value1.getClass() != value2.getClass()) {
+			return toBigDecimal((Number)value1).compareTo(toBigDecimal((Number)value2));
+		}
+		return ((Comparable<Object>)value1).compareTo(value2);
+	}
+
+	static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal)number;
+		} else if (number instanceof Double || number instanceof Float) {
+			return BigDecimal.valueOf(number.doubleValue());
+		}
+		return BigDecimal.valueOf(number.longValue());
+	}
+
+	/**
+	 * Returns key of given value for hash-based equality: numbers (except NaN and infinite values) are converted
+	 * to decimal values without trailing zeros, so numbers of different classes and scales are equal.
+	 */
+	static Object toEqualityKey(Object value) {
+		if (value instanceof Number && !isNaNOrInfinite((Number)value)) {
+			BigDecimal decimal = toBigDecimal((Number)value);
+			return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+		}
+		return value;
+	}
+
+	private static boolean isNaNOrInfinite(Number value) {
+		return (value instanceof Double || value instanceof Float) && (Double.isNaN(value.doubleValue()) || Double.isInfinite(value.doubleValue()));
+	}
+
+	private static boolean equalValues(Object value1, Object value2) {
+		if (value1 == null) {
+			return false;
+		}
+		if (value1 instanceof Number && value2 instanceof Number && (value1.getClass() != value2.getClass() || value1 instanceof BigDecimal)) {
+			return compareValues(value1, value2) == 0;
+		}
+		return value1.equals(value2);
+	}
+
+	private static <T> Predicate<T> comparison(Attribute<T, Object> attribute, Object value, CompareResultPredicate result) {
+		if (value == null) {
+			return e -> false;
+		}
+		Function<T, Object> getter = getter(attribute);
+		return e -> {
+			Object attrValue = getter.apply(e);
+			return attrValue != null && result.test(compareValues(attrValue, value));
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Function<T, Object> getter(Attribute<T, ?> attribute) {
+		Attribute<T, Object> attr = (Attribute<T, Object>)attribute;
+		return attr::getValue;
+	}
+
+	@FunctionalInterface
+	private interface CompareResultPredicate {
+		boolean test(int compareResult);
+	}
+}
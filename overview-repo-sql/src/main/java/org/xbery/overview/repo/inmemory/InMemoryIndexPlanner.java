@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.filter.AndCondition;
+import org.xbery.overview.filter.Condition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chooses the most selective secondary index for conditions of filter that must be all satisfied.
+ * Selectivity is estimated by count of records found by index for each condition, counting is stopped
+ * as soon as the count exceeds the best estimate so far.
+ * @author Radek Beran
+ */
+final class InMemoryIndexPlanner {
+
+	private InMemoryIndexPlanner() {
+	}
+
+	/**
+	 * Finds candidate records for given conditions using the most selective index.
+	 * @param indexes available indexes
+	 * @param conditions conditions that must be all satisfied
+	 * @param maxCandidates maximal count of candidates for which the index is used instead of scan of all records
+	 * @param <T> type of entity
+	 * @return sorted sequence numbers of candidate records, or null if no index is selective enough
+	 */
+	static <T> List<Long> findCandidates(Collection<AttributeIndex<T>> indexes, Collection<Condition> conditions, long maxCandidates) {
+		if (indexes.isEmpty() || conditions == null || conditions.isEmpty()) {
+			return null;
+		}
+		List<Condition> flattened = new ArrayList<>();
+		for (Condition condition : conditions) {
+			flatten(condition, flattened);
+		}
+		Collection<Set<Long>> best = null;
+		long bestCount = maxCandidates + 1;
+		for (Condition condition : flattened) {
+			for (AttributeIndex<T> index : indexes) {
+				Collection<Set<Long>> found = index.find(condition);
+				if (found != null) {
+					long count = count(found, bestCount);
+					if (count < bestCount) {
+						best = found;
+						bestCount = count;
+					}
+				}
+			}
+			if (bestCount == 0) {
+				break;
+			}
+		}
+		if (best == null) {
+			return null;
+		}
+		List<Long> sequences = new ArrayList<>((int)bestCount);
+		for (Set<Long> s : best) {
+			sequences.addAll(s);
+		}
+		// Records are returned in order of their creation as when all records are scanned
+		sequences.sort(null);
+		return sequences;
+	}
+
+	private static void flatten(Condition condition, List<Condition> conditions) {
+		if (condition instanceof AndCondition) {
+			AndCondition c = (AndCondition)condition;
+			flatten(c.getFirstCondition(), conditions);
+			flatten(c.getSecondCondition(), conditions);
+		} else {
+			conditions.add(condition);
+		}
+	}
+
+	private static long count(Collection<Set<Long>> sets, long limit) {
+		long count = 0;
+		for (Set<Long> s : sets) {
+			count += s.size();
+			if (count >= limit) {
+				break;
+			}
+		}
+		return count;
+	}
+}
@@ -17,89 +17,537 @@
 package org.xbery.overview.repo.inmemory;
 
 import org.xbery.overview.Group;
+import org.xbery.overview.Order;
 import org.xbery.overview.Overview;
+import org.xbery.overview.Pagination;
+import org.xbery.overview.common.Pair;
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.mapper.MapAttributeSource;
 import org.xbery.overview.repo.AggType;
 import org.xbery.overview.repo.Repository;
 import org.xbery.overview.repo.RepositoryException;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * In-memory repository implementation intended to use in tests.
+ * In-memory repository implementation intended to use in tests or as in-process store of (reference) data.
+ * <p>
+ * Records are indexed by their keys, so finding, updating and deleting a record by key takes constant time.
+ * Records are iterated in order of their creation (update does not change the order), so pagination is deterministic.
+ * Operations with one record are atomic, iteration is weakly consistent (concurrent changes may or may not be visible).
+ * <p>
+ * Filter conditions composed by {@link #getEntityMapper() entity mapper}, ordering and aggregations are evaluated in memory
+ * with the same semantics as in SQL repository (see {@link InMemoryConditionBuilder}), so the repository can stand in
+ * for SQL repository using the same entity mapper.
+ * <p>
+ * Secondary indexes of attributes can be declared using {@link #createIndex(Attribute, IndexType)}. Filter conditions
+ * are then evaluated only on records found by the most selective index, and ordering by one attribute with sorted index
+ * does not require sorting of all records.
+ * <p>
+ * Records can be persisted to compact columnar snapshot using {@link #writeSnapshot(Path)} and changes made after
+ * the snapshot to append-only change log, so the repository is quickly restored by {@link #restore(Path, Path)} after restart.
  * @author Radek Beran
  */
 public abstract class InMemoryRepository<T, K, F> implements Repository<T, K, F> {
-	
-	protected Set<T> records = ConcurrentHashMap.newKeySet(); // derived concurrent hash set
+
+	private static final InMemoryConditionBuilder CONDITION_BUILDER = new InMemoryConditionBuilder();
+
+	/** Records by their keys. */
+	private final ConcurrentMap<K, StoredRecord<T>> records = new ConcurrentHashMap<>();
+	/** Records by their sequence numbers (in order of creation). */
+	private final ConcurrentNavigableMap<Long, T> recordsInOrder = new ConcurrentSkipListMap<>();
+	private final AtomicLong recordSequence = new AtomicLong();
+	/** Secondary indexes of attributes. */
+	private final List<AttributeIndex<T>> indexes = new CopyOnWriteArrayList<>();
+	/** Log of changes made after the last snapshot, or null if changes are not logged. */
+	private volatile ChangeLog<T> changeLog;
+
+	/**
+	 * Declares secondary index of given attribute. Index is maintained on creation, update and deletion of records,
+	 * already stored records are indexed immediately. Indexes should be declared before the repository is used concurrently.
+	 * @param attribute indexed attribute
+	 * @param indexType type of index: hash index for equality and IN conditions, sorted index also for comparisons and ordering
+	 */
+	public void createIndex(Attribute<T, ?> attribute, IndexType indexType) {
+		Objects.requireNonNull(attribute, "attribute should be specified");
+		Objects.requireNonNull(indexType, "index type should be specified");
+		for (AttributeIndex<T> index : indexes) {
+			if (index.getAttribute().equals(attribute) && indexType == (index instanceof SortedAttributeIndex ? IndexType.SORTED : IndexType.HASH)) {
+				return;
+			}
+		}
+		AttributeIndex<T> index = indexType == IndexType.SORTED ? new SortedAttributeIndex<>(attribute) : new HashAttributeIndex<>(attribute);
+		for (Map.Entry<Long, T> entry : recordsInOrder.entrySet()) {
+			index.add(entry.getValue(), entry.getKey());
+		}
+		indexes.add(index);
+	}
+
+	/**
+	 * Restores records from snapshot written by {@link #writeSnapshot(Path)} and replays changes logged after the snapshot.
+	 * Subsequent changes of records are appended to the change log until {@link #closeChangeLog()} is called.
+	 * Records are restored only to empty repository (secondary indexes can be already declared).
+	 * @param snapshotFile snapshot file, it does not have to exist (e.g. on the first start)
+	 * @param changeLogFile file of change log, created if it does not exist; or null if changes should not be logged
+	 * @return count of restored records
+	 */
+	public synchronized int restore(Path snapshotFile, Path changeLogFile) {
+		EntityMapper<T, F> entityMapper = getRequiredEntityMapper();
+		if (!records.isEmpty() || changeLog != null) {
+			throw new RepositoryException("Records can be restored only to empty repository without change log");
+		}
+		long lastChange = snapshotFile != null && Files.exists(snapshotFile) ? RepositorySnapshot.read(snapshotFile, entityMapper, this::putRecord) : 0;
+		if (changeLogFile != null) {
+			changeLog = ChangeLog.open(changeLogFile, entityMapper, lastChange, (operation, entity) -> {
+				if (operation == ChangeLog.Operation.PUT) {
+					putRecord(entity);
+				} else {
+					delete(getEntityId(entity));
+				}
+			}, isChangeLogForced());
+		}
+		return records.size();
+	}
+
+	/**
+	 * Writes snapshot of all records (using attributes of entity mapper) to given file, which is replaced atomically.
+	 * Changes included in the snapshot are then discarded from change log. Changes made concurrently with the snapshot
+	 * can be included in the snapshot and also retained in the change log, they are replayed idempotently.
+	 * @param snapshotFile snapshot file
+	 */
+	public void writeSnapshot(Path snapshotFile) {
+		Objects.requireNonNull(snapshotFile, "snapshot file should be specified");
+		ChangeLog<T> log = changeLog;
+		long lastChange = log != null ? log.getLastAppliedChange() : 0;
+		RepositorySnapshot.write(snapshotFile, getRequiredEntityMapper().getAttributes(), new ArrayList<>(getRecords()), lastChange);
+		if (log != null) {
+			log.discard(lastChange);
+		}
+	}
+
+	/**
+	 * Stops logging of changes and closes change log opened by {@link #restore(Path, Path)}.
+	 */
+	public synchronized void closeChangeLog() {
+		if (changeLog != null) {
+			changeLog.close();
+			changeLog = null;
+		}
+	}
 
 	@Override
 	public T create(T entity, boolean autogerateKey) {
-		Optional<T> ent = findById(getEntityId(entity));
-		if (ent.isPresent()) {
-			throw new RepositoryException("Duplicate key " + getEntityId(entity));
+		T createdEntity = autogerateKey ? entityUpdatedWithId(entity, generateId()) : entity;
+		K id = getEntityId(createdEntity);
+		if (id == null) {
+			throw new RepositoryException("Key of created entity is missing");
 		}
-		if (autogerateKey) {
-			entity = entityUpdatedWithId(entity, generateId());
+		boolean[] created = new boolean[1];
+		records.computeIfAbsent(id, k -> {
+			created[0] = true;
+			return insertRecord(createdEntity);
+		});
+		if (!created[0]) {
+			throw new RepositoryException("Duplicate key " + id);
 		}
-		records.add(entity);
-		return entity;
+		return createdEntity;
 	}
 
 	@Override
 	public Optional<T> update(T entity) {
-		if (delete(getEntityId(entity))) {
-			records.add(entity); // add updated entity
-			return Optional.of(entity);
+		K id = getEntityId(entity);
+		if (id == null) return Optional.empty();
+		StoredRecord<T> updated = records.computeIfPresent(id, (k, record) -> updateRecord(record, entity));
+		return updated != null ? Optional.of(entity) : Optional.empty();
+	}
+
+	/**
+	 * Updates entity atomically: given function is applied to current entity and its result is stored
+	 * without interference of other changes of the same record.
+	 */
+	@Override
+	public Optional<T> update(K id, Function<T, T> partialUpdate) {
+		Objects.requireNonNull(partialUpdate, "Update function should be specified");
+		if (id == null) return Optional.empty();
+		StoredRecord<T> updated = records.computeIfPresent(id, (k, record) -> {
+			T entity = partialUpdate.apply(record.getEntity());
+			if (!id.equals(getEntityId(entity))) {
+				throw new RepositoryException("Key of updated entity cannot be changed from " + id + " to " + getEntityId(entity));
+			}
+			return updateRecord(record, entity);
+		});
+		return updated != null ? Optional.of(updated.getEntity()) : Optional.empty();
+	}
+
+	@Override
+	public int update(K id, List<Pair<Attribute<T, ?>, Object>> attributesWithValues) {
+		Map<String, Object> values = new HashMap<>();
+		for (Pair<Attribute<T, ?>, Object> p : attributesWithValues) {
+			values.put(p.getFirst().getName(), p.getSecond());
 		}
-		return Optional.empty();
+		MapAttributeSource attrSource = new MapAttributeSource(values);
+		return update(id, entity -> {
+			T updatedEntity = entity;
+			for (Pair<Attribute<T, ?>, Object> p : attributesWithValues) {
+				updatedEntity = p.getFirst().entityWithAttribute(updatedEntity, attrSource, p.getFirst().getName());
+			}
+			return updatedEntity;
+		}).isPresent() ? 1 : 0;
 	}
 
 	@Override
 	public boolean delete(K id) {
 		if (id == null) return false;
-		return records.removeIf(r -> id.equals(getEntityId(r)));
+		boolean[] deleted = new boolean[1];
+		records.computeIfPresent(id, (k, record) -> {
+			removeRecord(record);
+			deleted[0] = true;
+			// Removes the mapping
+			return null;
+		});
+		return deleted[0];
 	}
 
 	@Override
 	public int deleteByFilter(F filter) {
-		throw new UnsupportedOperationException("Filtering not supported by generic in-memory implementation");
+		List<Condition> conditions = composeFilterConditions(filter);
+		Predicate<T> predicate = getConditionBuilder().build(conditions);
+		List<K> ids = stream(conditions).filter(predicate).map(this::getEntityId).collect(Collectors.toList());
+		int count = 0;
+		for (K id : ids) {
+			boolean[] deleted = new boolean[1];
+			records.computeIfPresent(id, (k, record) -> {
+				// Record could be changed concurrently
+				if (!predicate.test(record.getEntity())) {
+					return record;
+				}
+				removeRecord(record);
+				deleted[0] = true;
+				return null;
+			});
+			if (deleted[0]) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 	@Override
 	public Optional<T> findById(K id) {
 		if (id == null) return Optional.empty();
-		return records.stream().filter(r -> id.equals(getEntityId(r))).findFirst();
+		StoredRecord<T> record = records.get(id);
+		return record != null ? Optional.of(record.getEntity()) : Optional.empty();
 	}
 
+	/**
+	 * Records are stored as entities, so given entity mapper is not used.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <U, L, G> Optional<U> findById(L id, EntityMapper<U, G> entityMapper) {
+		return (Optional<U>)findById((K)id);
+	}
+
+	/**
+	 * Finds records satisfying filter conditions composed by {@link #getEntityMapper() entity mapper}, sorted by given ordering
+	 * (by default ordering of entity mapper), one record for each group if grouping is specified, and limited by pagination.
+	 * Records are filtered by parallel stream when there are at least {@link #getParallelThreshold()} records.
+	 * Records are filtered using the most selective secondary index if possible; sorted index of the only ordering attribute
+	 * is used to read records already in required order (if records are not grouped).
+	 */
 	@Override
 	public List<T> findByOverview(Overview<F> overview) {
-		if (overview.getOrdering() != null) {
-			throw new UnsupportedOperationException("Ordering not supported by generic in-memory implementation");
-		}
-		if (overview.getFilter() != null) {
-			throw new UnsupportedOperationException("Filtering not supported by generic in-memory implementation");
-		}
-		List<T> retList = null;
-		if (overview.getPagination() != null) {
-			retList = new ArrayList<>();
-			Iterable<T> paged = records.stream().skip(overview.getPagination().getOffset()).limit(overview.getPagination().getLimit()).collect(Collectors.toList());
-			for (T t : paged) {
-				retList.add(t);
+		Objects.requireNonNull(overview, "overview should be specified");
+		EntityMapper<T, F> entityMapper = getEntityMapper();
+		List<Order> ordering = overview.getOrdering();
+		List<Group> grouping = overview.getGrouping();
+		if (entityMapper != null) {
+			ordering = ordering == null || ordering.isEmpty() ? entityMapper.defaultOrdering() : ordering;
+			grouping = grouping == null || grouping.isEmpty() ? entityMapper.defaultGrouping() : grouping;
+		}
+		Pagination pagination = overview.getPagination();
+
+		List<Condition> conditions = composeFilterConditions(overview.getFilter());
+		Stream<T> results = null;
+		boolean ordered = false;
+		List<Long> candidates = findCandidates(conditions);
+		if (candidates != null) {
+			results = streamOf(candidates);
+		} else if (grouping == null || grouping.isEmpty()) {
+			SortedAttributeIndex<T> orderIndex = findOrderIndex(ordering);
+			if (orderIndex != null) {
+				results = orderIndex.streamInOrder(ordering.get(0).isDesc()).map(recordsInOrder::get).filter(Objects::nonNull);
+				ordered = true;
 			}
-		} else {
-			retList = new ArrayList<>(records);
 		}
-		return retList;
+		if (results == null) {
+			results = stream();
+		}
+		results = results.filter(getConditionBuilder().build(conditions));
+		if (grouping != null && !grouping.isEmpty()) {
+			Map<String, Attribute<T, ?>> attributes = getAttributesByName();
+			List<Attribute<T, ?>> groupAttributes = grouping.stream().map(g -> getConditionBuilder().getAttribute(g.getAttribute(), attributes)).collect(Collectors.toList());
+			if (!ordered && ordering != null && !ordering.isEmpty()) {
+				results = results.sorted(getConditionBuilder().buildComparator(ordering, getAttributesByName()));
+				ordered = true;
+			}
+			// One (first in required order) record for each group, keyset and pagination are applied to these records
+			Map<List<Object>, T> groups = results.collect(Collectors.toMap(e -> getValues(groupAttributes, e), e -> e, (first, next) -> first, LinkedHashMap::new));
+			results = groups.values().stream();
+		}
+		if (pagination != null && pagination.isKeyset()) {
+			results = results.filter(getConditionBuilder().buildKeysetPredicate(ordering, pagination.getKeyset(), getAttributesByName()));
+		}
+		if (!ordered && ordering != null && !ordering.isEmpty()) {
+			results = results.sorted(getConditionBuilder().buildComparator(ordering, getAttributesByName()));
+		}
+		if (pagination != null) {
+			if (!pagination.isKeyset()) {
+				results = results.skip(pagination.getOffset());
+			}
+			results = results.limit(pagination.getLimit());
+		}
+		return results.collect(Collectors.toList());
+	}
+
+	/**
+	 * Records are stored as entities, so given entity mapper is not used.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <U, G> List<U> findByOverview(Overview<G> overview, EntityMapper<U, G> entityMapper) {
+		return (List<U>)findByOverview((Overview<F>)overview);
 	}
 
+	/**
+	 * Aggregates values of given attribute ("*" for count of records) of records satisfying given filter in one pass.
+	 * If grouping is specified, result of the first group is returned (as with SQL repository).
+	 */
 	@Override
 	public <R> R aggByFilter(AggType aggType, Class<R> resultClass, String attrName, F filter, List<Group> grouping) {
-		throw new UnsupportedOperationException("Aggregation is not supported by generic in-memory implementation");
+		Objects.requireNonNull(aggType, "aggregation type should be specified");
+		Objects.requireNonNull(resultClass, "result class should be specified");
+		Objects.requireNonNull(attrName, "attribute name should be specified");
+		Function<T, Object> aggregatedValue;
+		if ("*".equals(attrName)) {
+			if (aggType != AggType.COUNT) {
+				throw new IllegalArgumentException("Only count of all records can be aggregated");
+			}
+			aggregatedValue = e -> e;
+		} else {
+			Attribute<T, ?> attribute = getConditionBuilder().getAttribute(attrName, getAttributesByName());
+			aggregatedValue = attribute::getValue;
+		}
+		List<Condition> conditions = composeFilterConditions(filter);
+		Stream<T> filtered = stream(conditions).filter(getConditionBuilder().build(conditions));
+		InMemoryAggregator aggregator;
+		if (grouping == null || grouping.isEmpty()) {
+			aggregator = filtered.collect(() -> new InMemoryAggregator(aggType), (a, e) -> a.accept(aggregatedValue.apply(e)), InMemoryAggregator::combine);
+		} else {
+			Map<String, Attribute<T, ?>> attributes = getAttributesByName();
+			List<Attribute<T, ?>> groupAttributes = grouping.stream().map(g -> getConditionBuilder().getAttribute(g.getAttribute(), attributes)).collect(Collectors.toList());
+			Map<List<Object>, InMemoryAggregator> groups = filtered.collect(Collectors.groupingBy(e -> getValues(groupAttributes, e), LinkedHashMap::new,
+				Collector.of(() -> new InMemoryAggregator(aggType), (a, e) -> a.accept(aggregatedValue.apply(e)), InMemoryAggregator::combine)));
+			aggregator = groups.isEmpty() ? null : groups.values().iterator().next();
+		}
+		return aggregator != null ? aggregator.getResult(resultClass) : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <R, U, G> R aggByFilter(AggType aggType, Class<R> resultClass, String attrName, G filter, List<Group> grouping, EntityMapper<U, G> entityMapper) {
+		return aggByFilter(aggType, resultClass, attrName, (F)filter, grouping);
+	}
+
+	/**
+	 * Returns view of all records in order of their creation.
+	 * @return records
+	 */
+	protected Collection<T> getRecords() {
+		return recordsInOrder.values();
+	}
+
+	/**
+	 * Returns stream of all records, parallel if there are at least {@link #getParallelThreshold()} records.
+	 */
+	protected Stream<T> stream() {
+		Collection<T> all = getRecords();
+		return records.size() >= getParallelThreshold() ? all.parallelStream() : all.stream();
+	}
+
+	/**
+	 * Minimal count of records that are filtered and aggregated using parallel stream.
+	 * @return threshold count of records
+	 */
+	protected int getParallelThreshold() {
+		return 10000;
+	}
+
+	protected InMemoryConditionBuilder getConditionBuilder() {
+		return CONDITION_BUILDER;
+	}
+
+	/**
+	 * Compiles filter conditions composed by entity mapper into predicate.
+	 * @param filter filter, or null for all records
+	 * @return predicate
+	 */
+	protected Predicate<T> buildFilterPredicate(F filter) {
+		return getConditionBuilder().build(composeFilterConditions(filter));
+	}
+
+	/**
+	 * Returns true if each change written to change log should be forced to storage device before it is applied
+	 * (durable even after crash of operating system). Otherwise changes are written to the file, but not forced.
+	 */
+	protected boolean isChangeLogForced() {
+		return false;
+	}
+
+	/**
+	 * Returns maximal count of records found by secondary index for which the index is used instead of scan of all records.
+	 * @return maximal count of candidate records
+	 */
+	protected long getMaxIndexCandidates() {
+		return records.size() / 2;
+	}
+
+	/**
+	 * Returns attributes of entity mapper by their names and full names.
+	 */
+	protected Map<String, Attribute<T, ?>> getAttributesByName() {
+		Map<String, Attribute<T, ?>> attributes = new HashMap<>();
+		for (Attribute<T, ?> attr : getRequiredEntityMapper().getAttributes()) {
+			attributes.put(attr.getName(), attr);
+			attributes.put(attr.getNameFull(), attr);
+		}
+		return attributes;
+	}
+
+	private List<Condition> composeFilterConditions(F filter) {
+		return filter != null ? getRequiredEntityMapper().composeFilterConditions(filter) : Collections.emptyList();
+	}
+
+	/**
+	 * Returns stream of records that can satisfy given conditions: records found by the most selective index, or all records.
+	 */
+	private Stream<T> stream(List<Condition> conditions) {
+		List<Long> candidates = findCandidates(conditions);
+		return candidates != null ? streamOf(candidates) : stream();
+	}
+
+	private List<Long> findCandidates(List<Condition> conditions) {
+		return InMemoryIndexPlanner.findCandidates(indexes, conditions, getMaxIndexCandidates());
+	}
+
+	private Stream<T> streamOf(List<Long> sequences) {
+		// Record could be deleted concurrently
+		return sequences.stream().map(recordsInOrder::get).filter(Objects::nonNull);
+	}
+
+	private SortedAttributeIndex<T> findOrderIndex(List<Order> ordering) {
+		if (ordering == null || ordering.size() != 1 || indexes.isEmpty()) {
+			return null;
+		}
+		Attribute<T, ?> attribute = getConditionBuilder().getAttribute(ordering.get(0).getAttribute(), getAttributesByName());
+		for (AttributeIndex<T> index : indexes) {
+			if (index instanceof SortedAttributeIndex && index.getAttribute().equals(attribute)) {
+				return (SortedAttributeIndex<T>)index;
+			}
+		}
+		return null;
+	}
+
+	private StoredRecord<T> insertRecord(T entity) {
+		StoredRecord<T> record = new StoredRecord<>(recordSequence.incrementAndGet(), entity);
+		applyChange(ChangeLog.Operation.PUT, entity, () -> {
+			recordsInOrder.put(record.getSequence(), entity);
+			for (AttributeIndex<T> index : indexes) {
+				index.add(entity, record.getSequence());
+			}
+		});
+		return record;
+	}
+
+	private StoredRecord<T> updateRecord(StoredRecord<T> record, T entity) {
+		applyChange(ChangeLog.Operation.PUT, entity, () -> {
+			recordsInOrder.put(record.getSequence(), entity);
+			for (AttributeIndex<T> index : indexes) {
+				index.update(entity, record.getSequence());
+			}
+		});
+		return new StoredRecord<>(record.getSequence(), entity);
+	}
+
+	private void removeRecord(StoredRecord<T> record) {
+		applyChange(ChangeLog.Operation.DELETE, record.getEntity(), () -> {
+			recordsInOrder.remove(record.getSequence());
+			for (AttributeIndex<T> index : indexes) {
+				index.remove(record.getSequence());
+			}
+		});
+	}
+
+	/**
+	 * Creates or updates record with given entity (when records are restored).
+	 */
+	private void putRecord(T entity) {
+		K id = getEntityId(entity);
+		if (id == null) {
+			throw new RepositoryException("Key of restored entity is missing");
+		}
+		records.compute(id, (k, record) -> record == null ? insertRecord(entity) : updateRecord(record, entity));
+	}
+
+	/**
+	 * Applies change of records, the change is written to change log first (if changes are logged).
+	 */
+	private void applyChange(ChangeLog.Operation operation, T entity, Runnable change) {
+		ChangeLog<T> log = changeLog;
+		if (log != null) {
+			log.append(operation, entity, change);
+		} else {
+			change.run();
+		}
+	}
+
+	private EntityMapper<T, F> getRequiredEntityMapper() {
+		EntityMapper<T, F> entityMapper = getEntityMapper();
+		if (entityMapper == null) {
+			throw new UnsupportedOperationException("Filtering, ordering and aggregation require entity mapper of in-memory repository");
+		}
+		return entityMapper;
+	}
+
+	private static <T> List<Object> getValues(List<Attribute<T, ?>> attributes, T entity) {
+		List<Object> values = new ArrayList<>(attributes.size());
+		for (Attribute<T, ?> attr : attributes) {
+			values.add(attr.getValue(entity));
+		}
+		return values;
 	}
 
 	abstract protected T entityUpdatedWithId(T entity, K id);
@@ -107,5 +555,26 @@ public abstract class InMemoryRepository<T, K, F> implements Repository<T, K, F>
 	abstract protected K getEntityId(T entity);
 
 	abstract protected K generateId();
-	
+
+	/**
+	 * Stored entity with its sequence number that determines order of records.
+	 * @param <T> type of entity
+	 */
+	private static final class StoredRecord<T> {
+		private final long sequence;
+		private final T entity;
+
+		StoredRecord(long sequence, T entity) {
+			this.sequence = sequence;
+			this.entity = entity;
+		}
+
+		long getSequence() {
+			return sequence;
+		}
+
+		T getEntity() {
+			return entity;
+		}
+	}
 }
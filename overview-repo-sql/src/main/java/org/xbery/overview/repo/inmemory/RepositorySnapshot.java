@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.AttributeType;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.mapper.RowDecoder;
+import org.xbery.overview.repo.RepositoryException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Columnar binary snapshot of records of in-memory repository. Values of each attribute of entity mapper are stored
+ * together in one column (bitmap of null values followed by non-null values), so the snapshot is compact and read
+ * column by column from memory-mapped file. Snapshot is written to temporary file that replaces the previous snapshot
+ * atomically, so it is never observed partially written.
+ * <p>
+ * Format: magic number, version, number of the last change included in the snapshot, count of records, count of columns
+ * and columns (name, stored {@link AttributeType}, length in bytes and data). Columns of attributes that are not mapped
+ * anymore are skipped when the snapshot is read, attributes without column are not filled.
+ * @author Radek Beran
+ */
+final class RepositorySnapshot {
+
+	private static final int MAGIC = 0x4F565253; // OVRS
+	private static final int VERSION = 1;
+
+	private RepositorySnapshot() {
+	}
+
+	/**
+	 * Writes snapshot of given entities.
+	 * @param file snapshot file
+	 * @param attributes attributes of entities
+	 * @param entities entities
+	 * @param lastChange number of the last change of change log included in the snapshot
+	 * @param <T> type of entity
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> void write(Path file, List<Attribute<T, ?>> attributes, List<T> entities, long lastChange) {
+		int rows = entities.size();
+		List<BinaryEncoder> columns = new ArrayList<>(attributes.size());
+		int size = 4 + 4 + 8 + 4 + 4;
+		for (Attribute<T, ?> attribute : attributes) {
+			AttributeType type = BinaryEncoder.getStoredType(attribute);
+			Attribute<T, Object> attr = (Attribute<T, Object>)attribute;
+			BinaryEncoder column = new BinaryEncoder(rows * 8 + 64);
+			column.putString(attribute.getName()).putByte((byte)type.ordinal());
+			// Length of column data is filled later
+			column.putInt(0);
+			int dataStart = column.size();
+			byte[] nulls = new byte[(rows + 7) / 8];
+			Object[] values = new Object[rows];
+			for (int i = 0; i < rows; i++) {
+				values[i] = attr.getValue(entities.get(i));
+				if (values[i] == null) {
+					nulls[i >> 3] |= 1 << (i & 7);
+				}
+			}
+			column.putBytes(nulls);
+			for (Object value : values) {
+				if (value != null) {
+					column.putValue(type, value);
+				}
+			}
+			ByteBuffer data = column.toByteBuffer();
+			data.putInt(dataStart - 4, column.size() - dataStart);
+			columns.add(column);
+			size += column.size();
+		}
+
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(lastChange).putInt(rows).putInt(columns.size());
+			for (BinaryEncoder column : columns) {
+				buffer.put(column.toByteBuffer());
+			}
+			buffer.force();
+		} catch (IOException ex) {
+			throw new RepositoryException("Snapshot " + file + " cannot be written: " + ex.getMessage(), ex);
+		}
+		try {
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			throw new RepositoryException("Snapshot " + file + " cannot be replaced: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Reads entities from snapshot.
+	 * @param file snapshot file
+	 * @param entityMapper entity mapper
+	 * @param consumer consumer of read entities
+	 * @param <T> type of entity
+	 * @return number of the last change of change log included in the snapshot
+	 */
+	static <T> long read(Path file, EntityMapper<T, ?> entityMapper, Consumer<T> consumer) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new RepositoryException("Snapshot " + file + " is too large");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 24 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				throw new RepositoryException("File " + file + " is not snapshot of in-memory repository");
+			}
+			long lastChange = buffer.getLong();
+			int rows = buffer.getInt();
+			int columnCount = buffer.getInt();
+			List<String> names = new ArrayList<>();
+			List<Object[]> columns = new ArrayList<>();
+			List<String> mappedNames = entityMapper.getAttributeNames();
+			for (int c = 0; c < columnCount; c++) {
+				String name = BinaryEncoder.readString(buffer);
+				AttributeType type = AttributeType.values()[buffer.get()];
+				int length = buffer.getInt();
+				int end = buffer.position() + length;
+				if (mappedNames.contains(name)) {
+					names.add(name);
+					columns.add(readColumn(buffer, type, rows));
+				}
+				buffer.position(end);
+			}
+			ColumnarAttributeSource attributeSource = new ColumnarAttributeSource(names.toArray(new String[names.size()]), columns.toArray(new Object[columns.size()][]));
+			RowDecoder<T> decoder = entityMapper.getRowDecoder(null);
+			for (int i = 0; i < rows; i++) {
+				attributeSource.setRow(i);
+				T entity = decoder.decode(attributeSource);
+				if (entity != null) {
+					consumer.accept(entity);
+				}
+			}
+			return lastChange;
+		} catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+			throw new RepositoryException("Snapshot " + file + " cannot be read: " + ex.getMessage(), ex);
+		}
+	}
+
+	private static Object[] readColumn(ByteBuffer buffer, AttributeType type, int rows) {
+		byte[] nulls = new byte[(rows + 7) / 8];
+		buffer.get(nulls);
+		Object[] values = new Object[rows];
+		for (int i = 0; i < rows; i++) {
+			if ((nulls[i >> 3] & (1 << (i & 7))) == 0) {
+				values[i] = BinaryEncoder.readValue(buffer, type);
+			}
+		}
+		return values;
+	}
+}
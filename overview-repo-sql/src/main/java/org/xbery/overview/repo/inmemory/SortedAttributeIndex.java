@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.filter.GtCondition;
+import org.xbery.overview.filter.GteCondition;
+import org.xbery.overview.filter.LtCondition;
+import org.xbery.overview.filter.LteCondition;
+import org.xbery.overview.mapper.Attribute;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Sorted index evaluating equality, IN and comparison conditions; it also provides records in order of indexed attribute.
+ * Values are ordered in the same way as by {@link InMemoryConditionBuilder}, values of attribute must be comparable.
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+class SortedAttributeIndex<T> extends AttributeIndex<T> {
+
+	private final ConcurrentNavigableMap<Object, Set<Long>> buckets = new ConcurrentSkipListMap<>(InMemoryConditionBuilder::compareValues);
+
+	SortedAttributeIndex(Attribute<T, ?> attribute) {
+		super(attribute);
+	}
+
+	@Override
+	ConcurrentNavigableMap<Object, Set<Long>> getBuckets() {
+		return buckets;
+	}
+
+	@Override
+	Object toKey(Object value) {
+		return value;
+	}
+
+	@Override
+	Collection<Set<Long>> findRange(Condition condition) {
+		if (condition instanceof LtCondition) {
+			LtCondition<?, ?> c = (LtCondition<?, ?>)condition;
+			return getAttribute().equals(c.getAttribute()) ? headBuckets(c.getValue(), false) : null;
+		} else if (condition instanceof LteCondition) {
+			LteCondition<?, ?> c = (LteCondition<?, ?>)condition;
+			return getAttribute().equals(c.getAttribute()) ? headBuckets(c.getValue(), true) : null;
+		} else if (condition instanceof GtCondition) {
+			GtCondition<?, ?> c = (GtCondition<?, ?>)condition;
+			return getAttribute().equals(c.getAttribute()) ? tailBuckets(c.getValue(), false) : null;
+		} else if (condition instanceof GteCondition) {
+			GteCondition<?, ?> c = (GteCondition<?, ?>)condition;
+			return getAttribute().equals(c.getAttribute()) ? tailBuckets(c.getValue(), true) : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns sequence numbers of records ordered by indexed attribute (null values first in ascending order),
+	 * records with the same value are in order of their creation.
+	 * @param desc true for descending order
+	 * @return stream of sequence numbers
+	 */
+	Stream<Long> streamInOrder(boolean desc) {
+		Stream<Long> nulls = Stream.of(getNullSequences()).flatMap(SortedAttributeIndex::sorted);
+		if (desc) {
+			return Stream.concat(buckets.descendingMap().values().stream().flatMap(SortedAttributeIndex::sorted), nulls);
+		}
+		return Stream.concat(nulls, buckets.values().stream().flatMap(SortedAttributeIndex::sorted));
+	}
+
+	private Collection<Set<Long>> headBuckets(Object value, boolean inclusive) {
+		// comparison with null value is never satisfied
+		return value == null ? Collections.emptyList() : buckets.headMap(value, inclusive).values();
+	}
+
+	private Collection<Set<Long>> tailBuckets(Object value, boolean inclusive) {
+		return value == null ? Collections.emptyList() : buckets.tailMap(value, inclusive).values();
+	}
+
+	private static Stream<Long> sorted(Set<Long> sequences) {
+		return sequences.stream().sorted();
+	}
+}
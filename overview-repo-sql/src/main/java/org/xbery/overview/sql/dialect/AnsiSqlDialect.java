@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.sql.dialect;
+
+import org.xbery.overview.common.funs.CollectionFuns;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SQL dialect using standard SQL syntax (OFFSET/FETCH FIRST pagination, MERGE for upserts).
+ * Specific dialects override only the parts their databases implement differently.
+ * @author Radek Beran
+ */
+public class AnsiSqlDialect implements SqlDialect {
+
+	@Override
+	public void appendPagination(StringBuilder sqlBuilder, int offset, int limit) {
+		if (offset > 0) {
+			sqlBuilder.append(" OFFSET " + offset + " ROWS");
+		}
+		sqlBuilder.append(" FETCH FIRST " + limit + " ROWS ONLY");
+	}
+
+	@Override
+	public String containsCondition(String attributeName) {
+		return attributeName + " LIKE '%' || ? || '%'";
+	}
+
+	@Override
+	public String insert(String tableName, List<String> attributeNames, int recordCount) {
+		String placeholders = "(" + getPlaceholders(attributeNames.size()) + ")";
+		return "INSERT INTO " + tableName + " (" + CollectionFuns.join(attributeNames, ",") + ") VALUES " + CollectionFuns.join(Collections.nCopies(recordCount, placeholders), ",");
+	}
+
+	@Override
+	public String upsert(String tableName, List<String> attributeNames, List<String> keyAttributeNames) {
+		List<String> onConditions = new ArrayList<>();
+		for (String keyAttributeName : keyAttributeNames) {
+			onConditions.add("t." + keyAttributeName + " = s." + keyAttributeName);
+		}
+		List<String> assignments = new ArrayList<>();
+		List<String> sourceAttributeNames = new ArrayList<>();
+		for (String attributeName : attributeNames) {
+			if (!keyAttributeNames.contains(attributeName)) {
+				assignments.add(attributeName + " = s." + attributeName);
+			}
+			sourceAttributeNames.add("s." + attributeName);
+		}
+		StringBuilder sqlBuilder = new StringBuilder("MERGE INTO " + tableName + " t USING (VALUES (" + getPlaceholders(attributeNames.size()) + ")) s ("
+			+ CollectionFuns.join(attributeNames, ",") + ") ON (" + CollectionFuns.join(onConditions, " AND ") + ")");
+		if (!assignments.isEmpty()) {
+			sqlBuilder.append(" WHEN MATCHED THEN UPDATE SET ").append(CollectionFuns.join(assignments, ", "));
+		}
+		sqlBuilder.append(" WHEN NOT MATCHED THEN INSERT (" + CollectionFuns.join(attributeNames, ",") + ") VALUES (" + CollectionFuns.join(sourceAttributeNames, ",") + ")");
+		return sqlBuilder.toString();
+	}
+
+	@Override
+	public String insertReturning(String insertSql, List<String> returnedAttributeNames) {
+		throw new UnsupportedOperationException("INSERT ... RETURNING is not supported by " + getClass().getSimpleName());
+	}
+
+	@Override
+	public boolean isReturningSupported() {
+		return false;
+	}
+
+	@Override
+	public boolean isMultiRowInsertPreferred() {
+		return false;
+	}
+
+	@Override
+	public boolean isBatchGeneratedKeysSupported() {
+		return false;
+	}
+
+	@Override
+	public boolean isWindowCountSupported() {
+		return true;
+	}
+
+	@Override
+	public boolean isRowValueComparisonSupported() {
+		return true;
+	}
+
+	protected String getPlaceholders(int count) {
+		return CollectionFuns.join(Collections.nCopies(count, "?"), ",");
+	}
+}
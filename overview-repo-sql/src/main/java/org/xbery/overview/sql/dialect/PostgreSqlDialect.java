@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.sql.dialect;
+
+import org.xbery.overview.common.funs.CollectionFuns;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL dialect of PostgreSQL (9.5 or newer).
+ * @author Radek Beran
+ */
+public class PostgreSqlDialect extends AnsiSqlDialect {
+
+	@Override
+	public void appendPagination(StringBuilder sqlBuilder, int offset, int limit) {
+		sqlBuilder.append(" LIMIT " + limit);
+		if (offset > 0) {
+			sqlBuilder.append(" OFFSET " + offset);
+		}
+	}
+
+	@Override
+	public String upsert(String tableName, List<String> attributeNames, List<String> keyAttributeNames) {
+		List<String> assignments = new ArrayList<>();
+		for (String attributeName : attributeNames) {
+			if (!keyAttributeNames.contains(attributeName)) {
+				assignments.add(attributeName + " = EXCLUDED." + attributeName);
+			}
+		}
+		String sql = insert(tableName, attributeNames, 1) + " ON CONFLICT (" + CollectionFuns.join(keyAttributeNames, ",") + ")";
+		return assignments.isEmpty() ? sql + " DO NOTHING" : sql + " DO UPDATE SET " + CollectionFuns.join(assignments, ", ");
+	}
+
+	@Override
+	public String insertReturning(String insertSql, List<String> returnedAttributeNames) {
+		return insertSql + " RETURNING " + CollectionFuns.join(returnedAttributeNames, ",");
+	}
+
+	@Override
+	public boolean isReturningSupported() {
+		return true;
+	}
+
+	@Override
+	public boolean isMultiRowInsertPreferred() {
+		// Without reWriteBatchedInserts, the driver sends each statement of a batch separately
+		return true;
+	}
+
+	@Override
+	public boolean isBatchGeneratedKeysSupported() {
+		return true;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.sql.dialect;
+
+import java.util.List;
+
+/**
+ * SQL syntax and capabilities of a database. Repository uses its dialect to compose the most efficient native form
+ * of pagination, pattern matching, inserts and upserts.
+ * @author Radek Beran
+ */
+public interface SqlDialect {
+
+	/**
+	 * Appends clause selecting given page of the result.
+	 * @param sqlBuilder SQL query
+	 * @param offset count of skipped records, no records are skipped if it is zero
+	 * @param limit page size
+	 */
+	void appendPagination(StringBuilder sqlBuilder, int offset, int limit);
+
+	/**
+	 * Returns condition testing that value of given attribute contains value of one placeholder.
+	 * @param attributeName name of attribute
+	 * @return condition with one placeholder
+	 */
+	String containsCondition(String attributeName);
+
+	/**
+	 * Returns INSERT command with placeholders for given count of records.
+	 * @param tableName name of table
+	 * @param attributeNames names of inserted attributes
+	 * @param recordCount count of inserted records (more than one for multi-row insert)
+	 * @return INSERT command
+	 */
+	String insert(String tableName, List<String> attributeNames, int recordCount);
+
+	/**
+	 * Returns command inserting one record, or updating existing record with the same key.
+	 * @param tableName name of table
+	 * @param attributeNames names of all attributes, order of placeholders corresponds to them
+	 * @param keyAttributeNames names of key attributes
+	 * @return upsert command
+	 */
+	String upsert(String tableName, List<String> attributeNames, List<String> keyAttributeNames);
+
+	/**
+	 * Returns given INSERT command that returns given attributes of inserted records as its result set.
+	 * @param insertSql INSERT command
+	 * @param returnedAttributeNames names of returned attributes
+	 * @return INSERT command returning given attributes
+	 * @throws UnsupportedOperationException if {@link #isReturningSupported()} is false
+	 */
+	String insertReturning(String insertSql, List<String> returnedAttributeNames);
+
+	/**
+	 * Returns true if INSERT command can return inserted records, see {@link #insertReturning(String, List)}.
+	 */
+	boolean isReturningSupported();
+
+	/**
+	 * Returns true if multi-row insert is faster than JDBC batch of single-row inserts.
+	 */
+	boolean isMultiRowInsertPreferred();
+
+	/**
+	 * Returns true if JDBC driver returns keys generated for all records of a batch or multi-row insert.
+	 */
+	boolean isBatchGeneratedKeysSupported();
+
+	/**
+	 * Returns true if window function {@code COUNT(*) OVER()} is supported.
+	 */
+	boolean isWindowCountSupported();
+
+	/**
+	 * Returns true if row value comparison {@code (a, b) > (?, ?)} is supported (and can use index).
+	 */
+	boolean isRowValueComparisonSupported();
+}
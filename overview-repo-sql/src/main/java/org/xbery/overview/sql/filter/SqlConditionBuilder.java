@@ -16,12 +16,17 @@
  */
 package org.xbery.overview.sql.filter;
 
+import org.xbery.overview.Order;
 import org.xbery.overview.common.funs.CollectionFuns;
 import org.xbery.overview.filter.*;
+import org.xbery.overview.sql.dialect.MySqlDialect;
+import org.xbery.overview.sql.dialect.SqlDialect;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,8 +37,26 @@ import java.util.stream.Stream;
  */
 public class SqlConditionBuilder {
 
+    /**
+     * @deprecated Contains condition is composed by {@link SqlDialect#containsCondition(String)}.
+     */
+    @Deprecated
     public static String LIKE_WITH_PLACEHOLDER = "LIKE CONCAT('%', ?, '%')";
 
+    private final SqlDialect dialect;
+
+    public SqlConditionBuilder(SqlDialect dialect) {
+        this.dialect = Objects.requireNonNull(dialect, "dialect should be specified");
+    }
+
+    public SqlConditionBuilder() {
+        this(new MySqlDialect());
+    }
+
+    public SqlDialect getDialect() {
+        return dialect;
+    }
+
     public SqlCondition build(Condition condition, Function<Object, Object> valueToDbSupportedValue) {
         SqlCondition sqlCondition = null;
         if (condition instanceof SqlCondition) {
@@ -64,7 +87,7 @@ public class SqlConditionBuilder {
             ContainsCondition c = (ContainsCondition)condition;
             List<Object> values = new ArrayList<>();
             values.add(valueToDbSupportedValue.apply(c.getValue()));
-            sqlCondition = new SqlCondition(c.getAttribute().getNameFull() + " " + LIKE_WITH_PLACEHOLDER, values);
+            sqlCondition = new SqlCondition(dialect.containsCondition(c.getAttribute().getNameFull()), values);
         } else if (condition instanceof InCondition) {
             InCondition c = (InCondition)condition;
             if (c.getValues() != null && !c.getValues().isEmpty()) {
@@ -89,6 +112,52 @@ public class SqlConditionBuilder {
         return sqlCondition;
     }
 
+    /**
+     * Builds condition selecting records that follow the record with given values of ordering attributes (keyset pagination).
+     * @param ordering ordering of records
+     * @param lastValues values of ordering attributes of the last record of previous page
+     * @param rowValueComparison true if row value comparison {@code (a, b) > (?, ?)} can be used when all attributes are sorted in the same direction
+     * @param valueToDbSupportedValue conversion of values to values supported by database
+     * @return SQL condition
+     */
+    public SqlCondition buildKeysetCondition(List<Order> ordering, List<Object> lastValues, boolean rowValueComparison, Function<Object, Object> valueToDbSupportedValue) {
+        if (ordering == null || ordering.isEmpty() || ordering.size() != lastValues.size()) {
+            throw new IllegalArgumentException("Values of keyset " + lastValues + " do not correspond to ordering " + ordering);
+        }
+        List<Object> values = new ArrayList<>();
+        for (Object v : lastValues) {
+            values.add(valueToDbSupportedValue.apply(v));
+        }
+        boolean desc = ordering.get(0).isDesc();
+        boolean sameDirection = ordering.stream().allMatch(o -> o.isDesc() == desc);
+        if (ordering.size() == 1 || (sameDirection && rowValueComparison)) {
+            List<String> attributes = ordering.stream().map(o -> o.getAttribute()).collect(Collectors.toList());
+            String placeholders = CollectionFuns.join(Collections.nCopies(values.size(), "?"), ", ");
+            String condition = ordering.size() == 1 ?
+                attributes.get(0) + keysetOperator(desc) + "?" :
+                "(" + CollectionFuns.join(attributes, ", ") + ")" + keysetOperator(desc) + "(" + placeholders + ")";
+            return new SqlCondition(condition, values);
+        }
+        // (a > ?) OR (a = ? AND b < ?) OR ...
+        List<String> alternatives = new ArrayList<>();
+        List<Object> conditionValues = new ArrayList<>();
+        for (int i = 0; i < ordering.size(); i++) {
+            List<String> parts = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                parts.add(ordering.get(j).getAttribute() + " = ?");
+                conditionValues.add(values.get(j));
+            }
+            parts.add(ordering.get(i).getAttribute() + keysetOperator(ordering.get(i).isDesc()) + "?");
+            conditionValues.add(values.get(i));
+            alternatives.add("(" + CollectionFuns.join(parts, " AND ") + ")");
+        }
+        return new SqlCondition("(" + CollectionFuns.join(alternatives, " OR ") + ")", conditionValues);
+    }
+
+    private String keysetOperator(boolean desc) {
+        return desc ? " < " : " > ";
+    }
+
     private SqlCondition createSqlCondition2(Condition2 condition, String operator, Function<Object, Object> valueToDbSupportedValue) {
         SqlCondition first = build(condition.getFirstCondition(), valueToDbSupportedValue);
         SqlCondition second = build(condition.getSecondCondition(), valueToDbSupportedValue);
@@ -17,21 +17,35 @@
 package org.xbery.overview.sql.mapper;
 
 import org.xbery.overview.mapper.AttributeSource;
+import org.xbery.overview.mapper.AttributeType;
 import org.xbery.overview.repo.RepositoryException;
 
 import java.math.BigDecimal;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
 
 /**
- * {@link ResultSet} attribute source.
+ * {@link ResultSet} attribute source. Values are read by column indexes that are resolved from names of attributes
+ * (column labels) using metadata of the result set, once for each name. One instance should be used for all rows
+ * of the result set.
  * @author Radek Beran
  */
 public class ResultSetAttributeSource implements AttributeSource {
 
 	private final ResultSet resultSet;
+	/** Column indexes by column labels in lower case, built from metadata of the result set when first value is read. */
+	private Map<String, Integer> columnIndexesByLabel;
+	/** Column indexes by attribute names as requested (already resolved names). */
+	private final Map<String, Integer> columnIndexes = new HashMap<>();
 	
 	public ResultSetAttributeSource(ResultSet resultSet) {
 		this.resultSet = resultSet;
@@ -41,36 +55,73 @@ public class ResultSetAttributeSource implements AttributeSource {
 		return resultSet;
 	}
 
+	/**
+	 * Returns index of result set column with given label (attribute name or alias). Labels are matched case insensitively,
+	 * the first column with given label is used (as with {@link ResultSet#findColumn(String)}).
+	 * @param attributeName attribute name or alias
+	 * @return column index (starting from 1)
+	 */
+	public int getColumnIndex(String attributeName) {
+		Integer index = columnIndexes.get(attributeName);
+		if (index == null) {
+			index = getColumnIndexesByLabel().get(attributeName.toLowerCase(Locale.ROOT));
+			if (index == null) {
+				throw new RepositoryException("Column " + attributeName + " not found in the result set");
+			}
+			columnIndexes.put(attributeName, index);
+		}
+		return index;
+	}
+
 	@Override
 	public <A> A get(Class<A> cls, String attributeName) {
-		Object value = null;
-		if (cls.isAssignableFrom(Boolean.class)) {
-			value = getBoolean(attributeName);
-		} else if (cls.isAssignableFrom(Byte.class)) {
-			value = getByte(attributeName);
-		} else if (cls.isAssignableFrom(Integer.class)) {
-			value = getInteger(attributeName);
-		} else if (cls.isAssignableFrom(Long.class)) {
-			value = getLong(attributeName);
-		} else if (cls.isAssignableFrom(Float.class)) {
-			value = getFloat(attributeName);
-		} else if (cls.isAssignableFrom(Double.class)) {
-			value = getDouble(attributeName);
-		} else if (cls.isAssignableFrom(Date.class)) {
-			value = getDate(attributeName);
-		} else if (cls.isAssignableFrom(Instant.class)) {
-			value = getInstant(attributeName);
-		} else if (cls.isAssignableFrom(BigDecimal.class)) {
-			value = getBigDecimal(attributeName);
-		} else if (cls.isAssignableFrom(String.class)) {
-			value = getString(attributeName);
+		return get(AttributeType.of(cls), cls, attributeName);
+	}
+
+	@Override
+	public <A> A get(AttributeType type, Class<A> cls, String attributeName) {
+		Object value;
+		switch (type) {
+			case BOOLEAN:
+				value = getBoolean(attributeName);
+				break;
+			case BYTE:
+				value = getByte(attributeName);
+				break;
+			case INTEGER:
+				value = getInteger(attributeName);
+				break;
+			case LONG:
+				value = getLong(attributeName);
+				break;
+			case FLOAT:
+				value = getFloat(attributeName);
+				break;
+			case DOUBLE:
+				value = getDouble(attributeName);
+				break;
+			case DATE:
+				value = getDate(attributeName);
+				break;
+			case INSTANT:
+				value = getInstant(attributeName);
+				break;
+			case BIG_DECIMAL:
+				value = getBigDecimal(attributeName);
+				break;
+			case STRING:
+				value = getString(attributeName);
+				break;
+			default:
+				value = null;
 		}
 		return value != null ? cls.cast(value) : null;
 	}
 
 	protected Long getLong(String attributeName) {
 		try {
-			return resultSet.getLong(attributeName);
+			long value = resultSet.getLong(getColumnIndex(attributeName));
+			return resultSet.wasNull() ? null : Long.valueOf(value);
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -78,7 +129,50 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Integer getInteger(String attributeName) {
 		try {
-			return resultSet.getInt(attributeName);
+			int value = resultSet.getInt(getColumnIndex(attributeName));
+			return resultSet.wasNull() ? null : Integer.valueOf(value);
+		} catch (SQLException ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	@Override
+	public <E> boolean readInt(E entity, String attributeName, ObjIntConsumer<E> setter) {
+		try {
+			int value = resultSet.getInt(getColumnIndex(attributeName));
+			if (resultSet.wasNull()) {
+				return false;
+			}
+			setter.accept(entity, value);
+			return true;
+		} catch (SQLException ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	@Override
+	public <E> boolean readLong(E entity, String attributeName, ObjLongConsumer<E> setter) {
+		try {
+			long value = resultSet.getLong(getColumnIndex(attributeName));
+			if (resultSet.wasNull()) {
+				return false;
+			}
+			setter.accept(entity, value);
+			return true;
+		} catch (SQLException ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	@Override
+	public <E> boolean readDouble(E entity, String attributeName, ObjDoubleConsumer<E> setter) {
+		try {
+			double value = resultSet.getDouble(getColumnIndex(attributeName));
+			if (resultSet.wasNull()) {
+				return false;
+			}
+			setter.accept(entity, value);
+			return true;
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -86,7 +180,7 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected String getString(String attributeName) {
 		try {
-			return resultSet.getString(attributeName);
+			return resultSet.getString(getColumnIndex(attributeName));
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -94,7 +188,7 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Instant getInstant(String attributeName) {
 		try {
-			return sqlTimestampToInstant(resultSet.getTimestamp(attributeName));
+			return sqlTimestampToInstant(resultSet.getTimestamp(getColumnIndex(attributeName)));
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -102,7 +196,7 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected BigDecimal getBigDecimal(String attributeName) {
 		try {
-			return resultSet.getBigDecimal(attributeName);
+			return resultSet.getBigDecimal(getColumnIndex(attributeName));
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -110,7 +204,8 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Boolean getBoolean(String attributeName) {
 		try {
-			return resultSet.getBoolean(attributeName);
+			boolean value = resultSet.getBoolean(getColumnIndex(attributeName));
+			return resultSet.wasNull() ? null : Boolean.valueOf(value);
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -118,7 +213,8 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Byte getByte(String attributeName) {
 		try {
-			return resultSet.getByte(attributeName);
+			byte value = resultSet.getByte(getColumnIndex(attributeName));
+			return resultSet.wasNull() ? null : Byte.valueOf(value);
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -126,7 +222,7 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Date getDate(String attributeName) {
 		try {
-			return sqlDateToDate(resultSet.getDate(attributeName));
+			return sqlDateToDate(resultSet.getDate(getColumnIndex(attributeName)));
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -134,7 +230,8 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Float getFloat(String attributeName) {
 		try {
-			return resultSet.getFloat(attributeName);
+			float value = resultSet.getFloat(getColumnIndex(attributeName));
+			return resultSet.wasNull() ? null : Float.valueOf(value);
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -142,7 +239,8 @@ public class ResultSetAttributeSource implements AttributeSource {
 
 	protected Double getDouble(String attributeName) {
 		try {
-			return resultSet.getDouble(attributeName);
+			double value = resultSet.getDouble(getColumnIndex(attributeName));
+			return resultSet.wasNull() ? null : Double.valueOf(value);
 		} catch (SQLException ex) {
 			throw new RepositoryException(ex.getMessage(), ex);
 		}
@@ -157,4 +255,21 @@ public class ResultSetAttributeSource implements AttributeSource {
 		if (date == null) return null;
 		return new Date(date.getTime());
 	}
+
+	private Map<String, Integer> getColumnIndexesByLabel() {
+		if (columnIndexesByLabel == null) {
+			try {
+				ResultSetMetaData metaData = resultSet.getMetaData();
+				int columnCount = metaData.getColumnCount();
+				Map<String, Integer> indexes = new HashMap<>(columnCount * 2);
+				for (int i = 1; i <= columnCount; i++) {
+					indexes.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+				}
+				columnIndexesByLabel = indexes;
+			} catch (SQLException ex) {
+				throw new RepositoryException(ex.getMessage(), ex);
+			}
+		}
+		return columnIndexesByLabel;
+	}
 }
@@ -27,6 +27,8 @@ import org.xbery.overview.repo.AggType;
 import org.xbery.overview.repo.Conditions;
 import org.xbery.overview.repo.Repository;
 import org.xbery.overview.repo.RepositoryException;
+import org.xbery.overview.sql.dialect.MySqlDialect;
+import org.xbery.overview.sql.dialect.SqlDialect;
 import org.xbery.overview.sql.filter.SqlCondition;
 import org.xbery.overview.sql.filter.SqlConditionBuilder;
 import org.xbery.overview.sql.mapper.JoinEntityMapper;
@@ -39,8 +41,16 @@ import java.sql.*;
 import java.time.Instant;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Basic abstract implementation of {@link Repository}.
@@ -52,20 +62,20 @@ import java.util.stream.Collectors;
 public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K, F> {
 
 	protected static final Logger log = LoggerFactory.getLogger(AbstractSqlRepository.class);
-	private static final SqlConditionBuilder sqlConditionBuilder = new SqlConditionBuilder();
+	private static final SqlDialect DEFAULT_DIALECT = new MySqlDialect();
+	private static final String TOTAL_COUNT_ALIAS = "overview_total_count";
+	private volatile SqlDialect resolvedDialect;
+	private volatile SqlConditionBuilder sqlConditionBuilder;
+	private volatile CrudStatements<T> crudStatements;
 	
 	@Override
 	public T create(T entity, boolean autogenerateKey) {
 		Objects.requireNonNull(entity, "Entity should be specified");
-		String tableName = getEntityMapper().getTableNameWithDb();
-		String attributeNamesCommaSeparated = CollectionFuns.join(getEntityMapper().getAttributeNames(), ",");
-		String questionMarks = getPlaceholdersCommaSeparated(getEntityMapper().getAttributeNames().size());
-		List<Object> attributeValues = getEntityMapper().getAttributeValues(entity);
-
-		String sql = "INSERT INTO " + tableName + " (" + attributeNamesCommaSeparated + ") VALUES (" + questionMarks + ")";
+		CrudStatements<T> statements = getCrudStatements();
+		List<Object> attributeValues = statements.getAttributeValues(entity);
 
 		T createdEntity = entity;
-		K generatedKey = create(sql, attributeValues, autogenerateKey);
+		K generatedKey = create(statements.getInsertSql(), attributeValues, autogenerateKey);
 
 		if (autogenerateKey) {
 			createdEntity = entityUpdatedWithId(createdEntity, generatedKey);
@@ -73,14 +83,71 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		return createdEntity;
 	}
 	
+	/**
+	 * Creates all given entities using one connection and one prepared statement. Inserts are sent to database in batches
+	 * of {@link #getInsertBatchSize()} records, optionally as multi-row inserts (see {@link #isMultiRowInsert()}).
+	 * @param entities entities to create
+	 * @param autogenerateKey true if entity key should be generated
+	 * @return created entities that include also possible generated keys
+	 */
+	@Override
+	public List<T> createAll(List<T> entities, boolean autogenerateKey) {
+		List<T> createdEntities = new ArrayList<>();
+		if (entities == null || entities.isEmpty()) {
+			return createdEntities;
+		}
+		CrudStatements<T> statements = getCrudStatements();
+		List<List<Object>> records = new ArrayList<>(entities.size());
+		for (T entity : entities) {
+			Objects.requireNonNull(entity, "Entity should be specified");
+			records.add(getDbSupportedAttributeValues(statements.getAttributeValues(entity)));
+		}
+
+		List<K> generatedKeys = createAll(getEntityMapper().getTableNameWithDb(), statements.getAttributeNames(), records, autogenerateKey);
+
+		for (int i = 0; i < entities.size(); i++) {
+			T createdEntity = entities.get(i);
+			if (autogenerateKey) {
+				createdEntity = entityUpdatedWithId(createdEntity, generatedKeys.get(i));
+			}
+			createdEntities.add(createdEntity);
+		}
+		return createdEntities;
+	}
+
+	/**
+	 * Inserts given entity, or updates all its attributes if entity with the same primary key already exists.
+	 * One native upsert command of SQL dialect is used.
+	 * @param entity entity with primary key set
+	 * @return inserted or updated entity
+	 */
+	public T upsert(T entity) {
+		Objects.requireNonNull(entity, "Entity should be specified");
+		CrudStatements<T> statements = getCrudStatements();
+		if (statements.getPrimaryAttributeNames().isEmpty()) {
+			throw new RepositoryException("Entity without primary key cannot be upserted");
+		}
+		String sql = getResolvedDialect().upsert(getEntityMapper().getTableNameWithDb(), statements.getAttributeNames(), statements.getPrimaryAttributeNames());
+		List<Object> attributeValues = getDbSupportedAttributeValues(statements.getAttributeValues(entity));
+		withNewConnection(conn -> {
+			try (PreparedStatement statement = conn.prepareStatement(sql)) {
+				setParameters(statement, attributeValues);
+				statement.executeUpdate();
+				logSqlWithParameters(sql, attributeValues);
+			} catch (Exception ex) {
+				throw new RepositoryException(ex.getMessage(), ex);
+			}
+			return null;
+		});
+		return entity;
+	}
+
 	@Override
 	public Optional<T> update(T entity) {
 		Objects.requireNonNull(entity, "Entity should be specified");
-		String attributeNamesEqToPlaceholders = getAttributeNamesEqToPlaceholdersCommaSeparated(getEntityMapper().getAttributeNames());
-		int updatedCount = updateByFilterConditions(
-			"UPDATE " + getEntityMapper().getTableNameWithDb() + " SET " + attributeNamesEqToPlaceholders,
-			getEntityMapper().composeFilterConditionsForPrimaryKeyOfEntity(entity),
-			getEntityMapper().getAttributeValues(entity));
+		CrudStatements<T> statements = getCrudStatements();
+		List<Object> parameters = statements.getUpdateParameters(getDbSupportedAttributeValues(statements.getAttributeValues(entity)));
+		int updatedCount = updateAttributeValues(statements.getUpdateSql(), parameters);
 		if (updatedCount == 1) {
 			return Optional.<T>of(entity);
 		}
@@ -102,8 +169,13 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 	@Override
 	public boolean delete(K id) {
 		Objects.requireNonNull(id, "id should be specified");
-		return updateByFilterConditions("DELETE FROM " + getEntityMapper().getTableNameWithDb(),
-			getEntityMapper().composeFilterConditionsForPrimaryKey(id), CollectionFuns.EMPTY_OBJECT_LIST) == 1;
+		CrudStatements<T> statements = getCrudStatements();
+		if (!statements.isSinglePrimaryKey()) {
+			// composite key is matched by conditions that the entity mapper can compose
+			return updateByFilterConditions("DELETE FROM " + getEntityMapper().getTableNameWithDb(),
+				getEntityMapper().composeFilterConditionsForPrimaryKey(id), CollectionFuns.EMPTY_OBJECT_LIST) == 1;
+		}
+		return updateAttributeValues(statements.getDeleteSql(), getDbSupportedAttributeValues(statements.getPrimaryKeyParameters(id))) == 1;
 	}
 
 	@Override
@@ -165,14 +237,38 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		return CollectionFuns.headOpt(findByFilterConditions(entityMapper.composeFilterConditionsForPrimaryKey(id), null, null, entityMapper));
 	}
 
+	/**
+	 * Finds entities with given ids using IN condition on the primary attribute, ids are split into chunks
+	 * of {@link #getJoinWithManyChunkSize()} values. Entities with composite key are found one by one.
+	 */
+	@Override
+	public List<T> findByIds(Collection<K> ids) {
+		if (ids == null || ids.isEmpty() || !getCrudStatements().isSinglePrimaryKey()) {
+			return Repository.super.findByIds(ids);
+		}
+		List<K> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+		if (distinctIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		@SuppressWarnings("unchecked")
+		Attribute<T, K> primaryAttribute = (Attribute<T, K>)getEntityMapper().getPrimaryAttributes().get(0);
+		return findByJoinValuesInChunks(distinctIds, primaryAttribute, null, null, null, getEntityMapper());
+	}
+
 	@Override
 	public <T, F> List<T> findByOverview(final Overview<F> overview, EntityMapper<T, F> entityMapper) {
 		Objects.requireNonNull(overview, "overview should be specified");
 		Objects.requireNonNull(entityMapper, "entityMapper should be specified");
 		List<T> objects;
-    	// TODO RBe: Perform JOIN for JoinWithManyEntityMapper on database level if pagination is not set
 		if (isJoinWithManyMapper(entityMapper)) {
-			objects = findJoinedWithMany(overview, (JoinEntityMapper)entityMapper);
+			// Join mapper implements EntityMapper<V, H> for its resulting entity and filter types
+			@SuppressWarnings("unchecked")
+			JoinEntityMapper<?, ?, ?, ?, T, F, ?> joinMapper = (JoinEntityMapper<?, ?, ?, ?, T, F, ?>)entityMapper;
+			if (isJoinWithManyInSingleQuery() && canJoinWithManyInSingleQuery(overview, joinMapper)) {
+				objects = findJoinedWithManyInSingleQuery(overview, joinMapper);
+			} else {
+				objects = findJoinedWithMany(overview, joinMapper);
+			}
 		} else {
 			List<String> attributeNames = entityMapper.getAttributeNames();
 			String from = entityMapper.getTableNameWithDb();
@@ -187,6 +283,32 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		return findByOverview(overview, getEntityMapper());
 	}
 
+	/**
+	 * Returns stream of results backed by open database cursor. Entities are built one by one while the stream is consumed,
+	 * rows are fetched from database in chunks of {@link #getFetchSize()} rows. Returned stream holds database connection
+	 * until it is fully consumed or closed, so it should be closed after use (using try-with-resources statement).
+	 * @param overview
+	 * @param entityMapper
+	 * @param <T>
+	 * @param <F>
+	 * @return
+	 */
+	@Override
+	public <T, F> Stream<T> streamByOverview(final Overview<F> overview, EntityMapper<T, F> entityMapper) {
+		Objects.requireNonNull(overview, "overview should be specified");
+		Objects.requireNonNull(entityMapper, "entityMapper should be specified");
+		if (isJoinWithManyMapper(entityMapper)) {
+			// Entities joined with many other entities are composed from more rows, they are loaded as a whole
+			return findByOverview(overview, entityMapper).stream();
+		}
+		String selection = entityMapper.getAttributeSelection();
+		String from = entityMapper.getTableNameWithDb();
+		List<Condition> filterConditions = overview.getFilter() != null ? entityMapper.composeFilterConditions(overview.getFilter()) : new ArrayList<>();
+		StringBuilder sqlBuilder = new StringBuilder("SELECT " + selection + " FROM " + from);
+		List<Object> parameters = appendOverview(sqlBuilder, filterConditions, overview.getOrdering(), overview.getPagination(), overview.getGrouping(), entityMapper);
+		return streamRows(sqlBuilder.toString(), parameters, as -> entityMapper.buildEntity(as));
+	}
+
 	protected abstract DataSource getDataSource();
 
     protected <T, F, U, G, V, H, O> List<V> findJoinedWithMany(final Overview<H> overview, JoinEntityMapper<T, F, U, G, V, H, O> joinedEntityMapper) {
@@ -213,26 +335,218 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		EqAttributesCondition<T, U, O, O> eqAttrCondition = joinedEntityMapper.getJoinCondition();
 		Attribute<T, O> firstEntityJoinAttr = eqAttrCondition.getFirstAttribute();
 		Attribute<U, O> secondEntityJoinAttr = eqAttrCondition.getSecondAttribute();
-		// Get all identifiers of first (=left) entities
-		List<O> firstEntitiesIds = firstEntities.stream().map(e -> firstEntityJoinAttr.getValue(e)).collect(Collectors.toList());
+		// Get all distinct identifiers of first (=left) entities
+		List<O> firstEntitiesIds = firstEntities.stream().map(e -> firstEntityJoinAttr.getValue(e)).filter(Objects::nonNull).distinct().collect(Collectors.toList());
 		// Find second entities by these identifiers of first entities, with applying conditions from the second filter, ordering and grouping.
 		// Pagination is not applied for the entities on the right (many) side.
-		List<Condition> secondEntitiesConditions = new ArrayList<>();
-		secondEntitiesConditions.add(Conditions.in(secondEntityJoinAttr, firstEntitiesIds));
-		secondEntitiesConditions.addAll(joinedEntityMapper.getSecondMapper().composeFilterConditions(secondEntityFilter));
-		List<U> secondEntities = findByFilterConditions(secondEntitiesConditions, secondEntityOrdering, secondEntityGrouping, joinedEntityMapper.getSecondMapper());
+		List<Condition> secondEntitiesConditions = joinedEntityMapper.getSecondMapper().composeFilterConditions(secondEntityFilter);
+		List<U> secondEntities = findByJoinValuesInChunks(firstEntitiesIds, secondEntityJoinAttr, secondEntitiesConditions, secondEntityOrdering, secondEntityGrouping, joinedEntityMapper.getSecondMapper());
 
-		// Attach second (many-side) entities to first entities
-		List<V> firstEntitiesWithJoinedSecondEntities = new ArrayList<>();
+		// Attach second (many-side) entities to first entities, probing join index built in one pass through second entities
+		Map<O, List<U>> secondEntitiesByJoinValue = indexByJoinValue(secondEntities, secondEntityJoinAttr);
+		List<V> firstEntitiesWithJoinedSecondEntities = new ArrayList<>(firstEntities.size());
 		for (T firstEntity : firstEntities) {
 			O firstEntityJoinValue = firstEntityJoinAttr.getValue(firstEntity);
-			List<U> secondEntitiesForFirstEntity = secondEntities.stream().filter(secondEntity -> firstEntityJoinValue != null && firstEntityJoinValue.equals(secondEntityJoinAttr.getValue(secondEntity))).collect(Collectors.toList());
+			List<U> secondEntitiesForFirstEntity = null;
+			if (firstEntityJoinValue != null) {
+				secondEntitiesForFirstEntity = secondEntitiesByJoinValue.get(firstEntityJoinValue);
+			}
+			if (secondEntitiesForFirstEntity == null) {
+				secondEntitiesForFirstEntity = new ArrayList<>();
+			}
 			V firstEntityWithJoinedSecondEntities = joinedEntityMapper.getComposeEntityWithMany().apply(firstEntity, secondEntitiesForFirstEntity);
 			firstEntitiesWithJoinedSecondEntities.add(firstEntityWithJoinedSecondEntities);
 		}
 		return firstEntitiesWithJoinedSecondEntities;
 	}
 
+	/**
+	 * Finds entities with join attribute equal to one of given join values. Join values are split into chunks of
+	 * {@link #getJoinWithManyChunkSize()} values, each chunk is loaded using separate IN condition. If {@link #getJoinWithManyExecutor()}
+	 * is set and no {@link RepositorySession} is bound to current thread, chunks are loaded in parallel. Results of chunks are merged in the order of chunks.
+	 * @param joinValues distinct join values
+	 * @param joinAttr join attribute of loaded entities
+	 * @param filterConditions additional filter conditions
+	 * @param ordering ordering of loaded entities (applied within each chunk)
+	 * @param grouping grouping of loaded entities
+	 * @param entityMapper mapper of loaded entities
+	 * @return entities for all given join values
+	 */
+	protected <U, G, O> List<U> findByJoinValuesInChunks(List<O> joinValues, Attribute<U, O> joinAttr, List<Condition> filterConditions, List<Order> ordering, List<Group> grouping, EntityMapper<U, G> entityMapper) {
+		List<List<O>> chunks = chunkJoinValues(joinValues);
+		Function<List<O>, List<U>> findChunk = chunk -> {
+			List<Condition> conditions = new ArrayList<>();
+			conditions.add(Conditions.in(joinAttr, chunk));
+			if (filterConditions != null) {
+				conditions.addAll(filterConditions);
+			}
+			return findByFilterConditions(conditions, ordering, grouping, entityMapper);
+		};
+
+		List<U> entities = new ArrayList<>();
+		Executor executor = getJoinWithManyExecutor();
+		// Connection of session cannot be shared among threads
+		if (executor == null || chunks.size() < 2 || getSession().isPresent()) {
+			for (List<O> chunk : chunks) {
+				entities.addAll(findChunk.apply(chunk));
+			}
+		} else {
+			List<CompletableFuture<List<U>>> chunkResults = chunks.stream()
+				.map(chunk -> CompletableFuture.supplyAsync(() -> findChunk.apply(chunk), executor))
+				.collect(Collectors.toList());
+			for (CompletableFuture<List<U>> chunkResult : chunkResults) {
+				try {
+					entities.addAll(chunkResult.join());
+				} catch (CompletionException ex) {
+					if (ex.getCause() instanceof RepositoryException) {
+						throw (RepositoryException)ex.getCause();
+					}
+					throw new RepositoryException(ex.getMessage(), ex.getCause());
+				}
+			}
+		}
+		return entities;
+	}
+
+	/**
+	 * Splits join values into chunks of {@link #getJoinWithManyChunkSize()} values. Each chunk is padded to canonical size,
+	 * see {@link #padToCanonicalSize(List, int)}.
+	 * @param joinValues join values
+	 * @return chunks of join values
+	 */
+	protected <O> List<List<O>> chunkJoinValues(List<O> joinValues) {
+		List<List<O>> chunks = new ArrayList<>();
+		int chunkSize = getJoinWithManyChunkSize() > 0 ? getJoinWithManyChunkSize() : joinValues.size();
+		for (int from = 0; from < joinValues.size(); from += chunkSize) {
+			List<O> chunk = new ArrayList<>(joinValues.subList(from, Math.min(from + chunkSize, joinValues.size())));
+			padToCanonicalSize(chunk, chunkSize);
+			chunks.add(chunk);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Pads given chunk of values by repeating its last value up to nearest power of two (or up to chunk size).
+	 * SQL text with IN condition then repeats for differently sized chunks and prepared statements can be reused from the cache.
+	 * Repeated values do not change the result of IN condition.
+	 * @param chunk chunk of values
+	 * @param chunkSize maximal size of chunk
+	 */
+	protected <O> void padToCanonicalSize(List<O> chunk, int chunkSize) {
+		int size = chunk.size();
+		if (size == 0) {
+			return;
+		}
+		int canonicalSize = Integer.highestOneBit(size);
+		if (canonicalSize < size) {
+			canonicalSize = canonicalSize << 1;
+		}
+		if (canonicalSize > chunkSize) {
+			canonicalSize = chunkSize;
+		}
+		O lastValue = chunk.get(size - 1);
+		while (chunk.size() < canonicalSize) {
+			chunk.add(lastValue);
+		}
+	}
+
+	/**
+	 * Groups given entities by values of join attribute, keeping the order of entities within each group.
+	 * Entities with {@code null} join value are omitted since they cannot be joined with any other entity.
+	 * @param entities entities to index
+	 * @param joinAttr attribute used for join operation
+	 * @param <U> type of indexed entity
+	 * @param <O> type of join attribute
+	 * @return join index: entities for each join value
+	 */
+	protected <U, O> Map<O, List<U>> indexByJoinValue(List<U> entities, Attribute<U, O> joinAttr) {
+		Map<O, List<U>> index = new HashMap<>();
+		for (U entity : entities) {
+			O joinValue = joinAttr.getValue(entity);
+			if (joinValue != null) {
+				index.computeIfAbsent(joinValue, v -> new ArrayList<>()).add(entity);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Loads entities of first type joined with many entities of second type using one LEFT JOIN query.
+	 * Rows are ordered by first entity ordering and its primary key, so all joined rows of one first entity are consecutive
+	 * and can be composed into one resulting entity. If pagination is set, it is applied to first entities in a subquery,
+	 * so the page limit is not broken by the joined rows.
+	 * @param overview overview settings for resulting entities
+	 * @param joinedEntityMapper join mapper with {@link Cardinality#MANY}
+	 * @return first entities composed with joined second entities
+	 */
+	protected <T, F, U, G, V, H, O> List<V> findJoinedWithManyInSingleQuery(final Overview<H> overview, JoinEntityMapper<T, F, U, G, V, H, O> joinedEntityMapper) {
+		EntityMapper<T, F> firstMapper = joinedEntityMapper.getFirstMapper();
+		EntityMapper<U, G> secondMapper = joinedEntityMapper.getSecondMapper();
+
+		// Filters for first and second joined entity types
+		Pair<F, G> decomposedFilter = joinedEntityMapper.getDecomposeFilter().apply(overview.getFilter());
+		F firstEntityFilter = decomposedFilter.getFirst();
+		G secondEntityFilter = decomposedFilter.getSecond();
+		List<Condition> firstEntityConditions = firstEntityFilter != null ? firstMapper.composeFilterConditions(firstEntityFilter) : new ArrayList<>();
+		List<Condition> secondEntityConditions = secondEntityFilter != null ? secondMapper.composeFilterConditions(secondEntityFilter) : new ArrayList<>();
+
+		// Ordering for first and second joined entity types, first entities are ordered also by their primary key so their rows are grouped together
+		Pair<List<Order>, List<Order>> orders = joinedEntityMapper.getDecomposeOrdering().apply(overview.getOrdering());
+		List<Order> firstEntityOrdering = orderingWithPrimaryKey(
+			(orders.getFirst() == null || orders.getFirst().isEmpty()) ? firstMapper.defaultOrdering() : orders.getFirst(), firstMapper);
+		List<Order> secondEntityOrdering = (orders.getSecond() == null || orders.getSecond().isEmpty()) ? secondMapper.defaultOrdering() : orders.getSecond();
+
+		List<String> selectedAttributes = new ArrayList<>();
+		selectedAttributes.addAll(firstMapper.getAttributeNamesFullAliased());
+		selectedAttributes.addAll(secondMapper.getAttributeNamesFullAliased());
+
+		List<Object> parameters = new ArrayList<>();
+		StringBuilder sqlBuilder = new StringBuilder("SELECT " + CollectionFuns.join(selectedAttributes, ", ") + " FROM ");
+		Pagination pagination = overview.getPagination();
+		if (pagination != null) {
+			// Page of first entities is selected in keyed subquery, it is aliased by the table name so the full attribute names still apply
+			StringBuilder subqueryBuilder = new StringBuilder("SELECT * FROM " + firstMapper.getTableNameWithDb());
+			List<Order> keysetOrdering = (orders.getFirst() == null || orders.getFirst().isEmpty()) ? firstMapper.defaultOrdering() : orders.getFirst();
+			addParameters(parameters, appendFilter(subqueryBuilder, withKeysetCondition(firstEntityConditions, keysetOrdering, pagination)));
+			appendOrdering(subqueryBuilder, firstEntityOrdering);
+			appendPagination(subqueryBuilder, pagination);
+			sqlBuilder.append("(").append(subqueryBuilder).append(") ").append(firstMapper.getTableName());
+		} else {
+			sqlBuilder.append(firstMapper.getTableNameWithDb());
+		}
+
+		// Conditions on second entities are part of ON clause, so first entities without matching second entities are still loaded
+		List<Condition> onConditions = new ArrayList<>(joinedEntityMapper.getOnConditions());
+		onConditions.addAll(secondEntityConditions);
+		List<SqlCondition> onSqlConditions = buildSqlConditions(onConditions);
+		sqlBuilder.append(" LEFT JOIN ").append(secondMapper.getTableNameWithDb())
+			.append(" ON (").append(CollectionFuns.join(onSqlConditions.stream().map(c -> c.getConditionWithPlaceholders()).collect(Collectors.toList()), " AND ")).append(")");
+		onSqlConditions.forEach(c -> parameters.addAll(c.getValues()));
+
+		if (pagination == null) {
+			addParameters(parameters, appendFilter(sqlBuilder, firstEntityConditions));
+		}
+		List<Order> ordering = new ArrayList<>(firstEntityOrdering);
+		if (secondEntityOrdering != null) {
+			ordering.addAll(secondEntityOrdering);
+		}
+		appendOrdering(sqlBuilder, ordering);
+
+		// Consecutive rows with the same primary key of first entity are composed into one resulting entity
+		List<Attribute<T, ?>> firstPrimaryAttributes = firstMapper.getPrimaryAttributes();
+		String firstAliasPrefix = firstMapper.getAliasPrefix();
+		String secondAliasPrefix = secondMapper.getAliasPrefix();
+		JoinedWithManyComposer<T, U, V> composer = new JoinedWithManyComposer<>(joinedEntityMapper.getComposeEntityWithMany());
+		queryRows(sqlBuilder.toString(), parameters, as -> {
+			List<Object> firstEntityKey = new ArrayList<>(firstPrimaryAttributes.size());
+			for (Attribute<T, ?> attr : firstPrimaryAttributes) {
+				firstEntityKey.add(as.get(attr.getAttributeClass(), attr.getName(firstAliasPrefix != null ? firstAliasPrefix + attr.getName() : null)));
+			}
+			composer.addRow(firstEntityKey, () -> firstMapper.buildEntity(as, firstAliasPrefix), secondMapper.buildEntity(as, secondAliasPrefix));
+		});
+		return composer.getResults();
+	}
+
 	protected int updateByFilterConditions(String cmdWithoutConditions, List<Condition> conditions, List<Object> updatedAttributeValues) {
 		StringBuilder sqlBuilder = new StringBuilder(cmdWithoutConditions);
 
@@ -353,10 +667,155 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		});
 	}
 
+	/**
+	 * Inserts given records into given table using one connection.
+	 * @param tableName name of table
+	 * @param attributeNames names of inserted attributes
+	 * @param records values of attributes for each record, already converted to values supported by database
+	 * @param autogenerateKey true if keys are generated by database
+	 * @return generated keys in the order of records, or empty list if keys are not generated
+	 */
+	protected List<K> createAll(String tableName, List<String> attributeNames, List<List<Object>> records, boolean autogenerateKey) {
+		int batchSize = Math.max(1, getInsertBatchSize());
+		// Generated keys are returned as the result of multi-row insert
+		boolean returning = autogenerateKey && getResolvedDialect().isReturningSupported();
+		// Keys generated by batch (or multi-row insert) are not returned by all drivers, statements are executed one by one then
+		boolean batched = !autogenerateKey || isBatchGeneratedKeysSupported() || returning;
+		return withNewConnection(conn -> {
+			List<K> generatedKeys = new ArrayList<>();
+			try {
+				if (batched && (isMultiRowInsert() || returning)) {
+					createAllMultiRow(conn, tableName, attributeNames, records, autogenerateKey, batchSize, generatedKeys);
+				} else {
+					String sql = composeInsertSql(tableName, attributeNames, 1);
+					try (PreparedStatement statement = conn.prepareStatement(sql, autogenerateKey ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
+						for (int i = 0; i < records.size(); i++) {
+							setParameters(statement, records.get(i));
+							if (batched) {
+								statement.addBatch();
+								if ((i + 1) % batchSize == 0 || i == records.size() - 1) {
+									statement.executeBatch();
+									if (autogenerateKey) {
+										readGeneratedKeys(statement, generatedKeys);
+									}
+								}
+							} else {
+								statement.executeUpdate();
+								readGeneratedKeys(statement, generatedKeys);
+							}
+						}
+						logSqlWithRecordCount(sql, records.size());
+					}
+				}
+			} catch (Exception ex) {
+				throw new RepositoryException(ex.getMessage(), ex);
+			}
+			if (autogenerateKey && generatedKeys.size() != records.size()) {
+				throw new RepositoryException("Count of generated keys " + generatedKeys.size() + " does not match count of inserted records " + records.size());
+			}
+			return generatedKeys;
+		});
+	}
+
+	protected void createAllMultiRow(Connection conn, String tableName, List<String> attributeNames, List<List<Object>> records, boolean autogenerateKey, int batchSize, List<K> generatedKeys) throws SQLException {
+		boolean returning = autogenerateKey && getResolvedDialect().isReturningSupported();
+		PreparedStatement statement = null;
+		String sql = null;
+		int statementRecordCount = 0;
+		try {
+			for (int from = 0; from < records.size(); from += batchSize) {
+				List<List<Object>> batch = records.subList(from, Math.min(from + batchSize, records.size()));
+				if (statement == null || statementRecordCount != batch.size()) {
+					// Statement is prepared for full batches and once more for the last (smaller) batch
+					if (statement != null) {
+						statement.close();
+					}
+					sql = composeInsertSql(tableName, attributeNames, batch.size());
+					if (returning) {
+						sql = getResolvedDialect().insertReturning(sql, getCrudStatements().getPrimaryAttributeNames());
+						statement = conn.prepareStatement(sql);
+					} else {
+						statement = conn.prepareStatement(sql, autogenerateKey ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS);
+					}
+					statementRecordCount = batch.size();
+				}
+				logSqlWithRecordCount(sql, batch.size());
+				List<Object> parameters = new ArrayList<>(batch.size() * attributeNames.size());
+				for (List<Object> record : batch) {
+					parameters.addAll(record);
+				}
+				setParameters(statement, parameters);
+				if (returning) {
+					try (ResultSet rs = statement.executeQuery()) {
+						while (rs.next()) {
+							generatedKeys.add(getAutogeneratedKey(rs));
+						}
+					}
+				} else {
+					statement.executeUpdate();
+					if (autogenerateKey) {
+						readGeneratedKeys(statement, generatedKeys);
+					}
+				}
+			}
+		} finally {
+			if (statement != null) {
+				statement.close();
+			}
+		}
+	}
+
+	protected void readGeneratedKeys(Statement statement, List<K> generatedKeys) throws SQLException {
+		try (ResultSet rs = statement.getGeneratedKeys()) {
+			while (rs.next()) {
+				generatedKeys.add(getAutogeneratedKey(rs));
+			}
+		}
+	}
+
+	/**
+	 * Returns INSERT command with placeholders for given count of inserted records.
+	 * @param tableName name of table
+	 * @param attributeNames names of inserted attributes
+	 * @param recordCount count of inserted records (more than one for multi-row insert)
+	 * @return INSERT command
+	 */
+	protected String composeInsertSql(String tableName, List<String> attributeNames, int recordCount) {
+		return getResolvedDialect().insert(tableName, attributeNames, recordCount);
+	}
+
+	/**
+	 * Count of records inserted using one batch (or one multi-row insert) by {@link #createAll(List, boolean)}.
+	 * Subclasses can override this.
+	 * @return count of records in one batch
+	 */
+	protected int getInsertBatchSize() {
+		return 100;
+	}
+
+	/**
+	 * Returns true if batch of records should be inserted by {@link #createAll(List, boolean)} using one multi-row
+	 * INSERT ... VALUES (...), (...) command instead of JDBC batch. By default, it is decided by SQL dialect.
+	 * @return true if multi-row insert should be used
+	 */
+	protected boolean isMultiRowInsert() {
+		return getResolvedDialect().isMultiRowInsertPreferred();
+	}
+
+	/**
+	 * Returns true if JDBC driver returns keys generated for all records of a batch (or multi-row insert).
+	 * If false, {@link #createAll(List, boolean)} with key generation executes insert of each record separately,
+	 * still using one connection and one prepared statement. By default, it is decided by SQL dialect.
+	 * @return true if all generated keys are returned for batch
+	 */
+	protected boolean isBatchGeneratedKeysSupported() {
+		return getResolvedDialect().isBatchGeneratedKeysSupported();
+	}
+
 	protected K getAutogeneratedKey(ResultSet rs) {
 		try {
 			// Extract corresponding type of first primary key attribute from result set
-			List<Attribute<T, ?>> pkAttributes = getEntityMapper().getPrimaryAttributes();
+			List<Attribute<T, ?>> pkAttributes = getCrudStatements().getPrimaryAttributes();
 			Class<?> firstPKClass = !pkAttributes.isEmpty() ? pkAttributes.get(0).getAttributeClass() : null;
 			Object pkValue = null;
 			if (firstPKClass != null && Integer.class.isAssignableFrom(firstPKClass)) {
@@ -419,33 +878,111 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		EntityMapper<T, F> entityMappper,
 		Function<AttributeSource, R> entityBuilder) {
 
-		return withNewConnection(conn -> {
-			List<R> results = new ArrayList<>();
-			try {
-				StringBuilder sqlBuilder = new StringBuilder("SELECT " + selection + " FROM " + from);
-				List<Object> parameters = appendFilter(sqlBuilder, filterConditions);
-				appendGrouping(sqlBuilder, (grouping == null || grouping.isEmpty()) ? entityMappper.defaultGrouping() : grouping);
-				appendOrdering(sqlBuilder, (ordering == null || ordering.isEmpty()) ? entityMappper.defaultOrdering() : ordering);
-				appendPagination(sqlBuilder, pagination);
+		StringBuilder sqlBuilder = new StringBuilder("SELECT " + selection + " FROM " + from);
+		List<Object> parameters = appendOverview(sqlBuilder, filterConditions, ordering, pagination, grouping, entityMappper);
 
-				String sql = sqlBuilder.toString();
+		List<R> results = new ArrayList<>();
+		queryRows(sqlBuilder.toString(), parameters, as -> results.add(entityBuilder.apply(as)));
+		return results;
+	}
 
-				try (PreparedStatement statement = conn.prepareStatement(sql)) {
-					setParameters(statement, parameters);
+	/**
+	 * Executes given query and passes each row of its result to given row handler.
+	 * @param sql SQL query with placeholders
+	 * @param parameters values for placeholders
+	 * @param rowHandler handler of one row of the result, called for each row in order of the result
+	 */
+	protected void queryRows(String sql, List<Object> parameters, Consumer<AttributeSource> rowHandler) {
+		withNewConnection(conn -> {
+			queryRows(conn, sql, parameters, rowHandler);
+			return null;
+		});
+	}
 
-					try (ResultSet rs = statement.executeQuery()) {
-						while (rs.next()) {
-							results.add(entityBuilder.apply(new ResultSetAttributeSource(rs)));
-						}
-					}
+	/**
+	 * Executes given query using given connection and passes each row of its result to given row handler.
+	 * @param conn connection
+	 * @param sql SQL query with placeholders
+	 * @param parameters values for placeholders
+	 * @param rowHandler handler of one row of the result, called for each row in order of the result
+	 */
+	protected void queryRows(Connection conn, String sql, List<Object> parameters, Consumer<AttributeSource> rowHandler) {
+		try (PreparedStatement statement = conn.prepareStatement(sql)) {
+			setParameters(statement, parameters);
+
+			try (ResultSet rs = statement.executeQuery()) {
+				// One attribute source for all rows, so column indexes are resolved only once
+				ResultSetAttributeSource attributeSource = new ResultSetAttributeSource(rs);
+				while (rs.next()) {
+					rowHandler.accept(attributeSource);
 				}
+			}
 
-				logSqlWithParameters(sql, parameters);
-			} catch (Exception ex) {
-				throw new RepositoryException(ex.getMessage(), ex);
+			logSqlWithParameters(sql, parameters);
+		} catch (Exception ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Executes given query and returns lazily read stream of its rows converted using given row mapper.
+	 * Connection, statement and result set are closed when the stream is fully consumed, closed, or reading of it fails.
+	 * Connection of bound {@link RepositorySession} is left open for further use by the session.
+	 * @param sql SQL query with placeholders
+	 * @param parameters values for placeholders
+	 * @param rowMapper converts one row of the result
+	 * @param <R> type of stream elements
+	 * @return stream of converted rows
+	 */
+	protected <R> Stream<R> streamRows(String sql, List<Object> parameters, Function<AttributeSource, R> rowMapper) {
+		Optional<RepositorySession> session = getSession();
+		Connection conn = null;
+		// Connection owned and released by the stream, null if the connection of session is used
+		Connection ownConn = null;
+		boolean autoCommit = true;
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			if (session.isPresent()) {
+				conn = session.get().getConnection();
+			} else {
+				conn = getDataSource().getConnection();
+				ownConn = conn;
+				autoCommit = conn.getAutoCommit();
 			}
-			return results;
-		});
+			if (ownConn != null && autoCommit) {
+				// Some drivers (e.g. PostgreSQL) use cursor to fetch rows in chunks only within transaction
+				conn.setAutoCommit(false);
+			}
+			statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			int fetchSize = getFetchSize();
+			if (fetchSize != 0) {
+				statement.setFetchSize(fetchSize);
+			}
+			setParameters(statement, parameters);
+			rs = statement.executeQuery();
+			logSqlWithParameters(sql, parameters);
+		} catch (Exception ex) {
+			RepositoryException failure = new RepositoryException(ex.getMessage(), ex);
+			try {
+				new ResultSetIterator<>(ownConn, autoCommit, statement, rs, rowMapper).close();
+			} catch (RepositoryException closeEx) {
+				failure.addSuppressed(closeEx);
+			}
+			throw failure;
+		}
+		ResultSetIterator<R> iterator = new ResultSetIterator<>(ownConn, autoCommit, statement, rs, rowMapper);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+			.onClose(iterator::close);
+	}
+
+	/**
+	 * Count of rows fetched from database at once when results are streamed, see {@link #streamByOverview(Overview, EntityMapper)}.
+	 * Zero means the driver's default. Subclasses can override this (e.g. MySQL driver streams rows one by one only with {@link Integer#MIN_VALUE}).
+	 * @return fetch size
+	 */
+	protected int getFetchSize() {
+		return 1000;
 	}
 
 	/**
@@ -461,19 +998,91 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 	protected <T, F> ResultsWithOverview<T, F> findResultsWithOverviewAndProjection(String projection, Overview<F> overview, EntityMapper<T, F> entityMapper) {
 		String from = entityMapper.getTableNameWithDb();
 		List<Condition> filterConditions = overview.getFilter() != null ? entityMapper.composeFilterConditions(overview.getFilter()) : new ArrayList<>();
-		List<T> entities = queryWithOverview(projection, from, filterConditions, overview.getOrdering(), overview.getPagination(), overview.getGrouping(), entityMapper, as -> entityMapper.buildEntity(as));
+		Pagination pagination = overview.getPagination();
+		List<Group> grouping = (overview.getGrouping() == null || overview.getGrouping().isEmpty()) ? entityMapper.defaultGrouping() : overview.getGrouping();
+		boolean grouped = grouping != null && !grouping.isEmpty();
+		boolean windowCount = isWindowCountSupported() && !grouped && !pagination.isKeyset();
+		boolean exactCount = isExactTotalCountRequired();
+		// One more record than the page size shows whether there is a next page
+		Pagination pagePagination = exactCount ? pagination : new Pagination(pagination.getOffset(), pagination.getLimit() + 1, null, pagination.getKeyset());
 
-		String aggAlias = "attr_count";
-		List<Integer> countRes = queryWithOverview("COUNT(" + projection + ") AS " + aggAlias, from, filterConditions, null, null, overview.getGrouping(), entityMapper, as -> as.get(Integer.class, aggAlias));
-		Integer totalCount = (countRes != null && !countRes.isEmpty()) ? countRes.get(0) : null;
+		return withNewConnection(conn -> {
+			StringBuilder sqlBuilder = new StringBuilder("SELECT " + projection + (windowCount ? ", COUNT(*) OVER() AS " + TOTAL_COUNT_ALIAS : "") + " FROM " + from);
+			List<Object> parameters = appendOverview(sqlBuilder, filterConditions, overview.getOrdering(), pagePagination, grouping, entityMapper);
+			List<T> entities = new ArrayList<>();
+			List<Integer> windowTotalCount = new ArrayList<>(1);
+			queryRows(conn, sqlBuilder.toString(), parameters, as -> {
+				if (windowCount && windowTotalCount.isEmpty()) {
+					windowTotalCount.add(as.get(Integer.class, TOTAL_COUNT_ALIAS));
+				}
+				entities.add(entityMapper.buildEntity(as));
+			});
 
-		return new ResultsWithOverview<>(entities, overview.withPagination(overview.getPagination().withTotalCount(totalCount)));
+			Integer totalCount;
+			if (!exactCount && entities.size() > pagination.getLimit()) {
+				// Not the last page, total count is not exact but it is known there are more records
+				entities.remove(entities.size() - 1);
+				totalCount = Integer.valueOf(pagination.getNextOffset() + 1);
+			} else if (!windowTotalCount.isEmpty()) {
+				totalCount = windowTotalCount.get(0);
+			} else if (!grouped && !pagination.isKeyset() && entities.size() < pagination.getLimit() && (!entities.isEmpty() || pagination.isFirstPage())) {
+				// Last page was loaded, no count query is needed
+				totalCount = Integer.valueOf(pagination.getOffset() + entities.size());
+			} else {
+				StringBuilder countBuilder = new StringBuilder("SELECT COUNT(*) AS " + TOTAL_COUNT_ALIAS + " FROM " + from);
+				List<Object> countParameters = appendFilter(countBuilder, filterConditions);
+				appendGrouping(countBuilder, grouping);
+				List<Integer> countRes = new ArrayList<>();
+				queryRows(conn, countBuilder.toString(), countParameters, as -> countRes.add(as.get(Integer.class, TOTAL_COUNT_ALIAS)));
+				totalCount = !countRes.isEmpty() ? countRes.get(0) : null;
+			}
+			return new ResultsWithOverview<>(entities, overview.withPagination(pagination.withTotalCount(totalCount)));
+		});
+	}
+
+	/**
+	 * Returns page of results together with total count of records. Both are loaded using one connection:
+	 * total count is computed by window function in the page query if the database supports it (see {@link #isWindowCountSupported()}),
+	 * it is derived from the size of the last page, or it is loaded by a count query. The exact count can be skipped for pages
+	 * that are not the last one (see {@link #isExactTotalCountRequired()}).
+	 * @param overview
+	 * @param entityMapper
+	 * @return
+	 */
+	@Override
+	public <T, F> ResultsWithOverview<T, F> findResultsWithOverview(Overview<F> overview, EntityMapper<T, F> entityMapper) {
+		Objects.requireNonNull(overview, "overview should be specified");
+		Objects.requireNonNull(entityMapper, "entityMapper should be specified");
+		if (overview.getPagination() == null || isJoinWithManyMapper(entityMapper)) {
+			return Repository.super.findResultsWithOverview(overview, entityMapper);
+		}
+		return findResultsWithOverviewAndProjection(entityMapper.getAttributeSelection(), overview, entityMapper);
+	}
+
+	/**
+	 * Returns true if database supports window function {@code COUNT(*) OVER()}, so total count of records can be loaded
+	 * together with page of results by {@link #findResultsWithOverview(Overview, EntityMapper)}. By default, it is decided by SQL dialect.
+	 * @return
+	 */
+	protected boolean isWindowCountSupported() {
+		return getResolvedDialect().isWindowCountSupported();
+	}
+
+	/**
+	 * Returns true if {@link #findResultsWithOverview(Overview, EntityMapper)} should always return exact total count of records.
+	 * If false, total count is loaded only for the last page. For other pages one more record than the page size is loaded
+	 * and returned total count is just the lower bound: count of records up to and including the first record of the next page.
+	 * Subclasses can override this.
+	 * @return
+	 */
+	protected boolean isExactTotalCountRequired() {
+		return true;
 	}
 
 	protected List<Object> appendFilter(StringBuilder sqlBuilder, List<Condition> filterConditions) {
 		List<Object> parameters = null;
 		if (filterConditions != null && !filterConditions.isEmpty()) {
-			List<SqlCondition> sqlConditions = filterConditions.stream().map(c -> getConditionBuilder().build(c, this::getDbSupportedAttributeValue)).collect(Collectors.toList());
+			List<SqlCondition> sqlConditions = buildSqlConditions(filterConditions);
 			List<String> whereClause = sqlConditions.stream().map(c -> c.getConditionWithPlaceholders()).collect(Collectors.toList());
 			parameters = sqlConditions.stream().flatMap(c -> c.getValues().stream()).collect(Collectors.toList());
 			sqlBuilder.append(" WHERE ").append(CollectionFuns.join(whereClause, " AND "));
@@ -481,6 +1090,10 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		return parameters;
 	}
 
+	protected List<SqlCondition> buildSqlConditions(List<Condition> conditions) {
+		return conditions.stream().map(c -> getConditionBuilder().build(c, this::getDbSupportedAttributeValue)).collect(Collectors.toList());
+	}
+
 	protected void appendGrouping(StringBuilder sqlBuilder, List<Group> grouping) {
 		if (grouping != null && !grouping.isEmpty()) {
 			List<String> groupByAttributes = grouping.stream().map(c -> c.getAttribute()).collect(Collectors.toList());
@@ -497,8 +1110,88 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 
 	protected void appendPagination(StringBuilder sqlBuilder, Pagination pagination) {
 		if (pagination != null) {
-			// TODO RBe: Abstraction over different databases?
-			sqlBuilder.append(" LIMIT " + pagination.getLimit() + " OFFSET " + pagination.getOffset());
+			// In keyset mode, preceding records are excluded by keyset condition
+			getResolvedDialect().appendPagination(sqlBuilder, pagination.isKeyset() ? 0 : pagination.getOffset(), pagination.getLimit());
+		}
+	}
+
+	/**
+	 * Appends WHERE (including keyset condition of pagination), GROUP BY, ORDER BY and pagination clauses.
+	 * Default grouping and ordering of entity mapper is used if grouping or ordering is not given.
+	 * @return values for placeholders of appended clauses
+	 */
+	protected <T, F> List<Object> appendOverview(
+		StringBuilder sqlBuilder,
+		List<Condition> filterConditions,
+		List<Order> ordering,
+		Pagination pagination,
+		List<Group> grouping,
+		EntityMapper<T, F> entityMapper) {
+
+		List<Order> someOrdering = (ordering == null || ordering.isEmpty()) ? entityMapper.defaultOrdering() : ordering;
+		List<Object> parameters = appendFilter(sqlBuilder, withKeysetCondition(filterConditions, someOrdering, pagination));
+		appendGrouping(sqlBuilder, (grouping == null || grouping.isEmpty()) ? entityMapper.defaultGrouping() : grouping);
+		appendOrdering(sqlBuilder, someOrdering);
+		appendPagination(sqlBuilder, pagination);
+		return parameters;
+	}
+
+	/**
+	 * Returns given filter conditions extended with condition that selects records following the keyset of given pagination.
+	 * @param filterConditions filter conditions, can be {@code null}
+	 * @param ordering ordering the keyset values correspond to
+	 * @param pagination pagination, can be {@code null}
+	 * @return filter conditions including possible keyset condition
+	 */
+	protected List<Condition> withKeysetCondition(List<Condition> filterConditions, List<Order> ordering, Pagination pagination) {
+		if (pagination == null || !pagination.isKeyset() || pagination.getKeyset().isEmpty()) {
+			return filterConditions;
+		}
+		if (ordering == null || ordering.size() != pagination.getKeyset().size()) {
+			throw new RepositoryException("Keyset " + pagination.getKeyset() + " does not correspond to ordering " + ordering);
+		}
+		List<Condition> conditions = new ArrayList<>();
+		if (filterConditions != null) {
+			conditions.addAll(filterConditions);
+		}
+		conditions.add(getConditionBuilder().buildKeysetCondition(ordering, pagination.getKeyset(), isRowValueComparisonSupported(), this::getDbSupportedAttributeValue));
+		return conditions;
+	}
+
+	/**
+	 * Returns true if database supports (and can use index for) row value comparison {@code (a, b) > (?, ?)}.
+	 * It is used for keyset pagination with all ordering attributes sorted in the same direction, otherwise equivalent
+	 * combination of simple comparisons is used. By default, it is decided by SQL dialect.
+	 * @return
+	 */
+	protected boolean isRowValueComparisonSupported() {
+		return getResolvedDialect().isRowValueComparisonSupported();
+	}
+
+	/**
+	 * Returns given ordering extended with ordering by primary key attributes (if they are not already present),
+	 * so the order of entities is unambiguous.
+	 * @param ordering ordering, can be {@code null}
+	 * @param entityMapper entity mapper
+	 * @return ordering including primary key attributes
+	 */
+	protected <T, F> List<Order> orderingWithPrimaryKey(List<Order> ordering, EntityMapper<T, F> entityMapper) {
+		List<Order> result = new ArrayList<>();
+		if (ordering != null) {
+			result.addAll(ordering);
+		}
+		Set<String> orderedAttributes = result.stream().map(o -> o.getAttribute()).collect(Collectors.toSet());
+		for (Attribute<T, ?> attr : entityMapper.getPrimaryAttributes()) {
+			if (!orderedAttributes.contains(attr.getNameFull())) {
+				result.add(new Order(attr));
+			}
+		}
+		return result;
+	}
+
+	protected void addParameters(List<Object> parameters, List<Object> addedParameters) {
+		if (addedParameters != null) {
+			parameters.addAll(addedParameters);
 		}
 	}
 
@@ -519,6 +1212,12 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
         }
 	}
 
+	protected void logSqlWithRecordCount(String sql, int recordCount) {
+		if (log.isTraceEnabled()) {
+			log.trace("{} (records: {})", sql, recordCount);
+		}
+	}
+
 	protected void logParameters(List<Object> parameters) {
 		if (parameters != null) {
             for (int i = 0; i < parameters.size(); i++) {
@@ -573,7 +1272,25 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		return fun;
 	}
 
+	/**
+	 * Executes given function with database connection. If there is a {@link RepositorySession} for the data source
+	 * of this repository bound to current thread, its connection is used and it is neither committed nor closed here.
+	 * Otherwise new connection is obtained, committed (if it is not in auto-commit mode) and closed after the function.
+	 * @param queryData function using the connection
+	 * @param <U> type of result
+	 * @return result of the function
+	 */
 	protected <U> U withNewConnection(CheckedFunction<Connection, U> queryData) {
+		Optional<RepositorySession> session = getSession();
+		if (session.isPresent()) {
+			try {
+				return queryData.apply(session.get().getConnection());
+			} catch (RepositoryException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				throw new RepositoryException(ex.getMessage(), ex);
+			}
+		}
 		Connection conn = null;
 		boolean success = false;
 		U result = null;
@@ -607,6 +1324,14 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		return result;
 	}
 
+	/**
+	 * Returns session bound to current thread that should be used by this repository.
+	 * @return session for the data source of this repository, or empty if this repository should use its own connections
+	 */
+	protected Optional<RepositorySession> getSession() {
+		return RepositorySession.current(getDataSource());
+	}
+
 	/** Returns string with comma-separated question marks, one for each database column name. */
 	protected String getPlaceholdersCommaSeparated(int count) {
 		return CollectionFuns.join(Collections.nCopies(count, "?"), ",");
@@ -618,7 +1343,100 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 	}
 
 	protected SqlConditionBuilder getConditionBuilder() {
-		return sqlConditionBuilder;
+		SqlConditionBuilder builder = sqlConditionBuilder;
+		if (builder == null) {
+			builder = new SqlConditionBuilder(getResolvedDialect());
+			sqlConditionBuilder = builder;
+		}
+		return builder;
+	}
+
+	/**
+	 * Returns SQL commands for create, update and delete of entities composed for current entity mapper and SQL dialect.
+	 * Commands are composed only once and reused for next calls.
+	 * @return CRUD commands
+	 */
+	protected CrudStatements<T> getCrudStatements() {
+		CrudStatements<T> statements = crudStatements;
+		EntityMapper<T, F> entityMapper = getEntityMapper();
+		SqlDialect dialect = getResolvedDialect();
+		if (statements == null || !statements.isComposedFor(entityMapper, dialect)) {
+			statements = new CrudStatements<>(entityMapper, dialect);
+			crudStatements = statements;
+		}
+		return statements;
+	}
+
+	/**
+	 * SQL dialect of the database. Subclasses can override this, MySQL dialect is used by default.
+	 * The dialect is resolved only once, see {@link #getResolvedDialect()}.
+	 * @return SQL dialect
+	 */
+	protected SqlDialect getDialect() {
+		return DEFAULT_DIALECT;
+	}
+
+	/**
+	 * Returns SQL dialect resolved once from {@link #getDialect()}, so condition builder and CRUD statements composed
+	 * for the dialect are reused also if overridden getDialect creates new dialect for each call.
+	 * @return SQL dialect
+	 */
+	protected final SqlDialect getResolvedDialect() {
+		SqlDialect dialect = resolvedDialect;
+		if (dialect == null) {
+			synchronized (this) {
+				dialect = resolvedDialect;
+				if (dialect == null) {
+					dialect = getDialect();
+					resolvedDialect = dialect;
+				}
+			}
+		}
+		return dialect;
+	}
+
+	/**
+	 * Maximal count of join values in one IN condition when entities on the many side of join are loaded using separate query.
+	 * Subclasses can override this, zero or negative value means all join values are loaded in one chunk.
+	 * @return maximal count of join values in one query
+	 */
+	protected int getJoinWithManyChunkSize() {
+		return 500;
+	}
+
+	/**
+	 * Executor for parallel loading of chunks of entities on the many side of join (see {@link #getJoinWithManyChunkSize()}).
+	 * Each chunk uses its own connection, so the executor should be bounded according to the connection pool.
+	 * Default implementation returns {@code null}, chunks are then loaded sequentially.
+	 * @return executor for loading of chunks, or {@code null}
+	 */
+	protected Executor getJoinWithManyExecutor() {
+		return null;
+	}
+
+	/**
+	 * Returns true if entities joined with many other entities should be loaded using one JOIN query when possible,
+	 * instead of separate query for second (many-side) entities. Subclasses can override this to switch the single query off.
+	 * @return true if single JOIN query should be used
+	 */
+	protected boolean isJoinWithManyInSingleQuery() {
+		return true;
+	}
+
+	/**
+	 * Single JOIN query is used when first entities have primary key (that identifies rows of one first entity)
+	 * and no grouping is requested.
+	 */
+	private <T, F, U, G, V, H, O> boolean canJoinWithManyInSingleQuery(Overview<H> overview, JoinEntityMapper<T, F, U, G, V, H, O> joinMapper) {
+		if (joinMapper.getFirstMapper() instanceof JoinEntityMapper || joinMapper.getFirstMapper().getPrimaryAttributes().isEmpty()) {
+			return false;
+		}
+		Pair<List<Group>, List<Group>> grouping = joinMapper.getDecomposeGrouping().apply(overview.getGrouping());
+		return isEmpty(grouping.getFirst()) && isEmpty(grouping.getSecond()) && isEmpty(joinMapper.getFirstMapper().defaultGrouping()) && isEmpty(joinMapper.getSecondMapper().defaultGrouping());
+	}
+
+	private static boolean isEmpty(List<?> list) {
+		return list == null || list.isEmpty();
 	}
 
 	private <T, F> boolean isJoinWithManyMapper(EntityMapper<T, F> entityMappper) {
@@ -628,4 +1446,137 @@ public abstract class AbstractSqlRepository<T, K, F> implements Repository<T, K,
 		JoinEntityMapper joinMapper = (JoinEntityMapper)entityMappper;
 		return joinMapper.getCardinality() != null && joinMapper.getCardinality() == Cardinality.MANY;
 	}
+
+	/**
+	 * Iterator over rows of open result set. Releases all database resources when the last row is read or it is closed.
+	 * Given connection is committed and closed, null connection (e.g. the connection of session) is left untouched.
+	 * @param <R> type of elements
+	 */
+	private static class ResultSetIterator<R> implements Iterator<R>, AutoCloseable {
+		private final Connection connection;
+		private final boolean autoCommit;
+		private final Statement statement;
+		private final ResultSet resultSet;
+		private final AttributeSource attributeSource;
+		private final Function<AttributeSource, R> rowMapper;
+		private Boolean rowAvailable;
+		private boolean closed;
+
+		ResultSetIterator(Connection connection, boolean autoCommit, Statement statement, ResultSet resultSet, Function<AttributeSource, R> rowMapper) {
+			this.connection = connection;
+			this.autoCommit = autoCommit;
+			this.statement = statement;
+			this.resultSet = resultSet;
+			this.attributeSource = resultSet != null ? new ResultSetAttributeSource(resultSet) : null;
+			this.rowMapper = rowMapper;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (rowAvailable == null) {
+				if (closed) {
+					rowAvailable = Boolean.FALSE;
+				} else {
+					try {
+						rowAvailable = resultSet.next();
+					} catch (SQLException ex) {
+						close();
+						throw new RepositoryException(ex.getMessage(), ex);
+					}
+					if (!rowAvailable) {
+						close();
+					}
+				}
+			}
+			return rowAvailable;
+		}
+
+		@Override
+		public R next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			rowAvailable = null;
+			try {
+				return rowMapper.apply(attributeSource);
+			} catch (RuntimeException ex) {
+				close();
+				throw ex;
+			}
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				if (resultSet != null) {
+					resultSet.close();
+				}
+				if (statement != null) {
+					statement.close();
+				}
+			} catch (SQLException ex) {
+				throw new RepositoryException(ex.getMessage(), ex);
+			} finally {
+				if (connection != null) {
+					try {
+						// Only reading was performed within the transaction
+						connection.commit();
+						connection.setAutoCommit(autoCommit);
+					} catch (SQLException ex) {
+						throw new RepositoryException(ex.getMessage(), ex);
+					} finally {
+						try {
+							connection.close();
+						} catch (SQLException ex) {
+							throw new RepositoryException(ex.getMessage(), ex);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Composes consecutive joined rows that belong to the same first entity into one resulting entity.
+	 */
+	private static class JoinedWithManyComposer<T, U, V> {
+		private final BiFunction<T, List<U>, V> composeEntityWithMany;
+		private final List<V> results = new ArrayList<>();
+		private List<Object> firstEntityKey;
+		private T firstEntity;
+		private List<U> secondEntities;
+
+		JoinedWithManyComposer(BiFunction<T, List<U>, V> composeEntityWithMany) {
+			this.composeEntityWithMany = composeEntityWithMany;
+		}
+
+		void addRow(List<Object> key, Supplier<T> firstEntitySupplier, U secondEntity) {
+			if (firstEntityKey == null || !firstEntityKey.equals(key)) {
+				composeCurrent();
+				firstEntityKey = key;
+				firstEntity = firstEntitySupplier.get();
+				secondEntities = new ArrayList<>();
+			}
+			if (secondEntity != null) {
+				secondEntities.add(secondEntity);
+			}
+		}
+
+		List<V> getResults() {
+			composeCurrent();
+			firstEntity = null;
+			firstEntityKey = null;
+			return results;
+		}
+
+		private void composeCurrent() {
+			if (firstEntity != null) {
+				results.add(composeEntityWithMany.apply(firstEntity, secondEntities));
+			}
+		}
+	}
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.sql.repo;
+
+import org.xbery.overview.common.funs.CollectionFuns;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.sql.dialect.SqlDialect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SQL commands for create, update and delete of entities, composed once for an entity mapper and SQL dialect.
+ * Immutable class, only values are bound to the commands for each call.
+ * @param <T> type of entity
+ * @author Radek Beran
+ */
+public final class CrudStatements<T> {
+
+	private final EntityMapper<T, ?> entityMapper;
+	private final SqlDialect dialect;
+	/** Attributes returned by the entity mapper, replaced by the mapper when its attributes are changed. */
+	private final List<Attribute<T, ?>> mapperAttributes;
+
+	private final List<Attribute<T, ?>> attributes;
+	private final List<String> attributeNames;
+	private final List<Attribute<T, ?>> primaryAttributes;
+	private final List<String> primaryAttributeNames;
+	/** Positions of primary attributes in the list of all attributes. */
+	private final int[] primaryKeyPositions;
+
+	private final String insertSql;
+	private final String updateSql;
+	private final String deleteSql;
+
+	public CrudStatements(EntityMapper<T, ?> entityMapper, SqlDialect dialect) {
+		this.entityMapper = entityMapper;
+		this.dialect = dialect;
+		this.mapperAttributes = entityMapper.getAttributes();
+		this.attributes = Collections.unmodifiableList(new ArrayList<>(mapperAttributes));
+		this.attributeNames = Collections.unmodifiableList(attributes.stream().map(a -> a.getName()).collect(Collectors.toList()));
+		List<Attribute<T, ?>> pkAttributes = new ArrayList<>();
+		List<Integer> pkPositions = new ArrayList<>();
+		for (int i = 0; i < attributes.size(); i++) {
+			if (attributes.get(i).isPrimary()) {
+				pkAttributes.add(attributes.get(i));
+				pkPositions.add(i);
+			}
+		}
+		this.primaryAttributes = Collections.unmodifiableList(pkAttributes);
+		this.primaryAttributeNames = Collections.unmodifiableList(pkAttributes.stream().map(a -> a.getName()).collect(Collectors.toList()));
+		this.primaryKeyPositions = pkPositions.stream().mapToInt(Integer::intValue).toArray();
+
+		String tableName = entityMapper.getTableNameWithDb();
+		String pkWhereClause = primaryAttributes.isEmpty() ? "" :
+			" WHERE " + CollectionFuns.join(primaryAttributes.stream().map(a -> a.getNameFull() + " = ?").collect(Collectors.toList()), " AND ");
+		this.insertSql = dialect.insert(tableName, attributeNames, 1);
+		this.updateSql = "UPDATE " + tableName + " SET " + CollectionFuns.join(attributeNames.stream().map(n -> n + "=?").collect(Collectors.toList()), ",") + pkWhereClause;
+		this.deleteSql = "DELETE FROM " + tableName + pkWhereClause;
+	}
+
+	/**
+	 * Returns true if these statements were composed for given entity mapper (with its current attributes) and SQL dialect.
+	 * Mappers that register new attributes (e.g. {@link org.xbery.overview.mapper.DynamicEntityMapper}) return new list
+	 * of attributes, so the statements are composed again.
+	 */
+	public boolean isComposedFor(EntityMapper<?, ?> entityMapper, SqlDialect dialect) {
+		if (this.entityMapper != entityMapper || this.dialect != dialect) {
+			return false;
+		}
+		List<?> currentAttributes = entityMapper.getAttributes();
+		// list with the same attributes is accepted for mappers that create new list for each call
+		return currentAttributes == mapperAttributes || attributes.equals(currentAttributes);
+	}
+
+	public List<Attribute<T, ?>> getAttributes() {
+		return attributes;
+	}
+
+	public List<String> getAttributeNames() {
+		return attributeNames;
+	}
+
+	public List<Attribute<T, ?>> getPrimaryAttributes() {
+		return primaryAttributes;
+	}
+
+	public List<String> getPrimaryAttributeNames() {
+		return primaryAttributeNames;
+	}
+
+	/**
+	 * INSERT command with placeholders for values of all attributes.
+	 */
+	public String getInsertSql() {
+		return insertSql;
+	}
+
+	/**
+	 * UPDATE command with placeholders for values of all attributes followed by placeholders for primary key values.
+	 */
+	public String getUpdateSql() {
+		return updateSql;
+	}
+
+	/**
+	 * DELETE command with placeholders for primary key values.
+	 */
+	public String getDeleteSql() {
+		return deleteSql;
+	}
+
+	/**
+	 * Extracts values of all attributes from given entity.
+	 * @param entity
+	 * @return values in order of attributes
+	 */
+	public List<Object> getAttributeValues(T entity) {
+		List<Object> values = new ArrayList<>(attributes.size() + primaryKeyPositions.length);
+		for (Attribute<T, ?> attribute : attributes) {
+			values.add(attribute.getValue(entity));
+		}
+		return values;
+	}
+
+	/**
+	 * Returns parameters of UPDATE command: given values of all attributes followed by values of primary key attributes.
+	 * @param attributeValues values in order of attributes
+	 * @return parameters of UPDATE command
+	 */
+	public List<Object> getUpdateParameters(List<Object> attributeValues) {
+		List<Object> parameters = new ArrayList<>(attributeValues.size() + primaryKeyPositions.length);
+		parameters.addAll(attributeValues);
+		for (int position : primaryKeyPositions) {
+			parameters.add(attributeValues.get(position));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns true if the entity has primary key composed of one attribute, so the key can be bound to
+	 * {@link #getDeleteSql()} using {@link #getPrimaryKeyParameters(Object)}. Composite keys are matched
+	 * using filter conditions of the entity mapper.
+	 */
+	public boolean isSinglePrimaryKey() {
+		return primaryAttributes.size() == 1;
+	}
+
+	/**
+	 * Returns parameters of DELETE command for given single-attribute primary key, see {@link #isSinglePrimaryKey()}.
+	 * @param id value of primary key
+	 * @return values of primary key attributes
+	 */
+	public <K> List<Object> getPrimaryKeyParameters(K id) {
+		if (!isSinglePrimaryKey()) {
+			throw new IllegalStateException("Primary key of " + entityMapper.getTableName() + " is not composed of one attribute");
+		}
+		return CollectionFuns.<Object>singleValueList(id);
+	}
+}
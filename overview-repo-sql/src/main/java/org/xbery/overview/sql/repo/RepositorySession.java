@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.sql.repo;
+
+import org.xbery.overview.repo.RepositoryException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Unit of work that shares one JDBC connection (and transaction) among calls of all {@link AbstractSqlRepository repositories}
+ * using the same {@link DataSource}. While the session is open, it is bound to the thread that opened it, repositories called
+ * from this thread use its connection and do not commit their operations. Changes are committed by {@link #commit()},
+ * uncommitted changes are rolled back when the session is closed.
+ * <p>
+ * The binding is scoped: it is created when the session is opened (or when a work is executed by {@link #call(Supplier)})
+ * and removed when it is closed (or the work ends), connections are never cached per thread. So sessions can be used also
+ * with virtual or pooled threads. Session can be used by one thread at a time; to continue the unit of work in another thread,
+ * execute the work using {@link #call(Supplier)} or {@link #run(Runnable)}.
+ * <p>
+ * Session opened while another session for the same data source is bound to the thread participates in the outer session:
+ * its commit and close have no effect, its rollback marks the outer session as rollback-only.
+ *
+ * <pre>
+ * try (RepositorySession session = RepositorySession.open(dataSource)) {
+ *     Optional&lt;Voucher&gt; voucher = voucherRepository.findById(code);
+ *     ...
+ *     voucherRepository.update(updatedVoucher);
+ *     session.commit();
+ * }
+ * </pre>
+ * @author Radek Beran
+ */
+public final class RepositorySession implements AutoCloseable {
+
+	/** Sessions bound to current thread, by their data sources. */
+	private static final ThreadLocal<Map<DataSource, RepositorySession>> boundSessions = new ThreadLocal<>();
+
+	private final DataSource dataSource;
+	private final Connection connection;
+	private final boolean originalAutoCommit;
+	/** Outer session this session participates in, or null if this session owns the connection. */
+	private final RepositorySession outerSession;
+	private boolean rollbackOnly;
+	private boolean closed;
+
+	private RepositorySession(DataSource dataSource, Connection connection, boolean originalAutoCommit, RepositorySession outerSession) {
+		this.dataSource = dataSource;
+		this.connection = connection;
+		this.originalAutoCommit = originalAutoCommit;
+		this.outerSession = outerSession;
+	}
+
+	/**
+	 * Opens new session for given data source and binds it to current thread.
+	 * @param dataSource data source
+	 * @return opened session that should be closed after use
+	 */
+	public static RepositorySession open(DataSource dataSource) {
+		RepositorySession current = current(dataSource).orElse(null);
+		if (current != null) {
+			return new RepositorySession(dataSource, current.connection, false, current);
+		}
+		Connection connection = null;
+		try {
+			connection = dataSource.getConnection();
+			boolean autoCommit = connection.getAutoCommit();
+			if (autoCommit) {
+				connection.setAutoCommit(false);
+			}
+			RepositorySession session = new RepositorySession(dataSource, connection, autoCommit, null);
+			session.bind();
+			return session;
+		} catch (SQLException ex) {
+			if (connection != null) {
+				try {
+					connection.close();
+				} catch (SQLException closeEx) {
+					ex.addSuppressed(closeEx);
+				}
+			}
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Executes given work in a session for given data source. Session is committed if the work succeeds, otherwise it is rolled back.
+	 * @param dataSource data source
+	 * @param work work calling repositories
+	 * @param <R> type of result
+	 * @return result of the work
+	 */
+	public static <R> R inSession(DataSource dataSource, Supplier<R> work) {
+		try (RepositorySession session = open(dataSource)) {
+			R result = work.get();
+			session.commit();
+			return result;
+		}
+	}
+
+	/**
+	 * Executes given work in a session for given data source. Session is committed if the work succeeds, otherwise it is rolled back.
+	 * @param dataSource data source
+	 * @param work work calling repositories
+	 */
+	public static void inSession(DataSource dataSource, Runnable work) {
+		inSession(dataSource, () -> {
+			work.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Returns session for given data source bound to current thread.
+	 * @param dataSource data source
+	 * @return bound session, or empty if there is no open session for given data source in current thread
+	 */
+	public static Optional<RepositorySession> current(DataSource dataSource) {
+		Map<DataSource, RepositorySession> sessions = boundSessions.get();
+		return sessions != null ? Optional.ofNullable(sessions.get(dataSource)) : Optional.empty();
+	}
+
+	/**
+	 * Executes given work with this session bound to current thread (e.g. to continue the unit of work in another thread).
+	 * Previous binding of current thread is restored after the work.
+	 * @param work work calling repositories
+	 * @param <R> type of result
+	 * @return result of the work
+	 */
+	public <R> R call(Supplier<R> work) {
+		checkOpen();
+		RepositorySession owner = getOwner();
+		RepositorySession previous = current(dataSource).orElse(null);
+		owner.bind();
+		try {
+			return work.get();
+		} finally {
+			if (previous != null) {
+				previous.bind();
+			} else {
+				owner.unbind();
+			}
+		}
+	}
+
+	/**
+	 * Executes given work with this session bound to current thread, see {@link #call(Supplier)}.
+	 * @param work work calling repositories
+	 */
+	public void run(Runnable work) {
+		call(() -> {
+			work.run();
+			return null;
+		});
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * Connection shared by repositories within this session. It should not be committed or closed directly.
+	 * @return connection
+	 */
+	public Connection getConnection() {
+		checkOpen();
+		return connection;
+	}
+
+	/**
+	 * Commits changes made within this session. Session can be used also after the commit.
+	 * Commit of a session participating in an outer session has no effect.
+	 */
+	public void commit() {
+		checkOpen();
+		if (outerSession != null) {
+			return;
+		}
+		try {
+			if (rollbackOnly) {
+				connection.rollback();
+				rollbackOnly = false;
+				throw new RepositoryException("Session was marked as rollback-only, changes were rolled back");
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Rolls back changes made within this session. Session participating in an outer session marks the outer session as rollback-only.
+	 */
+	public void rollback() {
+		checkOpen();
+		if (outerSession != null) {
+			outerSession.setRollbackOnly();
+			return;
+		}
+		try {
+			connection.rollback();
+			rollbackOnly = false;
+		} catch (SQLException ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Marks this session so its changes are rolled back instead of committed.
+	 */
+	public void setRollbackOnly() {
+		getOwner().rollbackOnly = true;
+	}
+
+	public boolean isRollbackOnly() {
+		return getOwner().rollbackOnly;
+	}
+
+	/**
+	 * Rolls back uncommitted changes, releases the connection and unbinds the session from current thread.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (outerSession != null) {
+			return;
+		}
+		unbind();
+		try {
+			connection.rollback();
+			if (originalAutoCommit) {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException ex) {
+			throw new RepositoryException(ex.getMessage(), ex);
+		} finally {
+			try {
+				connection.close();
+			} catch (SQLException ex) {
+				throw new RepositoryException(ex.getMessage(), ex);
+			}
+		}
+	}
+
+	private RepositorySession getOwner() {
+		return outerSession != null ? outerSession : this;
+	}
+
+	private void checkOpen() {
+		if (closed || getOwner().closed) {
+			throw new IllegalStateException("Repository session is already closed");
+		}
+	}
+
+	private void bind() {
+		Map<DataSource, RepositorySession> sessions = boundSessions.get();
+		if (sessions == null) {
+			sessions = new HashMap<>();
+			boundSessions.set(sessions);
+		}
+		sessions.put(dataSource, this);
+	}
+
+	private void unbind() {
+		Map<DataSource, RepositorySession> sessions = boundSessions.get();
+		if (sessions != null && sessions.get(dataSource) == this) {
+			sessions.remove(dataSource);
+			if (sessions.isEmpty()) {
+				// Nothing is left in the thread (e.g. pooled or virtual thread)
+				boundSessions.remove();
+			}
+		}
+	}
+}
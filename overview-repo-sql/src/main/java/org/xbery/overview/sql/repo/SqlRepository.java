@@ -17,6 +17,7 @@
 package org.xbery.overview.sql.repo;
 
 import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.sql.dialect.SqlDialect;
 
 import javax.sql.DataSource;
 
@@ -33,9 +34,16 @@ public class SqlRepository<T, K, F> extends AbstractSqlRepository<T, K, F> {
 
     private final EntityMapper<T, F> entityMapper;
 
-    public SqlRepository(DataSource dataSource, EntityMapper<T, F> entityMapper) {
+    private final SqlDialect dialect;
+
+    public SqlRepository(DataSource dataSource, EntityMapper<T, F> entityMapper, SqlDialect dialect) {
         this.dataSource = dataSource;
         this.entityMapper = entityMapper;
+        this.dialect = dialect;
+    }
+
+    public SqlRepository(DataSource dataSource, EntityMapper<T, F> entityMapper) {
+        this(dataSource, entityMapper, null);
     }
 
     @Override
@@ -43,6 +51,11 @@ public class SqlRepository<T, K, F> extends AbstractSqlRepository<T, K, F> {
         return dataSource;
     }
 
+    @Override
+    protected SqlDialect getDialect() {
+        return dialect != null ? dialect : super.getDialect();
+    }
+
     @Override
     public EntityMapper<T, F> getEntityMapper() {
         return entityMapper;
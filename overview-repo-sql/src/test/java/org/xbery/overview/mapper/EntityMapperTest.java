@@ -1,9 +1,16 @@
 package org.xbery.overview.mapper;
 
+import org.xbery.overview.domain.Voucher;
 import org.xbery.overview.sql.repo.VoucherMapper;
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
 
 /**
  * @author Radek Beran
@@ -15,6 +22,37 @@ public class EntityMapperTest {
         assertEquals("voucher", createEntityMapper().getTableNameWithDb());
     }
 
+    @Test
+    public void buildEntityUsingRowDecoder() {
+        VoucherMapper mapper = createEntityMapper();
+        Map<String, Object> row = new HashMap<>();
+        row.put("voucher_code", "RD01");
+        row.put("voucher_discount_price", new BigDecimal("100"));
+        row.put("voucher_invoice_note", "Note");
+
+        Voucher voucher = mapper.buildEntity(new MapAttributeSource(row), mapper.getAliasPrefix());
+        assertEquals("RD01", voucher.getCode());
+        assertEquals(new BigDecimal("100"), voucher.getDiscountPrice());
+        assertEquals("Note", voucher.getInvoiceNote());
+        assertNull("Entity without primary key is not built", mapper.buildEntity(new MapAttributeSource(new HashMap<>()), mapper.getAliasPrefix()));
+        assertSame("Row decoder is compiled once for alias prefix", mapper.getRowDecoder(mapper.getAliasPrefix()), mapper.getRowDecoder(mapper.getAliasPrefix()));
+        assertEquals(AttributeType.BIG_DECIMAL, mapper.discount_price.getAttributeType());
+    }
+
+    @Test
+    public void derivedMetadataAreCachedUntilAttributeIsAdded() {
+        VoucherMapper mapper = new VoucherMapperWithDb();
+        List<Attribute<Voucher, ?>> attributes = mapper.getAttributes();
+        assertSame(attributes, mapper.getAttributes());
+        assertEquals(Arrays.asList("code"), mapper.getPrimaryAttributeNames());
+        assertTrue(mapper.getAttributeSelection().startsWith("code, creation_time, discount_price"));
+
+        mapper.add(Attr.ofString(Voucher.class, "extra_note").get(e -> null).set((e, a) -> {}));
+        assertEquals(attributes.size() + 1, mapper.getAttributes().size());
+        assertEquals("extra_note", mapper.getAttributeNames().get(attributes.size()));
+        assertTrue(mapper.getAttributeSelection().endsWith(", extra_note"));
+    }
+
     public VoucherMapper createEntityMapper() {
         return VoucherMapper.getInstance();
     }
@@ -0,0 +1,174 @@
+package org.xbery.overview.mapper.annotation;
+
+import org.xbery.overview.VoucherTestDb;
+import org.xbery.overview.mapper.AttributeType;
+import org.xbery.overview.mapper.MapAttributeSource;
+import org.xbery.overview.sql.dialect.H2Dialect;
+import org.xbery.overview.sql.repo.SqlRepository;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Radek Beran
+ */
+public class AnnotatedEntityMapperTest {
+
+    @Test
+    public void createAndFindAnnotatedEntity() {
+        AnnotatedEntityMapper<CustomerRecord, Object> mapper = AnnotatedEntityMapper.of(CustomerRecord.class);
+        assertEquals("voucher_customer", mapper.getTableName());
+        assertEquals(Arrays.asList("id", "creation_time", "email", "import_file_name"), mapper.getAttributeNames());
+        assertEquals(Arrays.asList("id"), mapper.getPrimaryAttributeNames());
+
+        SqlRepository<CustomerRecord, Integer, Object> repo = new SqlRepository<>(new VoucherTestDb().createDataSource(), mapper, new H2Dialect());
+        CustomerRecord customer = new CustomerRecord();
+        customer.setCreationTime(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        customer.setEmail("annotated@example.com");
+        customer.setImportFileName("import.csv");
+        try {
+            CustomerRecord created = repo.create(customer, true);
+            assertNotNull(created.getId());
+
+            CustomerRecord found = repo.findById(created.getId()).get();
+            assertEquals(customer.getCreationTime(), found.getCreationTime());
+            assertEquals("annotated@example.com", found.getEmail());
+            assertEquals("import.csv", found.getImportFileName());
+        } finally {
+            repo.deleteByFilter(new Object());
+        }
+    }
+
+    @Test
+    public void buildEntityWithPrimitiveAttributes() {
+        AnnotatedEntityMapper<Measurement, Object> mapper = AnnotatedEntityMapper.of(Measurement.class);
+        assertEquals("measurement_log", mapper.getTableName());
+        assertEquals("stats", mapper.getDbName());
+        assertEquals(AttributeType.LONG, mapper.getAttribute("measured_count", Long.class).getAttributeType());
+
+        Map<String, Object> row = new HashMap<>();
+        row.put("code", "M1");
+        row.put("measured_count", Long.valueOf(42));
+        row.put("ratio", Double.valueOf(0.25));
+        row.put("valid", Boolean.TRUE);
+        row.put("level", Integer.valueOf(3));
+        Measurement measurement = mapper.buildEntity(new MapAttributeSource(row));
+        assertEquals("M1", measurement.getCode());
+        assertEquals(42L, measurement.getMeasuredCount());
+        assertEquals(0.25, measurement.getRatio(), 0.0);
+        assertTrue(measurement.isValid());
+        assertEquals(3, measurement.getLevel());
+        assertEquals(Arrays.asList("M1", 42L, 0.25, true, 3), mapper.getAttributeValues(measurement));
+
+        row.remove("valid");
+        row.remove("level");
+        measurement = mapper.buildEntity(new MapAttributeSource(row));
+        assertFalse("Missing value is not set to primitive attribute", measurement.isValid());
+        assertEquals(0, measurement.getLevel());
+    }
+
+    @Table(name = "voucher_customer")
+    public static class CustomerRecord {
+        @Column(primary = true)
+        private Integer id;
+        @Column
+        private Instant creationTime;
+        @Column(maxLength = 100)
+        private String email;
+        @Column
+        private String importFileName;
+        private String notMapped;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public Instant getCreationTime() {
+            return creationTime;
+        }
+
+        public void setCreationTime(Instant creationTime) {
+            this.creationTime = creationTime;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getImportFileName() {
+            return importFileName;
+        }
+
+        public void setImportFileName(String importFileName) {
+            this.importFileName = importFileName;
+        }
+    }
+
+    @Table(name = "measurement_log", db = "stats")
+    public static class Measurement {
+        @Column(primary = true)
+        private String code;
+        @Column(name = "measured_count")
+        private long measuredCount;
+        @Column
+        private double ratio;
+        @Column
+        private boolean valid;
+        @Column
+        private int level;
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public long getMeasuredCount() {
+            return measuredCount;
+        }
+
+        public void setMeasuredCount(long measuredCount) {
+            this.measuredCount = measuredCount;
+        }
+
+        public double getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(double ratio) {
+            this.ratio = ratio;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public void setValid(boolean valid) {
+            this.valid = valid;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbery.overview.repo.cache;
+
+import org.junit.Test;
+import org.xbery.overview.VoucherTestDb;
+import org.xbery.overview.common.Pair;
+import org.xbery.overview.data.CustomerTestData;
+import org.xbery.overview.domain.Customer;
+import org.xbery.overview.domain.CustomerFilter;
+import org.xbery.overview.repo.inmemory.EntityMapperInMemoryRepository;
+import org.xbery.overview.sql.repo.CustomerMapper;
+import org.xbery.overview.sql.repo.CustomerRepositoryImpl;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CachingRepository}.
+ * @author Radek Beran
+ */
+public class CachingRepositoryTest {
+
+	private final AtomicInteger loadCount = new AtomicInteger();
+
+	@Test
+	public void findByIdFromCache() {
+		CachingRepository<Customer, Integer, CustomerFilter> repo = new CachingRepository<>(createRepository(6), 4);
+		assertEquals("c1@example.com", repo.findById(1).get().getEmail());
+		assertEquals("c1@example.com", repo.findById(1).get().getEmail());
+		assertFalse(repo.findById(10).isPresent());
+		assertEquals(2, loadCount.get());
+		assertEquals(1, repo.getStats().getHitCount());
+		assertEquals(2, repo.getStats().getMissCount());
+
+		// Updated and deleted entities are invalidated
+		Customer updated = createCustomer(1);
+		updated.setEmail("updated@example.com");
+		repo.update(updated);
+		assertEquals("updated@example.com", repo.findById(1).get().getEmail());
+		repo.update(1, Collections.singletonList(new Pair<>(CustomerMapper.getInstance().email, "attr@example.com")));
+		assertEquals("attr@example.com", repo.findById(1).get().getEmail());
+		assertTrue(repo.delete(1));
+		assertFalse(repo.findById(1).isPresent());
+		assertEquals(5, loadCount.get());
+
+		// Least recently used entities are evicted
+		assertEquals(Arrays.asList(2, 3, 4, 5), repo.findByIds(Arrays.asList(2, 3, 4, 5, 1)).stream().map(Customer::getId).collect(Collectors.toList()));
+		assertEquals(10, loadCount.get());
+		assertEquals(Arrays.asList(5, 4), repo.findByIds(Arrays.asList(5, 4)).stream().map(Customer::getId).collect(Collectors.toList()));
+		assertEquals(10, loadCount.get());
+		repo.findById(6);
+		assertEquals(1, repo.getStats().getEvictionCount());
+		repo.findById(3);
+		assertEquals(11, loadCount.get());
+		repo.findById(2);
+		assertEquals(12, loadCount.get());
+		assertEquals(4, repo.getStats().getSize());
+
+		CustomerFilter filter = new CustomerFilter();
+		filter.setId(2);
+		assertEquals(1, repo.deleteByFilter(filter));
+		assertEquals(0, repo.getStats().getSize());
+		assertEquals(Optional.empty(), repo.findById(2));
+	}
+
+	@Test
+	public void findByIdsLoadsMissingEntitiesAtOnce() {
+		CustomerTestData testData = new CustomerTestData();
+		CustomerRepositoryImpl sqlRepo = new CustomerRepositoryImpl(new VoucherTestDb().createDataSource()) {
+			@Override
+			public Optional<Customer> findById(Integer id) {
+				loadCount.incrementAndGet();
+				return super.findById(id);
+			}
+		};
+		CachingRepository<Customer, Integer, CustomerFilter> repo = new CachingRepository<>(sqlRepo, 10);
+		try {
+			List<Integer> ids = sqlRepo.createAll(Arrays.asList(
+				testData.createCustomer("c1@example.com", "John", "Smith"),
+				testData.createCustomer("c2@example.com", "Vanessa", "Twiggy"),
+				testData.createCustomer("c3@example.com", "Jeremy", "Scott")), true)
+				.stream().map(Customer::getId).collect(Collectors.toList());
+			assertEquals("c2@example.com", repo.findById(ids.get(1)).get().getEmail());
+
+			List<Integer> requestedIds = Arrays.asList(ids.get(2), ids.get(1), ids.get(0));
+			assertEquals(requestedIds, repo.findByIds(requestedIds).stream().map(Customer::getId).collect(Collectors.toList()));
+			assertEquals("Entities that are not cached are loaded at once", 1, loadCount.get());
+			assertEquals(3, repo.getStats().getSize());
+		} finally {
+			sqlRepo.deleteByFilter(new CustomerFilter());
+		}
+	}
+
+	@Test
+	public void expiration() throws InterruptedException {
+		CachingRepository<Customer, Integer, CustomerFilter> repo = new CachingRepository<>(createRepository(1), 10, Duration.ofMillis(1));
+		repo.findById(1);
+		Thread.sleep(5);
+		repo.findById(1);
+		assertEquals(2, loadCount.get());
+		assertEquals(0, repo.getStats().getHitCount());
+	}
+
+	private EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> createRepository(int count) {
+		EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> repo =
+			new EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter>(CustomerMapper.getInstance()) {
+				@Override
+				public Optional<Customer> findById(Integer id) {
+					loadCount.incrementAndGet();
+					return super.findById(id);
+				}
+			};
+		for (int i = 1; i <= count; i++) {
+			repo.create(createCustomer(i), false);
+		}
+		return repo;
+	}
+
+	private Customer createCustomer(int id) {
+		Customer customer = new Customer();
+		customer.setId(id);
+		customer.setEmail("c" + id + "@example.com");
+		return customer;
+	}
+}
@@ -0,0 +1,305 @@
+package org.xbery.overview.repo.inmemory;
+
+import org.xbery.overview.Group;
+import org.xbery.overview.Order;
+import org.xbery.overview.Overview;
+import org.xbery.overview.Pagination;
+import org.xbery.overview.common.Pair;
+import org.xbery.overview.domain.Customer;
+import org.xbery.overview.domain.CustomerFilter;
+import org.xbery.overview.filter.AndCondition;
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.filter.OrCondition;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.EntityMapper;
+import org.xbery.overview.repo.AggType;
+import org.xbery.overview.repo.Conditions;
+import org.xbery.overview.repo.RepositoryException;
+import org.xbery.overview.sql.repo.CustomerMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link InMemoryRepository}.
+ * @author Radek Beran
+ */
+public class InMemoryRepositoryTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final CustomerInMemoryRepository repo = new CustomerInMemoryRepository();
+
+	@Test
+	public void createUpdateDelete() {
+		Customer first = repo.create(createCustomer("first@example.com"), true);
+		Customer second = repo.create(createCustomer("second@example.com"), true);
+		Customer third = repo.create(createCustomer("third@example.com"), true);
+		assertEquals(Integer.valueOf(1), first.getId());
+		assertEquals("second@example.com", repo.findById(second.getId()).get().getEmail());
+
+		try {
+			repo.create(first, false);
+			fail("Duplicate key is not detected");
+		} catch (RepositoryException ex) {
+			// expected
+		}
+
+		Customer updated = createCustomer("updated@example.com");
+		updated.setId(first.getId());
+		assertTrue(repo.update(updated).isPresent());
+		assertEquals("updated@example.com", repo.findById(first.getId()).get().getEmail());
+		assertEquals("Update does not change the order of records",
+			Arrays.asList("updated@example.com", "second@example.com", "third@example.com"), findEmails(Overview.empty()));
+
+		assertTrue(repo.update(third.getId(), c -> { c.setFirstName("Third"); return c; }).isPresent());
+		assertEquals("Third", repo.findById(third.getId()).get().getFirstName());
+		assertEquals(1, repo.update(third.getId(), Arrays.asList(new Pair<>(CustomerMapper.getInstance().email, "third.updated@example.com"))));
+		assertEquals("third.updated@example.com", repo.findById(third.getId()).get().getEmail());
+		repo.update(third.getId(), Arrays.asList(new Pair<>(CustomerMapper.getInstance().email, "third@example.com")));
+
+		assertTrue(repo.delete(second.getId()));
+		assertFalse(repo.delete(second.getId()));
+		assertFalse(repo.findById(second.getId()).isPresent());
+		Customer missing = createCustomer("missing@example.com");
+		missing.setId(100);
+		assertFalse(repo.update(missing).isPresent());
+
+		repo.create(createCustomer("fourth@example.com"), true);
+		assertEquals(Arrays.asList("third@example.com", "fourth@example.com"),
+			findEmails(new Overview<>(null, null, new Pagination(1, 2))));
+	}
+
+	@Test
+	public void filterOrderAndAggregate() {
+		for (int parallelThreshold : new int[] { 10000, 1 }) {
+			AtomicInteger idSequence = new AtomicInteger(1);
+			EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> mapperRepo =
+				new EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter>(CustomerMapper.getInstance(), idSequence::getAndIncrement) {
+					@Override
+					protected int getParallelThreshold() {
+						return parallelThreshold;
+					}
+				};
+			CustomerMapper mapper = CustomerMapper.getInstance();
+			for (String email : Arrays.asList("c@example.com", "a@example.com", "d@example.org", "b@example.com")) {
+				Customer customer = createCustomer(email);
+				customer.setImportFileName(email.endsWith(".com") ? "com.csv" : "org.csv");
+				mapperRepo.create(customer, true);
+			}
+
+			CustomerFilter filter = new CustomerFilter();
+			filter.setImportFileName("com.csv");
+			Overview<CustomerFilter> overview = new Overview<>(filter, Arrays.asList(new Order(mapper.email, true)), new Pagination(1, 5));
+			assertEquals(Arrays.asList("b@example.com", "a@example.com"),
+				mapperRepo.findByOverview(overview).stream().map(Customer::getEmail).collect(Collectors.toList()));
+			Pagination keysetPage = Pagination.firstKeysetPage(2).withKeyset(Arrays.asList("b@example.com"));
+			assertEquals(Arrays.asList("c@example.com", "d@example.org"),
+				mapperRepo.findByOverview(new Overview<>(null, Arrays.asList(new Order(mapper.email)), keysetPage)).stream().map(Customer::getEmail).collect(Collectors.toList()));
+
+			filter.setCustomerIds(Arrays.asList(1, 3, 4));
+			assertEquals(2, mapperRepo.countByFilter(filter, null));
+			assertEquals(Integer.valueOf(4), mapperRepo.aggByFilter(AggType.MAX, Integer.class, mapper.id.getName(), null, null));
+			assertEquals(Long.valueOf(10), mapperRepo.aggByFilter(AggType.SUM, Long.class, mapper.id.getName(), null, null));
+			assertEquals(new BigDecimal("2.5"), mapperRepo.aggByFilter(AggType.AVG, BigDecimal.class, mapper.id.getName(), null, null));
+			assertEquals("a@example.com", mapperRepo.aggByFilter(AggType.MIN, String.class, mapper.email.getName(), null, null));
+			assertEquals("Count of the first group", 3,
+				mapperRepo.countByFilter(new CustomerFilter(), Arrays.asList(new Group(mapper.import_file_name))));
+
+			List<Group> byImportFile = Arrays.asList(new Group(mapper.import_file_name));
+			assertEquals("First record of each group in required order", Arrays.asList("d@example.org", "c@example.com"),
+				mapperRepo.findByOverview(new Overview<>(null, Arrays.asList(new Order(mapper.email, true)), null, byImportFile)).stream().map(Customer::getEmail).collect(Collectors.toList()));
+			Pagination groupKeysetPage = Pagination.firstKeysetPage(5).withKeyset(Arrays.asList("a@example.com"));
+			assertEquals("Keyset is applied to the first records of groups", Arrays.asList("d@example.org"),
+				mapperRepo.findByOverview(new Overview<>(null, Arrays.asList(new Order(mapper.email)), groupKeysetPage, byImportFile)).stream().map(Customer::getEmail).collect(Collectors.toList()));
+
+			assertEquals(2, mapperRepo.deleteByFilter(filter));
+			assertEquals(Arrays.asList(2, 3), mapperRepo.findAll().stream().map(Customer::getId).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void buildConditions() {
+		CustomerMapper mapper = CustomerMapper.getInstance();
+		InMemoryConditionBuilder builder = new InMemoryConditionBuilder();
+		Customer customer = createCustomer("condition@example.com");
+		customer.setId(5);
+
+		assertTrue(builder.<Customer>build(Conditions.contains(mapper.email, "@example")).test(customer));
+		assertTrue(builder.<Customer>build(new OrCondition(Conditions.lt(mapper.id, 3), Conditions.gte(mapper.id, 5))).test(customer));
+		assertFalse(builder.<Customer>build(new AndCondition(Conditions.lt(mapper.id, 10), Conditions.in(mapper.id, Collections.emptyList()))).test(customer));
+		assertTrue(builder.<Customer>build(Conditions.eq(mapper.first_name, null)).test(customer));
+		assertFalse("Comparison with null is not satisfied", builder.<Customer>build(Conditions.gt(mapper.creation_time, Instant.now())).test(customer));
+		@SuppressWarnings("unchecked")
+		Attribute<Customer, Object> id = (Attribute<Customer, Object>)(Attribute<Customer, ?>)mapper.id;
+		assertTrue("Numbers of different classes are equal", builder.<Customer>build(Conditions.in(id, Arrays.<Object>asList(1L, 5L))).test(customer));
+		assertTrue(builder.<Customer>build(Conditions.in(id, Arrays.<Object>asList(new BigDecimal("5.00")))).test(customer));
+		assertFalse(builder.<Customer>build(Conditions.in(id, Arrays.<Object>asList(6L))).test(customer));
+	}
+
+	private List<String> findEmails(Overview<CustomerFilter> overview) {
+		return repo.findByOverview(overview).stream().map(Customer::getEmail).collect(Collectors.toList());
+	}
+
+	@Test
+	public void secondaryIndexes() {
+		AtomicInteger scans = new AtomicInteger();
+		AtomicInteger idSequence = new AtomicInteger(1);
+		EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> mapperRepo =
+			new EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter>(CustomerMapper.getInstance(), idSequence::getAndIncrement) {
+				@Override
+				protected Stream<Customer> stream() {
+					scans.incrementAndGet();
+					return super.stream();
+				}
+			};
+		CustomerMapper mapper = CustomerMapper.getInstance();
+		for (int i = 0; i < 10; i++) {
+			Customer customer = createCustomer(i == 9 ? null : "c" + (i * 7 % 9) + "@example.com");
+			customer.setImportFileName("file" + (i % 5) + ".csv");
+			mapperRepo.create(customer, true);
+		}
+		mapperRepo.createIndex(mapper.import_file_name, IndexType.HASH);
+		mapperRepo.createIndex(mapper.id, IndexType.HASH);
+		mapperRepo.createIndex(mapper.email, IndexType.SORTED);
+
+		CustomerFilter filter = new CustomerFilter();
+		filter.setImportFileName("file1.csv");
+		assertEquals(Arrays.asList(2, 7), mapperRepo.findByOverview(new Overview<>(filter, null, null)).stream().map(Customer::getId).collect(Collectors.toList()));
+		filter.setCustomerIds(Arrays.asList(7, 8));
+		assertEquals(Arrays.asList(7), mapperRepo.findByOverview(new Overview<>(filter, null, null)).stream().map(Customer::getId).collect(Collectors.toList()));
+		assertEquals(0, scans.get());
+
+		// Index is maintained on update and delete
+		mapperRepo.update(7, c -> {
+			c.setImportFileName("file0.csv");
+			return c;
+		});
+		assertEquals(0, mapperRepo.countByFilter(filter, null));
+		CustomerFilter idFilter = new CustomerFilter();
+		idFilter.setId(2);
+		assertEquals(1, mapperRepo.deleteByFilter(idFilter));
+		filter.setCustomerIds(null);
+		filter.setImportFileName("file0.csv");
+		assertEquals(Arrays.asList(1, 6, 7), mapperRepo.findByOverview(new Overview<>(filter, null, null)).stream().map(Customer::getId).collect(Collectors.toList()));
+		assertEquals(0, scans.get());
+
+		// Ordering by attribute with sorted index
+		assertEquals(Arrays.asList("c8@example.com", "c6@example.com", "c5@example.com"),
+			mapperRepo.findByOverview(new Overview<>(null, Arrays.asList(new Order(mapper.email, true)), new Pagination(0, 3))).stream()
+				.map(Customer::getEmail).collect(Collectors.toList()));
+		List<Customer> ordered = mapperRepo.findByOverview(new Overview<>(null, Arrays.asList(new Order(mapper.email)), null));
+		assertEquals(Arrays.asList(10, 1, 5), ordered.subList(0, 3).stream().map(Customer::getId).collect(Collectors.toList()));
+		assertEquals(9, ordered.size());
+		assertEquals(0, scans.get());
+
+		// Range conditions using sorted index
+		SortedAttributeIndex<Customer> emailIndex = new SortedAttributeIndex<>(mapper.email);
+		mapperRepo.getRecords().forEach(c -> emailIndex.add(c, c.getId()));
+		List<Condition> conditions = Arrays.asList(Conditions.eq(mapper.import_file_name, "file0.csv"), Conditions.gte(mapper.email, "c5@example.com"));
+		assertEquals(Arrays.asList(3L, 6L, 7L), InMemoryIndexPlanner.findCandidates(Arrays.asList(emailIndex), conditions, 10));
+		assertEquals(Arrays.asList(6L, 7L), InMemoryIndexPlanner.findCandidates(Arrays.asList(emailIndex),
+			Arrays.asList(Conditions.gt(mapper.email, "c5@example.com")), 10));
+		assertNull("Index is not selective enough", InMemoryIndexPlanner.findCandidates(Arrays.asList(emailIndex),
+			Arrays.asList(Conditions.lt(mapper.email, "c9@example.com")), 5));
+		assertEquals(9, mapperRepo.findByOverview(new Overview<>(new CustomerFilter(), null, null)).size());
+		assertTrue(scans.get() > 0);
+	}
+
+	@Test
+	public void snapshotAndChangeLog() throws IOException {
+		Path snapshotFile = temporaryFolder.getRoot().toPath().resolve("customers.snapshot");
+		Path changeLogFile = temporaryFolder.getRoot().toPath().resolve("customers.log");
+		EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> mapperRepo = createRestoredRepository(snapshotFile, changeLogFile, 0);
+		Instant creationTime = Instant.parse("2018-01-02T10:15:30.123456789Z");
+		for (String email : Arrays.asList("a@example.com", "b@example.com", "c@example.com")) {
+			Customer customer = createCustomer(email);
+			customer.setCreationTime(creationTime);
+			customer.setFirstName(email.startsWith("a") ? null : "Žofie");
+			mapperRepo.create(customer, true);
+		}
+		mapperRepo.writeSnapshot(snapshotFile);
+		mapperRepo.update(2, c -> {
+			c.setLastName("Nová");
+			return c;
+		});
+		assertTrue(mapperRepo.delete(3));
+		mapperRepo.create(createCustomer("d@example.com"), true);
+		mapperRepo.closeChangeLog();
+		// Incomplete entry at the end of change log is ignored
+		Files.write(changeLogFile, new byte[] { 0, 0, 1 }, StandardOpenOption.APPEND);
+
+		mapperRepo = createRestoredRepository(snapshotFile, changeLogFile, 3);
+		assertEquals(Arrays.asList(1, 2, 4), mapperRepo.findAll().stream().map(Customer::getId).collect(Collectors.toList()));
+		Customer customer = mapperRepo.findById(2).get();
+		assertEquals("b@example.com", customer.getEmail());
+		assertEquals("Žofie", customer.getFirstName());
+		assertEquals("Nová", customer.getLastName());
+		assertEquals(creationTime, customer.getCreationTime());
+		assertNull(mapperRepo.findById(1).get().getFirstName());
+
+		// Snapshot includes all changes, change log is emptied
+		mapperRepo.create(createCustomer("e@example.com"), true);
+		mapperRepo.writeSnapshot(snapshotFile);
+		mapperRepo.closeChangeLog();
+		mapperRepo = createRestoredRepository(snapshotFile, changeLogFile, 4);
+		assertEquals(Arrays.asList(1, 2, 4, 5), mapperRepo.findAll().stream().map(Customer::getId).collect(Collectors.toList()));
+		mapperRepo.closeChangeLog();
+	}
+
+	private EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> createRestoredRepository(Path snapshotFile, Path changeLogFile, int expectedCount) {
+		AtomicInteger idSequence = new AtomicInteger(1);
+		EntityMapperInMemoryRepository<Customer, Integer, CustomerFilter> mapperRepo =
+			new EntityMapperInMemoryRepository<>(CustomerMapper.getInstance(), idSequence::getAndIncrement);
+		assertEquals(expectedCount, mapperRepo.restore(snapshotFile, changeLogFile));
+		mapperRepo.getRecords().forEach(c -> idSequence.set(Math.max(idSequence.get(), c.getId() + 1)));
+		return mapperRepo;
+	}
+
+	private Customer createCustomer(String email) {
+		Customer customer = new Customer();
+		customer.setEmail(email);
+		return customer;
+	}
+
+	static class CustomerInMemoryRepository extends InMemoryRepository<Customer, Integer, CustomerFilter> {
+		private final AtomicInteger idSequence = new AtomicInteger(1);
+
+		@Override
+		public EntityMapper<Customer, CustomerFilter> getEntityMapper() {
+			return CustomerMapper.getInstance();
+		}
+
+		@Override
+		protected Customer entityUpdatedWithId(Customer entity, Integer id) {
+			entity.setId(id);
+			return entity;
+		}
+
+		@Override
+		protected Integer getEntityId(Customer entity) {
+			return entity.getId();
+		}
+
+		@Override
+		protected Integer generateId() {
+			return idSequence.getAndIncrement();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.xbery.overview.sql.dialect;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of SQL generated by {@link SqlDialect} implementations.
+ * @author Radek Beran
+ */
+public class SqlDialectTest {
+
+    private static final List<String> ATTRIBUTES = Arrays.asList("code", "price");
+    private static final List<String> KEY_ATTRIBUTES = Arrays.asList("code");
+
+    @Test
+    public void appendPagination() {
+        assertEquals(" LIMIT 10 OFFSET 20", pagination(new MySqlDialect(), 20, 10));
+        assertEquals(" LIMIT 10", pagination(new PostgreSqlDialect(), 0, 10));
+        assertEquals(" LIMIT 10 OFFSET 20", pagination(new H2Dialect(), 20, 10));
+        assertEquals(" OFFSET 20 ROWS FETCH FIRST 10 ROWS ONLY", pagination(new AnsiSqlDialect(), 20, 10));
+    }
+
+    @Test
+    public void containsCondition() {
+        assertEquals("code LIKE CONCAT('%', ?, '%')", new MySqlDialect().containsCondition("code"));
+        assertEquals("code LIKE '%' || ? || '%'", new PostgreSqlDialect().containsCondition("code"));
+    }
+
+    @Test
+    public void insert() {
+        assertEquals("INSERT INTO voucher (code,price) VALUES (?,?),(?,?)", new AnsiSqlDialect().insert("voucher", ATTRIBUTES, 2));
+        assertEquals("INSERT INTO voucher (code,price) VALUES (?,?) RETURNING code",
+            new PostgreSqlDialect().insertReturning(new PostgreSqlDialect().insert("voucher", ATTRIBUTES, 1), KEY_ATTRIBUTES));
+        assertFalse(new MySqlDialect().isReturningSupported());
+        assertFalse("Multi-row insert is opt-in with default dialect", new MySqlDialect().isMultiRowInsertPreferred());
+        assertFalse(new MySqlDialect().isBatchGeneratedKeysSupported());
+    }
+
+    @Test
+    public void upsert() {
+        assertEquals("INSERT INTO voucher (code,price) VALUES (?,?) ON DUPLICATE KEY UPDATE price = VALUES(price)",
+            new MySqlDialect().upsert("voucher", ATTRIBUTES, KEY_ATTRIBUTES));
+        assertEquals("INSERT INTO voucher (code,price) VALUES (?,?) ON CONFLICT (code) DO UPDATE SET price = EXCLUDED.price",
+            new PostgreSqlDialect().upsert("voucher", ATTRIBUTES, KEY_ATTRIBUTES));
+        assertEquals("MERGE INTO voucher (code,price) KEY (code) VALUES (?,?)",
+            new H2Dialect().upsert("voucher", ATTRIBUTES, KEY_ATTRIBUTES));
+        assertEquals("MERGE INTO voucher t USING (VALUES (?,?)) s (code,price) ON (t.code = s.code) WHEN MATCHED THEN UPDATE SET price = s.price "
+                + "WHEN NOT MATCHED THEN INSERT (code,price) VALUES (s.code,s.price)",
+            new AnsiSqlDialect().upsert("voucher", ATTRIBUTES, KEY_ATTRIBUTES));
+    }
+
+    private String pagination(SqlDialect dialect, int offset, int limit) {
+        StringBuilder sqlBuilder = new StringBuilder();
+        dialect.appendPagination(sqlBuilder, offset, limit);
+        return sqlBuilder.toString();
+    }
+}
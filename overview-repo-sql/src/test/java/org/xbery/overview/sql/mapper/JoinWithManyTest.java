@@ -2,6 +2,7 @@ package org.xbery.overview.sql.mapper;
 
 import org.xbery.overview.Order;
 import org.xbery.overview.Overview;
+import org.xbery.overview.Pagination;
 import org.xbery.overview.VoucherTestDb;
 import org.xbery.overview.data.CustomerTestData;
 import org.xbery.overview.data.SupplyPointTestData;
@@ -9,15 +10,24 @@ import org.xbery.overview.domain.Customer;
 import org.xbery.overview.domain.CustomerFilter;
 import org.xbery.overview.domain.SupplyPoint;
 import org.xbery.overview.domain.SupplyPointFilter;
+import org.xbery.overview.mapper.Decompose;
+import org.xbery.overview.mapper.annotation.AnnotatedEntityMapper;
+import org.xbery.overview.mapper.annotation.Column;
+import org.xbery.overview.mapper.annotation.Table;
 import org.junit.Test;
 import org.xbery.overview.sql.repo.*;
 
 import javax.sql.DataSource;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Radek Beran
@@ -48,43 +58,164 @@ public class JoinWithManyTest {
 
             // Find all customers joined with supply points
             List<Customer> customersFound = repo.findWithSupplyPoints(Overview.fromOrdering(new Order(CustomerMapper.getInstance().id)));
-            assertEquals(customersCreated.size(), customersFound.size());
-            for (int i = 0; i < customersFound.size(); i++) {
-                Customer customerCreated = customersCreated.get(i);
-                Customer customerFound = customersFound.get(i);
-
-                assertEquals(customerCreated.getEmail(), customerFound.getEmail());
-                assertEquals(customerCreated.getFirstName(), customerFound.getFirstName());
-                assertEquals(customerCreated.getLastName(), customerFound.getLastName());
-                assertNotNull("Supply points are set", customerFound.getSupplyPoints());
+            assertCustomersWithSupplyPoints(customersCreated, customersFound);
+        } finally {
+            // TODO RBe: Clear VoucherTestDb
+            // Delete all records after test
+            spRepo.deleteByFilter(new SupplyPointFilter());
+            repo.deleteByFilter(new CustomerFilter());
+        }
+    }
+
+    @Test
+    public void findCustomersLeftJoinManySupplyPointsPaged() {
+        CustomerRepository repo = createCustomerRepository();
+        SupplyPointRepository spRepo = createSupplyPointRepository();
+
+        try {
+            List<Customer> customersCreated = repo.createAll(createCustomers(), true);
+            spRepo.createAll(createSupplyPoints(customersCreated), true);
+
+            // Page limit is applied to customers, not to joined supply points
+            Overview<CustomerFilter> overview = Overview.<CustomerFilter>fromOrdering(new Order(CustomerMapper.getInstance().id)).withPagination(new Pagination(1, 1));
+            List<Customer> customersFound = repo.findWithSupplyPoints(overview);
+            assertEquals(1, customersFound.size());
+            Customer customerFound = customersFound.get(0);
+            assertEquals(customersCreated.get(1).getEmail(), customerFound.getEmail());
+            assertEquals(3, customerFound.getSupplyPoints().size());
+            assertEquals("B1", customerFound.getSupplyPoints().get(0).getCode());
+            assertEquals("B2", customerFound.getSupplyPoints().get(1).getCode());
+            assertEquals("B3", customerFound.getSupplyPoints().get(2).getCode());
+        } finally {
+            spRepo.deleteByFilter(new SupplyPointFilter());
+            repo.deleteByFilter(new CustomerFilter());
+        }
+    }
+
+    @Test
+    public void findCustomersLeftJoinManySupplyPointsInSeparateQueries() {
+        CustomerRepository repo = new CustomerRepositoryImpl(dataSource) {
+            @Override
+            protected boolean isJoinWithManyInSingleQuery() {
+                return false;
+            }
+        };
+        SupplyPointRepository spRepo = createSupplyPointRepository();
+
+        try {
+            List<Customer> customersCreated = repo.createAll(createCustomers(), true);
+            spRepo.createAll(createSupplyPoints(customersCreated), true);
+
+            List<Customer> customersFound = repo.findWithSupplyPoints(Overview.fromOrdering(new Order(CustomerMapper.getInstance().id)));
+            assertCustomersWithSupplyPoints(customersCreated, customersFound);
+        } finally {
+            spRepo.deleteByFilter(new SupplyPointFilter());
+            repo.deleteByFilter(new CustomerFilter());
+        }
+    }
+
+    @Test
+    public void findCustomersLeftJoinManySupplyPointsInParallelChunks() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CustomerRepository repo = new CustomerRepositoryImpl(dataSource) {
+            @Override
+            protected boolean isJoinWithManyInSingleQuery() {
+                return false;
+            }
+
+            @Override
+            protected int getJoinWithManyChunkSize() {
+                return 2;
+            }
+
+            @Override
+            protected Executor getJoinWithManyExecutor() {
+                return executor;
             }
+        };
+        SupplyPointRepository spRepo = createSupplyPointRepository();
+
+        try {
+            List<Customer> customersCreated = repo.createAll(createCustomers(), true);
+            spRepo.createAll(createSupplyPoints(customersCreated), true);
 
+            List<Customer> customersFound = repo.findWithSupplyPoints(Overview.fromOrdering(new Order(CustomerMapper.getInstance().id)));
+            assertCustomersWithSupplyPoints(customersCreated, customersFound);
+        } finally {
+            executor.shutdown();
+            spRepo.deleteByFilter(new SupplyPointFilter());
+            repo.deleteByFilter(new CustomerFilter());
+        }
+    }
+
+    @Test
+    public void findCustomersLeftJoinManyWithoutMatchingPrimitivePrimaryKey() {
+        CustomerRepositoryImpl repo = new CustomerRepositoryImpl(dataSource);
+        SupplyPointRepository spRepo = createSupplyPointRepository();
+        AnnotatedEntityMapper<SupplyPointRecord, Object> recordMapper = AnnotatedEntityMapper.of(SupplyPointRecord.class);
+        JoinEntityMapper<Customer, CustomerFilter, SupplyPointRecord, Object, Customer, CustomerFilter, Integer> joinMapper =
+            CustomerMapper.getInstance().leftJoin(recordMapper)
+                .on(CustomerMapper.getInstance().id, recordMapper.getAttribute("customer_id", Integer.class))
+                .composeEntityWithMany((Customer customer, List<SupplyPointRecord> records) -> {
+                    customer.setSupplyPoints(records.stream().map(r -> {
+                        SupplyPoint supplyPoint = new SupplyPoint();
+                        supplyPoint.setId(Integer.valueOf(r.getId()));
+                        supplyPoint.setCode(r.getCode());
+                        return supplyPoint;
+                    }).collect(Collectors.toList()));
+                    return customer;
+                })
+                .decomposeFilter(Decompose.filterToIdenticalAnd(new Object()))
+                .build();
+
+        try {
+            List<Customer> customersCreated = repo.createAll(createCustomers(), true);
+            // Last customer has no supply point, so the joined columns of its row are NULL
+            spRepo.createAll(createSupplyPoints(customersCreated).stream().filter(sp -> !sp.getCode().equals("C1")).collect(Collectors.toList()), true);
+
+            List<Customer> customersFound = repo.findByOverview(Overview.fromOrdering(new Order(CustomerMapper.getInstance().id)), joinMapper);
+            assertEquals(3, customersFound.size());
             assertEquals(2, customersFound.get(0).getSupplyPoints().size());
             assertEquals(3, customersFound.get(1).getSupplyPoints().size());
-            assertEquals(1, customersFound.get(2).getSupplyPoints().size());
-
-            SupplyPoint a1 = customersFound.get(0).getSupplyPoints().get(0);
-            assertEquals("A1", a1.getCode());
-            SupplyPoint a2 = customersFound.get(0).getSupplyPoints().get(1);
-            assertEquals("A2", a2.getCode());
-
-            SupplyPoint b1 = customersFound.get(1).getSupplyPoints().get(0);
-            assertEquals("B1", b1.getCode());
-            SupplyPoint b2 = customersFound.get(1).getSupplyPoints().get(1);
-            assertEquals("B2", b2.getCode());
-            SupplyPoint b3 = customersFound.get(1).getSupplyPoints().get(2);
-            assertEquals("B3", b3.getCode());
-
-            SupplyPoint c1 = customersFound.get(2).getSupplyPoints().get(0);
-            assertEquals("C1", c1.getCode());
+            assertTrue("No supply point with default primitive id is built for not matched row", customersFound.get(2).getSupplyPoints().isEmpty());
         } finally {
-            // TODO RBe: Clear VoucherTestDb
-            // Delete all records after test
             spRepo.deleteByFilter(new SupplyPointFilter());
             repo.deleteByFilter(new CustomerFilter());
         }
     }
 
+    protected void assertCustomersWithSupplyPoints(List<Customer> customersCreated, List<Customer> customersFound) {
+        assertEquals(customersCreated.size(), customersFound.size());
+        for (int i = 0; i < customersFound.size(); i++) {
+            Customer customerCreated = customersCreated.get(i);
+            Customer customerFound = customersFound.get(i);
+
+            assertEquals(customerCreated.getEmail(), customerFound.getEmail());
+            assertEquals(customerCreated.getFirstName(), customerFound.getFirstName());
+            assertEquals(customerCreated.getLastName(), customerFound.getLastName());
+            assertNotNull("Supply points are set", customerFound.getSupplyPoints());
+        }
+
+        assertEquals(2, customersFound.get(0).getSupplyPoints().size());
+        assertEquals(3, customersFound.get(1).getSupplyPoints().size());
+        assertEquals(1, customersFound.get(2).getSupplyPoints().size());
+
+        SupplyPoint a1 = customersFound.get(0).getSupplyPoints().get(0);
+        assertEquals("A1", a1.getCode());
+        SupplyPoint a2 = customersFound.get(0).getSupplyPoints().get(1);
+        assertEquals("A2", a2.getCode());
+
+        SupplyPoint b1 = customersFound.get(1).getSupplyPoints().get(0);
+        assertEquals("B1", b1.getCode());
+        SupplyPoint b2 = customersFound.get(1).getSupplyPoints().get(1);
+        assertEquals("B2", b2.getCode());
+        SupplyPoint b3 = customersFound.get(1).getSupplyPoints().get(2);
+        assertEquals("B3", b3.getCode());
+
+        SupplyPoint c1 = customersFound.get(2).getSupplyPoints().get(0);
+        assertEquals("C1", c1.getCode());
+    }
+
     protected CustomerRepository createCustomerRepository() {
         return new CustomerRepositoryImpl(dataSource);
     }
@@ -130,4 +261,38 @@ public class JoinWithManyTest {
 
         return list;
     }
+
+    @Table(name = "voucher_supply_point")
+    public static class SupplyPointRecord {
+        @Column(primary = true)
+        private int id;
+        @Column
+        private String code;
+        @Column
+        private int customerId;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        public void setCustomerId(int customerId) {
+            this.customerId = customerId;
+        }
+    }
 }
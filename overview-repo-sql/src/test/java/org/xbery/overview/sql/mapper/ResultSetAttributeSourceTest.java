@@ -0,0 +1,64 @@
+package org.xbery.overview.sql.mapper;
+
+import org.xbery.overview.VoucherTestDb;
+import org.xbery.overview.mapper.Attr;
+import org.xbery.overview.mapper.Attribute;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Radek Beran
+ */
+public class ResultSetAttributeSourceTest {
+
+    private final DataSource dataSource = new VoucherTestDb().createDataSource();
+
+    @Test
+    public void getNullAndPrimitiveValues() throws SQLException {
+        Attribute<Counter, Integer> count = build(Attr.ofInteger(Counter.class, "cnt").get(c -> c.count).setInt((c, v) -> c.count = v));
+        Attribute<Counter, Long> total = build(Attr.ofLong(Counter.class, "total").get(c -> c.total).setLong((c, v) -> c.total = v));
+        Attribute<Counter, Double> ratio = build(Attr.ofDouble(Counter.class, "ratio").get(c -> c.ratio).setDouble((c, v) -> c.ratio = v));
+
+        try (Connection conn = dataSource.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 5 AS cnt, CAST(NULL AS BIGINT) AS total, 0.5 AS ratio, CAST(NULL AS INT) AS empty_int, " +
+                 "CAST(NULL AS BOOLEAN) AS empty_bool")) {
+            assertTrue(rs.next());
+            ResultSetAttributeSource as = new ResultSetAttributeSource(rs);
+            assertEquals(Integer.valueOf(5), as.get(Integer.class, "CNT"));
+            assertNull("NULL is not read as zero", as.get(Integer.class, "empty_int"));
+            assertNull("NULL is not read as false", as.get(Boolean.class, "empty_bool"));
+            assertNull(as.get(Long.class, "total"));
+
+            Counter counter = new Counter();
+            counter.total = -1;
+            counter = count.entityWithAttribute(counter, as, count.getName());
+            counter = total.entityWithAttribute(counter, as, total.getName());
+            counter = ratio.entityWithAttribute(counter, as, ratio.getName());
+            assertEquals(5, counter.count);
+            assertEquals("NULL value is not set to primitive attribute", -1, counter.total);
+            assertEquals(0.5, counter.ratio, 0.0);
+        }
+    }
+
+    /**
+     * Builds attribute typed by its builder ({@link Attr.Builder#build()} returns raw type).
+     */
+    @SuppressWarnings("unchecked")
+    private static <A> Attribute<Counter, A> build(Attr.Builder<Counter, A> builder) {
+        return (Attribute<Counter, A>)builder.build();
+    }
+
+    static class Counter {
+        int count;
+        long total;
+        double ratio;
+    }
+}
@@ -0,0 +1,56 @@
+package org.xbery.overview.sql.repo;
+
+import org.xbery.overview.data.VoucherTestData;
+import org.xbery.overview.domain.Voucher;
+import org.xbery.overview.mapper.Attr;
+import org.xbery.overview.sql.dialect.H2Dialect;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CrudStatements}.
+ * @author Radek Beran
+ */
+public class CrudStatementsTest {
+
+    @Test
+    public void composeStatements() {
+        VoucherMapper mapper = VoucherMapper.getInstance();
+        H2Dialect dialect = new H2Dialect();
+        CrudStatements<Voucher> statements = new CrudStatements<>(mapper, dialect);
+
+        assertTrue(statements.getInsertSql().startsWith("INSERT INTO voucher (code,creation_time,"));
+        assertTrue(statements.getUpdateSql().startsWith("UPDATE voucher SET code=?,creation_time=?,"));
+        assertTrue(statements.getUpdateSql().endsWith(" WHERE voucher.code = ?"));
+        assertEquals("DELETE FROM voucher WHERE voucher.code = ?", statements.getDeleteSql());
+        assertTrue("Statements are reused for the same dialect instance", statements.isComposedFor(mapper, dialect));
+        assertFalse("Statements are not reused for another dialect instance", statements.isComposedFor(mapper, new H2Dialect()));
+    }
+
+    @Test
+    public void composeStatementsAgainAfterAttributeIsAdded() {
+        VoucherMapper mapper = new VoucherMapper();
+        H2Dialect dialect = new H2Dialect();
+        CrudStatements<Voucher> statements = new CrudStatements<>(mapper, dialect);
+        assertTrue(statements.isComposedFor(mapper, dialect));
+
+        mapper.add(Attr.ofString(Voucher.class, "extra_note").get(e -> null).set((e, a) -> {}));
+        assertFalse("Statements are stale after attribute is added", statements.isComposedFor(mapper, dialect));
+        assertTrue(new CrudStatements<>(mapper, dialect).getInsertSql().contains(",extra_note)"));
+    }
+
+    @Test
+    public void updateParameters() {
+        CrudStatements<Voucher> statements = new CrudStatements<>(VoucherMapper.getInstance(), new H2Dialect());
+        Voucher voucher = new VoucherTestData().createVoucher("CRUD1");
+
+        List<Object> attributeValues = statements.getAttributeValues(voucher);
+        List<Object> parameters = statements.getUpdateParameters(attributeValues);
+        assertEquals(attributeValues.size() + 1, parameters.size());
+        assertEquals("Primary key value is the last parameter", "CRUD1", parameters.get(parameters.size() - 1));
+        assertEquals(1, statements.getPrimaryKeyParameters("CRUD1").size());
+    }
+}
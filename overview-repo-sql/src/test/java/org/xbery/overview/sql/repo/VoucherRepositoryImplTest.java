@@ -17,10 +17,21 @@
 package org.xbery.overview.sql.repo;
 
 
+import org.xbery.overview.Order;
+import org.xbery.overview.Overview;
+import org.xbery.overview.Pagination;
+import org.xbery.overview.ResultsWithOverview;
 import org.xbery.overview.VoucherTestDb;
 import org.xbery.overview.common.Pair;
 import org.xbery.overview.data.VoucherTestData;
 import org.xbery.overview.domain.Voucher;
+import org.xbery.overview.filter.Condition;
+import org.xbery.overview.mapper.Attr;
+import org.xbery.overview.mapper.Attribute;
+import org.xbery.overview.mapper.DynamicEntityMapper;
+import org.xbery.overview.repo.Conditions;
+import org.xbery.overview.sql.dialect.H2Dialect;
+import org.xbery.overview.sql.dialect.SqlDialect;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.junit.After;
@@ -30,8 +41,12 @@ import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -67,6 +82,179 @@ public class VoucherRepositoryImplTest {
 		assertTrue("Created voucher equals voucher to store", EqualsBuilder.reflectionEquals(voucher, voucherCreated));
 	}
 
+	@Test
+	public void dialectIsResolvedOnce() {
+		VoucherRepositoryImpl dialectRepo = new VoucherRepositoryImpl(dataSource) {
+			@Override
+			protected SqlDialect getDialect() {
+				return new H2Dialect();
+			}
+		};
+		assertSame(dialectRepo.getResolvedDialect(), dialectRepo.getResolvedDialect());
+		assertSame(dialectRepo.getConditionBuilder(), dialectRepo.getConditionBuilder());
+		assertSame(dialectRepo.getCrudStatements(), dialectRepo.getCrudStatements());
+		dialectRepo.create(testData.createVoucher("DR01"), false);
+		assertTrue(dialectRepo.delete("DR01"));
+	}
+
+	@Test
+	public void deleteWithCompositeKey() {
+		SqlRepository<Voucher, Pair<String, String>, Object> compositeKeyRepo = new SqlRepository<>(dataSource, new CompositeKeyVoucherMapper(), new H2Dialect());
+		Voucher voucher = testData.createVoucher("CK01");
+		voucher.setReservedBy("cust01");
+		repo.create(voucher, false);
+
+		assertFalse("Voucher with another second part of key is not deleted", compositeKeyRepo.delete(new Pair<>("CK01", "cust02")));
+		assertTrue(compositeKeyRepo.delete(new Pair<>("CK01", "cust01")));
+		assertFalse(repo.findById("CK01").isPresent());
+	}
+
+	@Test
+	public void createAll() {
+		List<Voucher> vouchers = Arrays.asList(testData.createVoucher("BA01"), testData.createVoucher("BA02"), testData.createVoucher("BA03"));
+
+		List<Voucher> vouchersCreated = repo.createAll(vouchers, false);
+		assertEquals(3, vouchersCreated.size());
+		assertEquals(3, repo.findAll().size());
+		Optional<Voucher> foundVoucherOpt = repo.findById("BA03");
+		assertTrue("Found voucher equals voucher to store", EqualsBuilder.reflectionEquals(vouchers.get(2), foundVoucherOpt.get()));
+	}
+
+	@Test
+	public void createAllUsingMultiRowInserts() {
+		VoucherRepository multiRowRepo = new VoucherRepositoryImpl(dataSource) {
+			@Override
+			protected int getInsertBatchSize() {
+				return 2;
+			}
+
+			@Override
+			protected boolean isMultiRowInsert() {
+				return true;
+			}
+		};
+		List<Voucher> vouchers = Arrays.asList(testData.createVoucher("MR01"), testData.createVoucher("MR02"), testData.createVoucher("MR03"),
+			testData.createVoucher("MR04"), testData.createVoucher("MR05"));
+
+		multiRowRepo.createAll(vouchers, false);
+		assertEquals(5, repo.findAll().size());
+		for (Voucher voucher : vouchers) {
+			Optional<Voucher> foundVoucherOpt = repo.findById(voucher.getCode());
+			assertTrue("Found voucher " + voucher.getCode(), EqualsBuilder.reflectionEquals(voucher, foundVoucherOpt.get()));
+		}
+	}
+
+	@Test
+	public void streamByOverview() {
+		VoucherMapper mapper = VoucherMapper.getInstance();
+		repo.createAll(Arrays.asList(testData.createVoucher("ST02"), testData.createVoucher("ST03"), testData.createVoucher("ST01")), false);
+
+		Overview<Object> overview = Overview.fromOrdering(new Order(mapper.code));
+		try (Stream<Voucher> vouchers = repo.streamByOverview(overview)) {
+			assertEquals(Arrays.asList("ST01", "ST02", "ST03"), vouchers.map(Voucher::getCode).collect(Collectors.toList()));
+		}
+		try (Stream<Voucher> vouchers = repo.streamByOverview(overview)) {
+			assertEquals("Stream closed before it is consumed", "ST01", vouchers.findFirst().get().getCode());
+		}
+	}
+
+	@Test
+	public void findByOverviewWithKeysetPagination() {
+		VoucherMapper mapper = VoucherMapper.getInstance();
+		List<Voucher> vouchers = Arrays.asList(testData.createVoucher("KS04"), testData.createVoucher("KS02"), testData.createVoucher("KS05"),
+			testData.createVoucher("KS01"), testData.createVoucher("KS03"));
+		Instant creationTime = Instant.now();
+		vouchers.forEach(v -> v.setCreationTime(creationTime));
+		repo.createAll(vouchers, false);
+
+		// All attributes in the same direction (row value comparison)
+		Overview<Object> overview = Overview.fromOrdering(new Order(mapper.code)).withPagination(Pagination.firstKeysetPage(2));
+		assertEquals(Arrays.asList("KS01", "KS02"), findCodes(overview));
+		overview = overview.withPagination(overview.getPagination().withKeyset(Arrays.asList("KS02")));
+		assertEquals(Arrays.asList("KS03", "KS04"), findCodes(overview));
+
+		// Mixed directions
+		Voucher voucher = repo.findById("KS03").get();
+		overview = Overview.<Object>fromOrdering(Arrays.asList(new Order(mapper.creation_time, true), new Order(mapper.code)))
+			.withPagination(Pagination.firstKeysetPage(2).withKeyset(Arrays.asList(voucher.getCreationTime(), voucher.getCode())));
+		assertEquals(Arrays.asList("KS04", "KS05"), findCodes(overview));
+	}
+
+	@Test
+	public void findResultsWithOverview() {
+		VoucherMapper mapper = VoucherMapper.getInstance();
+		repo.createAll(Arrays.asList(testData.createVoucher("RO01"), testData.createVoucher("RO02"), testData.createVoucher("RO03"),
+			testData.createVoucher("RO04"), testData.createVoucher("RO05")), false);
+		Overview<Object> overview = Overview.fromOrdering(new Order(mapper.code));
+
+		ResultsWithOverview<Voucher, Object> firstPage = repo.findResultsWithOverview(overview.withPagination(new Pagination(0, 2)));
+		assertEquals(2, firstPage.getResults().size());
+		assertEquals(Integer.valueOf(5), firstPage.getOverview().getPagination().getTotalCount());
+		ResultsWithOverview<Voucher, Object> lastPage = repo.findResultsWithOverview(overview.withPagination(new Pagination(4, 2)));
+		assertEquals("RO05", lastPage.getResults().get(0).getCode());
+		assertEquals(Integer.valueOf(5), lastPage.getOverview().getPagination().getTotalCount());
+		ResultsWithOverview<Voucher, Object> pageAfterLast = repo.findResultsWithOverview(overview.withPagination(new Pagination(6, 2)));
+		assertTrue(pageAfterLast.getResults().isEmpty());
+		assertEquals(Integer.valueOf(5), pageAfterLast.getOverview().getPagination().getTotalCount());
+
+		VoucherRepository inexactCountRepo = new VoucherRepositoryImpl(dataSource) {
+			@Override
+			protected boolean isExactTotalCountRequired() {
+				return false;
+			}
+		};
+		firstPage = inexactCountRepo.findResultsWithOverview(overview.withPagination(new Pagination(0, 2)));
+		assertEquals(Arrays.asList("RO01", "RO02"), firstPage.getResults().stream().map(Voucher::getCode).collect(Collectors.toList()));
+		assertFalse("There are more pages", firstPage.getOverview().getPagination().isLastPage());
+		lastPage = inexactCountRepo.findResultsWithOverview(overview.withPagination(new Pagination(4, 2)));
+		assertEquals(Integer.valueOf(5), lastPage.getOverview().getPagination().getTotalCount());
+	}
+
+	private List<String> findCodes(Overview<Object> overview) {
+		return repo.findByOverview(overview).stream().map(Voucher::getCode).collect(Collectors.toList());
+	}
+
+	@Test
+	public void upsert() {
+		// ON DUPLICATE KEY UPDATE of default MySQL dialect is not supported by H2 test database
+		VoucherRepositoryImpl sqlRepo = new VoucherRepositoryImpl(dataSource) {
+			@Override
+			protected SqlDialect getDialect() {
+				return new H2Dialect();
+			}
+		};
+		Voucher voucher = testData.createVoucher("UPS1");
+		sqlRepo.upsert(voucher);
+		assertTrue("Voucher is inserted", repo.findById("UPS1").isPresent());
+
+		voucher.setInvoiceNote("Upserted invoice note");
+		sqlRepo.upsert(voucher);
+		assertEquals(1, repo.findAll().size());
+		assertEquals("Upserted invoice note", repo.findById("UPS1").get().getInvoiceNote());
+	}
+
+	@Test
+	public void repositorySession() {
+		try (RepositorySession session = RepositorySession.open(dataSource)) {
+			repo.create(testData.createVoucher("SES1"), false);
+			assertTrue("Voucher is visible within the session", repo.findById("SES1").isPresent());
+			try (RepositorySession nested = RepositorySession.open(dataSource)) {
+				assertSame(session.getConnection(), nested.getConnection());
+				repo.create(testData.createVoucher("SES2"), false);
+				nested.commit();
+			}
+			assertEquals(2, repo.findAll().size());
+		}
+		assertFalse("Session is unbound when it is closed", RepositorySession.current(dataSource).isPresent());
+		assertEquals(0, repo.findAll().size());
+
+		RepositorySession.inSession(dataSource, () -> {
+			repo.create(testData.createVoucher("SES3"), false);
+			repo.create(testData.createVoucher("SES4"), false);
+		});
+		assertEquals(2, repo.findAll().size());
+	}
+
 	@Test
 	public void createFindDelete() {
 		Voucher voucher = testData.createVoucher("EFGH");
@@ -169,4 +357,39 @@ public class VoucherRepositoryImplTest {
 		assertTrue("Found voucher equals voucher to store", EqualsBuilder.reflectionEquals(voucher, foundVoucherOpt.get()));
 	}
 
+
+	/**
+	 * Mapper of vouchers with primary key composed of code and reserved_by attributes.
+	 */
+	private static class CompositeKeyVoucherMapper extends DynamicEntityMapper<Voucher, Object> {
+		private final Attribute<Voucher, String> code;
+		private final Attribute<Voucher, String> reservedBy;
+
+		CompositeKeyVoucherMapper() {
+			code = add(Attr.ofString(Voucher.class, "code").primary().get(e -> e.getCode()).set((e, a) -> e.setCode(a)));
+			add(Attr.ofInstant(Voucher.class, "creation_time").get(e -> e.getCreationTime()).set((e, a) -> e.setCreationTime(a)));
+			reservedBy = add(Attr.ofString(Voucher.class, "reserved_by").primary().get(e -> e.getReservedBy()).set((e, a) -> e.setReservedBy(a)));
+		}
+
+		@Override
+		public String getTableName() {
+			return VoucherMapper.getInstance().getTableName();
+		}
+
+		@Override
+		public Voucher createEntity() {
+			return new Voucher();
+		}
+
+		@Override
+		public List<Condition> composeFilterConditions(Object filter) {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public <K> List<Condition> composeFilterConditionsForCompositePrimaryKey(K key) {
+			Pair<String, String> pair = (Pair<String, String>)key;
+			return Arrays.asList(Conditions.eq(code, pair.getFirst()), Conditions.eq(reservedBy, pair.getSecond()));
+		}
+	}
 }